@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.benchmarks;
+
+import java.awt.Color;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import it.unibo.alchemist.boundary.gui.ColorChannel;
+
+/**
+ * {@link ColorChannel#alter(Color, float)} on a batch of random colors.
+ */
+@State(Scope.Benchmark)
+public class ColorChannelBenchmark {
+
+    private static final int BATCH = 1024;
+    private static final long SEED = 1;
+
+    /**
+     * The altered channel.
+     */
+    @Param
+    private ColorChannel channel;
+
+    private Color[] colors;
+    private float[] values;
+
+    /**
+     * Builds the colors and the values.
+     */
+    @Setup(Level.Trial)
+    public void prepare() {
+        final Random random = new Random(SEED);
+        colors = new Color[BATCH];
+        values = new float[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            colors[i] = new Color(random.nextInt(), true);
+            values[i] = random.nextFloat();
+        }
+    }
+
+    /**
+     * @param bh
+     *            the {@link Blackhole}
+     */
+    @Benchmark
+    public void alter(final Blackhole bh) {
+        for (int i = 0; i < BATCH; i++) {
+            bh.consume(channel.alter(colors[i], values[i]));
+        }
+    }
+
+}
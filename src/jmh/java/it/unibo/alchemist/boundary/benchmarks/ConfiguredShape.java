@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.benchmarks;
+
+import it.unibo.alchemist.boundary.gui.effects.DrawShape;
+
+/**
+ * {@link DrawShape} reading the {@link SyntheticEnvironments#MOLECULE} of the
+ * synthetic environments.
+ */
+final class ConfiguredShape extends DrawShape {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param mode
+     *            the shape to draw
+     * @param propertyFilter
+     *            true if the color should depend on the molecule value
+     */
+    ConfiguredShape(final Mode mode, final boolean propertyFilter) {
+        super();
+        setMode(mode);
+        setIncarnation(SyntheticEnvironments.INCARNATION);
+        setMolString(SyntheticEnvironments.MOLECULE);
+        setProperty("");
+        setMolPropertyFilter(propertyFilter);
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import it.unibo.alchemist.boundary.gui.effects.DrawShape;
+import it.unibo.alchemist.boundary.gui.effects.Effect;
+import it.unibo.alchemist.boundary.monitors.Generic2DDisplay;
+import it.unibo.alchemist.model.implementations.times.DoubleTime;
+import it.unibo.alchemist.model.interfaces.Environment;
+
+/**
+ * Painting of a whole frame by {@link Generic2DDisplay}, on an off screen
+ * image, with the default {@link DrawShape} effect.
+ */
+@State(Scope.Benchmark)
+public class DrawEnvOnViewBenchmark extends EnvironmentState {
+
+    /**
+     * Whether links get drawn.
+     */
+    @Param({ "false", "true" })
+    private boolean links;
+
+    private Environment<Object> env;
+    private Generic2DDisplay<Object> display;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    /**
+     * Builds the environment and captures the frame to paint.
+     */
+    @Setup(Level.Trial)
+    public void prepare() {
+        env = createEnvironment();
+        display = new Generic2DDisplay<>();
+        display.setDoubleBuffered(false);
+        display.setSize(WIDTH, HEIGHT);
+        final List<Effect> effects = new ArrayList<>();
+        effects.add(new DrawShape());
+        display.setEffectStack(effects);
+        display.setDrawLinks(links);
+        display.stepDone(env, null, new DoubleTime(), 0);
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        graphics = image.createGraphics();
+    }
+
+    /**
+     * Paints the frame.
+     */
+    @Benchmark
+    public void paint() {
+        display.paint(graphics);
+    }
+
+    /**
+     * Releases the resources of the display.
+     */
+    @TearDown(Level.Trial)
+    public void dispose() {
+        graphics.dispose();
+        display.finished(env, new DoubleTime(), 0);
+    }
+
+}
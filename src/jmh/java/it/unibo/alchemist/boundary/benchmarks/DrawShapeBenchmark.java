@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.benchmarks;
+
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import it.unibo.alchemist.boundary.gui.effects.DrawShape;
+import it.unibo.alchemist.boundary.gui.effects.MoleculePropertyCache;
+import it.unibo.alchemist.boundary.gui.effects.NodeAttributes;
+import it.unibo.alchemist.boundary.gui.effects.StagedEffect;
+import it.unibo.alchemist.boundary.gui.util.RenderingExecutor;
+import it.unibo.alchemist.boundary.wormhole.implementation.Wormhole2D;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ * {@link DrawShape} on every node of the environment, in each mode, with and
+ * without coloring by molecule value: both the per node
+ * {@link DrawShape#apply(Graphics2D, Node, int, int, MoleculePropertyCache, int)}
+ * and the staged path used by the displays.
+ */
+@State(Scope.Benchmark)
+public class DrawShapeBenchmark extends EnvironmentState {
+
+    /**
+     * The shape drawn.
+     */
+    @Param
+    private DrawShape.Mode mode;
+
+    /**
+     * Whether the color depends on the molecule value.
+     */
+    @Param({ "false", "true" })
+    private boolean propertyFilter;
+
+    private Node<?>[] nodes;
+    private int[] xs;
+    private int[] ys;
+    private MoleculePropertyCache cache;
+    private DrawShape effect;
+    private Graphics2D graphics;
+
+    /**
+     * Builds the environment, the frame and the effect.
+     */
+    @Setup(Level.Trial)
+    public void prepare() {
+        final Environment<Object> env = createEnvironment();
+        final Component view = new Component() {
+            private static final long serialVersionUID = 1L;
+        };
+        view.setSize(WIDTH, HEIGHT);
+        final Wormhole2D wormhole = new Wormhole2D(env, view);
+        wormhole.center();
+        wormhole.optimalZoom();
+        nodes = env.getNodes().toArray(new Node<?>[env.getNodesNumber()]);
+        xs = new int[nodes.length];
+        ys = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            @SuppressWarnings("unchecked")
+            final Point p = wormhole.getViewPoint(env.getPosition((Node<Object>) nodes[i]));
+            xs[i] = p.x;
+            ys[i] = p.y;
+        }
+        @SuppressWarnings("unchecked")
+        final MoleculePropertyCache frame = MoleculePropertyCache.next(MoleculePropertyCache.empty(),
+                Arrays.asList(nodes), Collections.emptySet(), true,
+                n -> env.getPosition((Node<Object>) n),
+                n -> env.getNeighborhood((Node<Object>) n),
+                0);
+        cache = frame;
+        effect = new ConfiguredShape(mode, propertyFilter);
+        graphics = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    }
+
+    /**
+     * Draws node by node.
+     */
+    @Benchmark
+    public void apply() {
+        for (int i = 0; i < nodes.length; i++) {
+            effect.apply(graphics, nodes[i], xs[i], ys[i], cache, i);
+        }
+    }
+
+    /**
+     * Evaluates all the nodes, then draws them.
+     */
+    @Benchmark
+    public void staged() {
+        final StagedEffect.Evaluator evaluator = effect.prepare(cache);
+        final NodeAttributes attributes = new NodeAttributes(nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            evaluator.evaluate(i, attributes, i);
+        }
+        effect.draw(graphics, attributes, xs, ys);
+    }
+
+    /**
+     * Evaluates all the nodes in parallel, as the displays do, then draws
+     * them. The drawing thread waits for the evaluation: compared to
+     * {@link #staged()}, this measures what the parallel evaluation gains.
+     */
+    @Benchmark
+    public void parallelStaged() {
+        final StagedEffect.Evaluator evaluator = effect.prepare(cache);
+        final NodeAttributes attributes = new NodeAttributes(nodes.length);
+        RenderingExecutor.forEach(nodes.length, i -> evaluator.evaluate(i, attributes, i));
+        effect.draw(graphics, attributes, xs, ys);
+    }
+
+    /**
+     * Evaluates all the nodes, without drawing them: the share of
+     * {@link #staged()} which can run in parallel.
+     *
+     * @return the attributes, so that the evaluation is not optimized away
+     */
+    @Benchmark
+    public NodeAttributes evaluate() {
+        final StagedEffect.Evaluator evaluator = effect.prepare(cache);
+        final NodeAttributes attributes = new NodeAttributes(nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            evaluator.evaluate(i, attributes, i);
+        }
+        return attributes;
+    }
+
+    /**
+     * Releases the graphics.
+     */
+    @TearDown(Level.Trial)
+    public void dispose() {
+        graphics.dispose();
+    }
+
+}
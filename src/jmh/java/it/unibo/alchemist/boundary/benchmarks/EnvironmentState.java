@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+
+import it.unibo.alchemist.boundary.benchmarks.SyntheticEnvironments.Layout;
+import it.unibo.alchemist.model.interfaces.Environment;
+
+/**
+ * Parameters shared by the benchmarks running on a synthetic environment.
+ */
+public abstract class EnvironmentState {
+
+    /**
+     * Seed used to place the nodes, so that every run sees the same scene.
+     */
+    protected static final long SEED = 1;
+    /**
+     * Width of the simulated view, in pixels.
+     */
+    protected static final int WIDTH = 1920;
+    /**
+     * Height of the simulated view, in pixels.
+     */
+    protected static final int HEIGHT = 1080;
+
+    /**
+     * Number of nodes.
+     */
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int nodes;
+
+    /**
+     * How nodes are placed.
+     */
+    @Param
+    private Layout layout;
+
+    /**
+     * @return the number of nodes of this trial
+     */
+    protected final int getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * @return the layout of this trial
+     */
+    protected final Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return a new environment for this trial
+     */
+    protected final Environment<Object> createEnvironment() {
+        return SyntheticEnvironments.create(nodes, layout, SEED);
+    }
+
+}
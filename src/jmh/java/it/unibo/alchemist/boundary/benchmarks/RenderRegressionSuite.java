@@ -0,0 +1,460 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.imageio.ImageIO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unibo.alchemist.boundary.benchmarks.SyntheticEnvironments.Layout;
+import it.unibo.alchemist.boundary.gui.effects.DrawShape.Mode;
+import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
+import it.unibo.alchemist.boundary.monitors.FrameProfiler.Phase;
+import it.unibo.alchemist.boundary.monitors.Generic2DDisplay;
+import it.unibo.alchemist.model.implementations.times.DoubleTime;
+import it.unibo.alchemist.model.interfaces.Context;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Molecule;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Reaction;
+import it.unibo.alchemist.model.interfaces.Time;
+
+/**
+ * Headless, end to end check of the rendering pipeline. Complete frames of
+ * synthetic scenes are captured and painted by a {@link Generic2DDisplay},
+ * and the suite fails if:
+ * <ul>
+ * <li>the 95th percentile of the frame time exceeds its budget;</li>
+ * <li>the bytes allocated per frame, by all threads, exceed their budget;</li>
+ * <li>attaching a display slows a simulation down more than allowed, or
+ * makes it spend more than allowed capturing frames;</li>
+ * <li>a frame differs from its golden image, or its golden image is
+ * missing.</li>
+ * </ul>
+ * Budgets are looked up by scene. Golden images are only written if
+ * {@value #UPDATE_GOLDEN} is passed.
+ *
+ * Usage: RenderRegressionSuite budgets goldenDirectory reportDirectory
+ * [{@value #UPDATE_GOLDEN}]
+ */
+public final class RenderRegressionSuite {
+
+    /**
+     * Option rewriting all the golden images.
+     */
+    public static final String UPDATE_GOLDEN = "--update-golden";
+    private static final Logger L = LoggerFactory.getLogger(RenderRegressionSuite.class);
+    private static final String HEADER = "scene,frames,frame_p50_ms,frame_p95_ms,budget_ms,alloc_per_frame,budget_bytes\n";
+    private static final int[] SIZES = { 1000, 10_000, 100_000 };
+    /*
+     * Drawing links is quadratic in the density: clustered scenes of 100k
+     * nodes take tens of seconds per frame.
+     */
+    private static final int[] SIZES_WITH_LINKS = { 1000, 10_000 };
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final int GOLDEN_NODES = 1000;
+    private static final int GOLDEN_WIDTH = 640;
+    private static final int GOLDEN_HEIGHT = 480;
+    private static final int WARMUP_FRAMES = 10;
+    private static final int MEASURED_FRAMES = 30;
+    private static final double MEDIAN = 0.5;
+    private static final double PERCENTILE = 0.95;
+    private static final int ENGINE_NODES = 10_000;
+    private static final long ENGINE_RUN_NANOS = 1_000_000_000L;
+    private static final int ENGINE_PAIRS = 7;
+    private static final long PAINT_PERIOD_MILLIS = 1000 / Generic2DDisplay.DEFAULT_FRAME_RATE;
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final int CHANNELS = 4;
+    private static final int BYTE = 8;
+    private static final int MASK = 0xFF;
+    private static final int DIFF_COLOR = 0xFFFF0000;
+    private static final long SEED = 1;
+    private static final int FAILURE = 1;
+
+    private final Properties budgets;
+    private final File goldenDir;
+    private final File reportDir;
+    private final boolean updateGolden;
+    private final com.sun.management.ThreadMXBean threads;
+    private final List<String> failures = new ArrayList<>();
+    private final StringBuilder report = new StringBuilder(HEADER);
+
+    private RenderRegressionSuite(final Properties budgets, final File goldenDir, final File reportDir, final boolean updateGolden) {
+        this.budgets = budgets;
+        this.goldenDir = goldenDir;
+        this.reportDir = reportDir;
+        this.updateGolden = updateGolden;
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            L.warn("This JVM cannot measure allocations: their budgets will not be checked");
+        }
+    }
+
+    /**
+     * @param args
+     *            the budgets file, the golden images directory, the report
+     *            directory and, optionally, {@value #UPDATE_GOLDEN}
+     * @throws IOException
+     *             if budgets, golden images or reports cannot be read or
+     *             written
+     */
+    public static void main(final String... args) throws IOException {
+        if (args.length < 3) {
+            throw new IllegalArgumentException(
+                    "Usage: RenderRegressionSuite budgets goldenDirectory reportDirectory [" + UPDATE_GOLDEN + "]");
+        }
+        System.setProperty("java.awt.headless", "true");
+        final Properties budgets = new Properties();
+        try (InputStream in = new FileInputStream(args[0])) {
+            budgets.load(in);
+        }
+        final RenderRegressionSuite suite = new RenderRegressionSuite(budgets, new File(args[1]), new File(args[2]),
+                Arrays.asList(args).subList(3, args.length).contains(UPDATE_GOLDEN));
+        final List<String> failures = suite.run();
+        if (!failures.isEmpty()) {
+            failures.forEach(L::error);
+            L.error("{} render regression(s), see {}", failures.size(), args[2]);
+            System.exit(FAILURE);
+        }
+        L.info("No render regression");
+        System.exit(0);
+    }
+
+    private List<String> run() throws IOException {
+        if (!reportDir.isDirectory() && !reportDir.mkdirs() || !goldenDir.isDirectory() && !goldenDir.mkdirs()) {
+            throw new IOException("Cannot create " + reportDir + " and " + goldenDir);
+        }
+        for (final Layout layout : Layout.values()) {
+            for (final boolean links : new boolean[] { false, true }) {
+                checkGolden(layout, links);
+                for (final int nodes : links ? SIZES_WITH_LINKS : SIZES) {
+                    checkFrames(nodes, layout, links);
+                }
+            }
+        }
+        checkEngineSlowdown();
+        try (Writer out = Files.newBufferedWriter(new File(reportDir, "frames.csv").toPath(), StandardCharsets.UTF_8)) {
+            out.append(report);
+        }
+        return Collections.unmodifiableList(failures);
+    }
+
+    private static String sceneName(final int nodes, final Layout layout, final boolean links) {
+        return layout.name().toLowerCase(Locale.ENGLISH) + '-' + nodes + (links ? "-links" : "");
+    }
+
+    private static Generic2DDisplay<Object> createDisplay(final Environment<Object> env, final int width, final int height,
+            final boolean links) {
+        final Generic2DDisplay<Object> display = new Generic2DDisplay<>();
+        display.setDoubleBuffered(false);
+        display.setSize(width, height);
+        display.setInterpolation(false);
+        display.setMarkCloserNode(false);
+        display.setEffectStack(Collections.singletonList(new ConfiguredShape(Mode.FillEllipse, true)));
+        display.setDrawLinks(links);
+        display.initialized(env);
+        return display;
+    }
+
+    private static BufferedImage paint(final Generic2DDisplay<Object> display, final BufferedImage image) {
+        final Graphics2D g = image.createGraphics();
+        try {
+            display.paint(g);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    private void checkFrames(final int nodes, final Layout layout, final boolean links) {
+        final String scene = sceneName(nodes, layout, links);
+        final Environment<Object> env = SyntheticEnvironments.create(nodes, layout, SEED);
+        final Generic2DDisplay<Object> display = createDisplay(env, WIDTH, HEIGHT, links);
+        final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        final long[] frameTimes = new long[MEASURED_FRAMES];
+        long allocated = 0;
+        for (int frame = -WARMUP_FRAMES; frame < MEASURED_FRAMES; frame++) {
+            final long step = frame + WARMUP_FRAMES + 1;
+            final long allocatedBefore = allocatedBytes();
+            final long start = System.nanoTime();
+            display.stepDone(env, null, new DoubleTime(step), step);
+            paint(display, image);
+            final long elapsed = System.nanoTime() - start;
+            if (frame >= 0) {
+                frameTimes[frame] = elapsed;
+                allocated += allocatedBytes() - allocatedBefore;
+            }
+        }
+        display.finished(env, new DoubleTime(), 0);
+        Arrays.sort(frameTimes);
+        final double p50 = frameTimes[(int) (MEDIAN * (MEASURED_FRAMES - 1))] / NANOS_PER_MILLI;
+        final double p95 = frameTimes[(int) Math.ceil(PERCENTILE * (MEASURED_FRAMES - 1))] / NANOS_PER_MILLI;
+        final long perFrame = allocated / MEASURED_FRAMES;
+        final double timeBudget = budget("frameMillis." + scene);
+        final double allocationBudget = budget("allocatedBytes." + scene);
+        report.append(String.format(Locale.ENGLISH, "%s,%d,%.3f,%.3f,%.0f,%d,%.0f%n",
+                scene, MEASURED_FRAMES, p50, p95, timeBudget, perFrame, allocationBudget));
+        L.info("{}: p95 {}ms, {} bytes per frame", scene, p95, perFrame);
+        if (p95 > timeBudget) {
+            failures.add(String.format(Locale.ENGLISH, "%s: p95 frame time %.1fms exceeds %.0fms", scene, p95, timeBudget));
+        }
+        if (threads.isThreadAllocatedMemoryEnabled() && perFrame > allocationBudget) {
+            failures.add(String.format(Locale.ENGLISH, "%s: %d bytes allocated per frame exceed %.0f",
+                    scene, perFrame, allocationBudget));
+        }
+    }
+
+    /*
+     * Bytes allocated so far by all live threads: capture and paint run on
+     * several of them.
+     */
+    private long allocatedBytes() {
+        if (!threads.isThreadAllocatedMemoryEnabled()) {
+            return 0;
+        }
+        long result = 0;
+        for (final long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            result += Math.max(0, allocated);
+        }
+        return result;
+    }
+
+    private void checkGolden(final Layout layout, final boolean links) throws IOException {
+        final String scene = sceneName(GOLDEN_NODES, layout, links);
+        final Environment<Object> env = SyntheticEnvironments.create(GOLDEN_NODES, layout, SEED);
+        final Generic2DDisplay<Object> display = createDisplay(env, GOLDEN_WIDTH, GOLDEN_HEIGHT, links);
+        final BufferedImage actual = paint(display, new BufferedImage(GOLDEN_WIDTH, GOLDEN_HEIGHT, BufferedImage.TYPE_INT_ARGB));
+        display.finished(env, new DoubleTime(), 0);
+        final File golden = new File(goldenDir, scene + ".png");
+        if (updateGolden) {
+            ImageIO.write(actual, "png", golden);
+            L.warn("{}: golden image recorded in {}", scene, golden);
+            return;
+        }
+        if (!golden.exists()) {
+            final File actualFile = new File(reportDir, scene + "-actual.png");
+            ImageIO.write(actual, "png", actualFile);
+            failures.add(String.format(Locale.ENGLISH, "%s: no golden image %s, the frame is in %s. Pass %s to record it",
+                    scene, golden, actualFile, UPDATE_GOLDEN));
+            return;
+        }
+        final BufferedImage expected = ImageIO.read(golden);
+        if (expected.getWidth() != GOLDEN_WIDTH || expected.getHeight() != GOLDEN_HEIGHT) {
+            failures.add(scene + ": golden image " + golden + " has a different size");
+            return;
+        }
+        final int tolerance = (int) budget("golden.channelTolerance");
+        final BufferedImage diff = new BufferedImage(GOLDEN_WIDTH, GOLDEN_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        long mismatched = 0;
+        for (int y = 0; y < GOLDEN_HEIGHT; y++) {
+            for (int x = 0; x < GOLDEN_WIDTH; x++) {
+                final int e = expected.getRGB(x, y);
+                final int a = actual.getRGB(x, y);
+                if (channelDistance(e, a) > tolerance) {
+                    mismatched++;
+                    diff.setRGB(x, y, DIFF_COLOR);
+                } else {
+                    diff.setRGB(x, y, a);
+                }
+            }
+        }
+        final double share = (double) mismatched / (GOLDEN_WIDTH * GOLDEN_HEIGHT);
+        if (share > budget("golden.maxMismatchedShare")) {
+            final File actualFile = new File(reportDir, scene + "-actual.png");
+            final File diffFile = new File(reportDir, scene + "-diff.png");
+            ImageIO.write(actual, "png", actualFile);
+            ImageIO.write(diff, "png", diffFile);
+            failures.add(String.format(Locale.ENGLISH, "%s: %d pixels differ from %s, see %s",
+                    scene, mismatched, golden, diffFile));
+        }
+    }
+
+    private static int channelDistance(final int argb1, final int argb2) {
+        int result = 0;
+        for (int shift = 0; shift < CHANNELS * BYTE; shift += BYTE) {
+            result = Math.max(result, Math.abs((argb1 >>> shift & MASK) - (argb2 >>> shift & MASK)));
+        }
+        return result;
+    }
+
+    /*
+     * A simulation step is emulated by a reaction on a random node, setting
+     * its molecule to a noisy average of the values of its neighbors. The
+     * same steps, about ENGINE_RUN_NANOS worth of them, run alternately with
+     * a monitor doing nothing and with an adaptive display attached, while
+     * another thread paints it at the default frame rate. The slowdown is the
+     * median ratio over ENGINE_PAIRS runs, which filters out most of the
+     * noise of a shared machine. With a single processor, the painter steals
+     * time to the simulation whatever the display does: the CPU time of the
+     * simulation thread is compared instead of the wall clock time. The
+     * share of the attached runs spent capturing frames is checked
+     * separately, against the overhead the adaptive display targets.
+     */
+    private void checkEngineSlowdown() {
+        final Environment<Object> env = SyntheticEnvironments.create(ENGINE_NODES, Layout.UNIFORM, SEED);
+        final OutputMonitor<Object> idle = new OutputMonitor<Object>() {
+            private static final long serialVersionUID = 1L;
+            @Override
+            public void finished(final Environment<Object> environment, final Time time, final long step) {
+            }
+            @Override
+            public void initialized(final Environment<Object> environment) {
+            }
+            @Override
+            public void stepDone(final Environment<Object> environment, final Reaction<Object> r, final Time time, final long step) {
+            }
+        };
+        runSteps(env, idle, Long.MAX_VALUE, ENGINE_RUN_NANOS);
+        final long steps = runSteps(env, idle, Long.MAX_VALUE, ENGINE_RUN_NANOS)[0];
+        final int measure = Runtime.getRuntime().availableProcessors() > 1 ? 1 : 2;
+        final Generic2DDisplay<Object> display = createDisplay(env, WIDTH, HEIGHT, false);
+        display.setAdaptive(true);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicBoolean painting = new AtomicBoolean(true);
+        final Thread painter = new Thread(() -> {
+            final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+            while (running.get()) {
+                if (painting.get()) {
+                    paint(display, image);
+                }
+                try {
+                    Thread.sleep(PAINT_PERIOD_MILLIS);
+                } catch (final InterruptedException e) {
+                    return;
+                }
+            }
+        }, "Painter");
+        painter.setDaemon(true);
+        painter.start();
+        runSteps(env, display, steps, Long.MAX_VALUE);
+        display.getFrameProfiler().reset();
+        final double[] ratios = new double[ENGINE_PAIRS];
+        long attachedWallTime = 0;
+        for (int pair = 0; pair < ENGINE_PAIRS; pair++) {
+            painting.set(false);
+            final long baseline = runSteps(env, idle, steps, Long.MAX_VALUE)[measure];
+            painting.set(true);
+            final long[] attached = runSteps(env, display, steps, Long.MAX_VALUE);
+            ratios[pair] = (double) attached[measure] / baseline;
+            attachedWallTime += attached[1];
+        }
+        running.set(false);
+        final double captureShare = (double) display.getFrameProfiler().getLatency(Phase.CAPTURE).getTotal() / attachedWallTime;
+        display.finished(env, new DoubleTime(), 0);
+        final double[] sorted = ratios.clone();
+        Arrays.sort(sorted);
+        final double slowdown = sorted[ENGINE_PAIRS / 2];
+        final double slowdownBudget = budget("engineSlowdown");
+        final double captureBudget = budget("captureOverhead");
+        report.append(String.format(Locale.ENGLISH,
+                "# %d steps, %s time: slowdown ratios %s, median %.3f, budget %.3f; capture overhead %.4f, budget %.4f%n",
+                steps, measure == 1 ? "wall clock" : "CPU", Arrays.toString(ratios), slowdown, slowdownBudget,
+                captureShare, captureBudget));
+        L.info("Simulation slowdown with a display attached: {}, time spent capturing: {}", slowdown, captureShare);
+        if (slowdown > slowdownBudget) {
+            failures.add(String.format(Locale.ENGLISH, "The display slows the simulation down by %.3f, more than %.3f",
+                    slowdown, slowdownBudget));
+        }
+        if (captureShare > captureBudget) {
+            failures.add(String.format(Locale.ENGLISH, "The display spends %.4f of the simulation time capturing, more than %.4f",
+                    captureShare, captureBudget));
+        }
+    }
+
+    /*
+     * Runs until either maxSteps or maxNanos are reached, returns the steps
+     * done, the nanoseconds elapsed and the CPU nanoseconds used by the
+     * current thread.
+     */
+    private long[] runSteps(final Environment<Object> env, final OutputMonitor<Object> monitor,
+            final long maxSteps, final long maxNanos) {
+        @SuppressWarnings("unchecked")
+        final Node<Object>[] nodes = env.getNodes().toArray(new Node[env.getNodesNumber()]);
+        final List<Reaction<Object>> reactions = new ArrayList<>(nodes.length);
+        for (final Node<Object> node : nodes) {
+            reactions.add(localReaction(node));
+        }
+        final Molecule molecule = SyntheticEnvironments.INCARNATION.createMolecule(SyntheticEnvironments.MOLECULE);
+        final Random random = new Random(SEED);
+        final long cpuStart = threads.getCurrentThreadCpuTime();
+        final long start = System.nanoTime();
+        long step = 0;
+        while (step < maxSteps && System.nanoTime() - start < maxNanos) {
+            final int index = random.nextInt(nodes.length);
+            final Node<Object> node = nodes[index];
+            double sum = random.nextGaussian();
+            int count = 0;
+            for (final Node<Object> neighbor : env.getNeighborhood(node)) {
+                sum += ((Number) neighbor.getConcentration(molecule)).doubleValue();
+                count++;
+            }
+            node.setConcentration(molecule,
+                    Math.max(0, Math.min(SyntheticEnvironments.MAX_VALUE, count == 0 ? sum : sum / count)));
+            step++;
+            monitor.stepDone(env, reactions.get(index), new DoubleTime(step), step);
+        }
+        return new long[] { step, System.nanoTime() - start, threads.getCurrentThreadCpuTime() - cpuStart };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Reaction<Object> localReaction(final Node<Object> node) {
+        return (Reaction<Object>) Proxy.newProxyInstance(Reaction.class.getClassLoader(), new Class<?>[] { Reaction.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                case "getNode":
+                    return node;
+                case "getInputContext":
+                    return Context.NEIGHBORHOOD;
+                case "getOutputContext":
+                    return Context.LOCAL;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "Local reaction on " + node;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    private double budget(final String key) {
+        final String value = budgets.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("No budget for " + key);
+        }
+        return Double.parseDouble(value.trim());
+    }
+
+}
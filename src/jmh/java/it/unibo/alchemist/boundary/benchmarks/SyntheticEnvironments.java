@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.benchmarks;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import it.unibo.alchemist.SupportedIncarnations;
+import it.unibo.alchemist.model.implementations.environments.Continuous2DEnvironment;
+import it.unibo.alchemist.model.implementations.linkingrules.EuclideanDistance;
+import it.unibo.alchemist.model.implementations.nodes.GenericNode;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Molecule;
+
+/**
+ * Builds reproducible environments for the benchmarks. Nodes are linked by
+ * distance, with a range giving about {@value #AVERAGE_NEIGHBORS} neighbors
+ * per node whatever the size, and carry a {@link #MOLECULE} whose value is
+ * uniformly distributed in [0, {@value #MAX_VALUE}].
+ */
+public final class SyntheticEnvironments {
+
+    /**
+     * Name of the molecule every node contains.
+     */
+    public static final String MOLECULE = "value";
+    /**
+     * Incarnation used to create and read the molecule.
+     */
+    public static final SupportedIncarnations INCARNATION = SupportedIncarnations.PROTELIS;
+    /**
+     * Upper bound of the molecule values.
+     */
+    public static final double MAX_VALUE = 10;
+    /**
+     * Side of the square area used by {@link #create(int, Layout, long)}.
+     */
+    public static final double SIDE = 1000;
+    private static final double AVERAGE_NEIGHBORS = 10;
+    private static final int CLUSTERS = 16;
+    private static final double CLUSTER_SPREAD = 0.03;
+
+    /**
+     * How nodes are placed.
+     */
+    public enum Layout {
+        /**
+         * Uniformly at random.
+         */
+        UNIFORM,
+        /**
+         * Gaussian clusters around a few random centers.
+         */
+        CLUSTERED,
+        /**
+         * On a square grid.
+         */
+        GRID
+    }
+
+    private SyntheticEnvironments() {
+    }
+
+    /**
+     * @param nodes
+     *            number of nodes
+     * @param layout
+     *            how to place them
+     * @param seed
+     *            seed of the placement
+     * @return a new environment, spanning a square of side {@link #SIDE}
+     */
+    public static Environment<Object> create(final int nodes, final Layout layout, final long seed) {
+        return create(nodes, layout, new Rectangle2D.Double(0, 0, SIDE, SIDE), seed);
+    }
+
+    /**
+     * @param nodes
+     *            number of nodes
+     * @param layout
+     *            how to place them
+     * @param bounds
+     *            the area where nodes are placed
+     * @param seed
+     *            seed of the placement
+     * @return a new environment
+     */
+    public static Environment<Object> create(final int nodes, final Layout layout, final Rectangle2D bounds, final long seed) {
+        final Environment<Object> env = new Continuous2DEnvironment<>();
+        final double area = bounds.getWidth() * bounds.getHeight();
+        final double range = Math.sqrt(AVERAGE_NEIGHBORS * area / (Math.PI * nodes));
+        env.setLinkingRule(new EuclideanDistance<>(range));
+        final Molecule molecule = INCARNATION.createMolecule(MOLECULE);
+        final Random random = new Random(seed);
+        final double[][] centers = new double[CLUSTERS][2];
+        for (final double[] center : centers) {
+            center[0] = random.nextDouble();
+            center[1] = random.nextDouble();
+        }
+        final int side = (int) Math.ceil(Math.sqrt(nodes));
+        for (int i = 0; i < nodes; i++) {
+            final double x;
+            final double y;
+            switch (layout) {
+            case CLUSTERED:
+                final double[] center = centers[random.nextInt(CLUSTERS)];
+                x = clamp(center[0] + random.nextGaussian() * CLUSTER_SPREAD);
+                y = clamp(center[1] + random.nextGaussian() * CLUSTER_SPREAD);
+                break;
+            case GRID:
+                x = (i % side + 0.5) / side;
+                y = (i / side + 0.5) / side;
+                break;
+            default:
+                x = random.nextDouble();
+                y = random.nextDouble();
+                break;
+            }
+            final GenericNode<Object> node = new BenchmarkNode();
+            node.setConcentration(molecule, random.nextDouble() * MAX_VALUE);
+            env.addNode(node, new Continuous2DEuclidean(
+                    bounds.getX() + x * bounds.getWidth(),
+                    bounds.getY() + y * bounds.getHeight()));
+        }
+        return env;
+    }
+
+    private static double clamp(final double v) {
+        return Math.max(0, Math.min(1, v));
+    }
+
+    private static final class BenchmarkNode extends GenericNode<Object> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected Object createT() {
+            return 0d;
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import it.unibo.alchemist.boundary.monitors.Generic2DDisplay;
+import it.unibo.alchemist.model.implementations.times.DoubleTime;
+import it.unibo.alchemist.model.interfaces.Environment;
+
+/**
+ * Capture of a frame by {@link Generic2DDisplay}: snapshot of the
+ * environment, property cache and filter index. Every invocation is a new
+ * step, and a step with no reaction, so the whole environment is captured
+ * again.
+ */
+@State(Scope.Benchmark)
+public class UpdateBenchmark extends EnvironmentState {
+
+    private Environment<Object> env;
+    private Generic2DDisplay<Object> display;
+    private long step;
+
+    /**
+     * Builds the environment and lets the display initialize on it.
+     */
+    @Setup(Level.Trial)
+    public void prepare() {
+        env = createEnvironment();
+        display = new Generic2DDisplay<>();
+        display.setSize(WIDTH, HEIGHT);
+        display.stepDone(env, null, new DoubleTime(), 0);
+    }
+
+    /**
+     * Captures a new frame.
+     */
+    @Benchmark
+    public void update() {
+        step++;
+        display.stepDone(env, null, new DoubleTime(step), step);
+    }
+
+    /**
+     * Releases the resources of the display.
+     */
+    @TearDown(Level.Trial)
+    public void dispose() {
+        display.finished(env, new DoubleTime(step), step);
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.benchmarks;
+
+import java.awt.Component;
+import java.awt.Point;
+import java.awt.geom.Rectangle2D;
+
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.MapPosition;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.model.MapViewPosition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import it.unibo.alchemist.boundary.wormhole.implementation.MapWormhole;
+import it.unibo.alchemist.boundary.wormhole.implementation.Wormhole2D;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * Environment to view transformations, and back, of {@link Wormhole2D} and
+ * {@link MapWormhole}, for every node of the environment.
+ */
+@State(Scope.Benchmark)
+public class WormholeBenchmark extends EnvironmentState {
+
+    private static final Rectangle2D MAP_BOUNDS = new Rectangle2D.Double(11.3, 44.45, 0.1, 0.1);
+    private static final byte MAP_ZOOM = 12;
+
+    private Wormhole2D wormhole;
+    private Position[] positions;
+    private Point[] viewPoints;
+    private MapWormhole map;
+    private Position[] mapPositions;
+    private Point[] mapViewPoints;
+
+    /**
+     * Builds the environments and the wormholes.
+     */
+    @Setup(Level.Trial)
+    public void prepare() {
+        final Component view = new Component() {
+            private static final long serialVersionUID = 1L;
+        };
+        view.setSize(WIDTH, HEIGHT);
+        final Environment<Object> env = createEnvironment();
+        wormhole = new Wormhole2D(env, view);
+        wormhole.center();
+        wormhole.optimalZoom();
+        positions = positionsOf(env);
+        viewPoints = project(wormhole, positions);
+        final Environment<Object> mapEnv = SyntheticEnvironments.create(getNodeCount(), getLayout(), MAP_BOUNDS, SEED);
+        final MapViewPosition mapModel = new MapViewPosition(new DisplayModel());
+        mapModel.setMapPosition(new MapPosition(new LatLong(MAP_BOUNDS.getCenterY(), MAP_BOUNDS.getCenterX()), MAP_ZOOM));
+        map = new MapWormhole(mapEnv, view, mapModel);
+        mapPositions = positionsOf(mapEnv);
+        mapViewPoints = project(map, mapPositions);
+    }
+
+    private static Position[] positionsOf(final Environment<Object> env) {
+        return env.getNodes().stream().map(env::getPosition).toArray(Position[]::new);
+    }
+
+    private static Point[] project(final Wormhole2D w, final Position[] envPoints) {
+        final Point[] result = new Point[envPoints.length];
+        for (int i = 0; i < envPoints.length; i++) {
+            result[i] = w.getViewPoint(envPoints[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @param bh
+     *            the {@link Blackhole}
+     */
+    @Benchmark
+    public void wormhole2DToView(final Blackhole bh) {
+        for (final Position p : positions) {
+            bh.consume(wormhole.getViewPoint(p));
+        }
+    }
+
+    /**
+     * @param bh
+     *            the {@link Blackhole}
+     */
+    @Benchmark
+    public void wormhole2DToEnvironment(final Blackhole bh) {
+        for (final Point p : viewPoints) {
+            bh.consume(wormhole.getEnvPoint(p));
+        }
+    }
+
+    /**
+     * @param bh
+     *            the {@link Blackhole}
+     */
+    @Benchmark
+    public void mapWormholeToView(final Blackhole bh) {
+        for (final Position p : mapPositions) {
+            bh.consume(map.getViewPoint(p));
+        }
+    }
+
+    /**
+     * @param bh
+     *            the {@link Blackhole}
+     */
+    @Benchmark
+    public void mapWormholeToEnvironment(final Blackhole bh) {
+        for (final Point p : mapViewPoints) {
+            bh.consume(map.getEnvPoint(p));
+        }
+    }
+
+}
@@ -14,12 +14,19 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import javax.swing.JComboBox;
 import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.filechooser.FileFilter;
@@ -33,7 +40,10 @@ import it.unibo.alchemist.boundary.gui.UpperBar.Commands;
 import it.unibo.alchemist.boundary.gui.effects.JEffectsTab;
 import it.unibo.alchemist.boundary.gui.util.GraphicalMonitorFactory;
 import it.unibo.alchemist.boundary.interfaces.GraphicalOutputMonitor;
+import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
+import it.unibo.alchemist.boundary.monitors.FastForward;
 import it.unibo.alchemist.boundary.monitors.Generic2DDisplay;
+import it.unibo.alchemist.boundary.monitors.RealTimePacer;
 import it.unibo.alchemist.boundary.monitors.TimeStepMonitor;
 import it.unibo.alchemist.core.implementations.Engine;
 import it.unibo.alchemist.core.interfaces.Simulation;
@@ -59,6 +69,12 @@ public class Perspective<T> extends JPanel implements ChangeListener, ActionList
     private static final String RANDOM_REINIT_FAILURE = getString("random_reinit_failure");
     private static final String NOT_AN_INTEGER = getString("not_an_integer");
     private static final String NOT_INITIALIZED_YET = getString("not_initialized_yet");
+    private static final String NOT_A_NUMBER = getString("not_a_number");
+    private static final String FAST_FORWARDING = getString("fast_forwarding");
+    private static final int SPEED_REPORT_PERIOD = 1000;
+    private static final int PROGRESS_REPORT_PERIOD = 200;
+    private static final int TARGET_COLUMNS = 10;
+    private static final double PERCENT = 100;
 
     private final UpperBar bar;
 
@@ -71,6 +87,9 @@ public class Perspective<T> extends JPanel implements ChangeListener, ActionList
     private transient Simulation<T> sim;
     private final StatusBar status;
     private File xml;
+    private final transient Timer speedReport = new Timer(SPEED_REPORT_PERIOD, e -> reportSpeed());
+    private final transient Timer progressReport = new Timer(PROGRESS_REPORT_PERIOD, e -> reportProgress());
+    private transient FastForward<T> forward;
 
 
     /**
@@ -112,6 +131,9 @@ public class Perspective<T> extends JPanel implements ChangeListener, ActionList
         main = null;
         sim = null;
         effectsTab = null;
+        speedReport.stop();
+        progressReport.stop();
+        forward = null;
     }
 
     @Override
@@ -128,27 +150,40 @@ public class Perspective<T> extends JPanel implements ChangeListener, ActionList
             sim.addCommand(new Engine.StateCommand<T>().run().build());
             bar.setPlay(true);
         } else if (SimControlCommand.PAUSE.equalsToString(e.getActionCommand())) {
+            if (forward != null) {
+                forward.cancel();
+            }
+            RealTimePacer.peek(sim).ifPresent(RealTimePacer::wakeUp);
             sim.addCommand(new Engine.StateCommand<T>().pause().build());
             bar.setPlay(false);
         } else if (SimControlCommand.STEP.equalsToString(e.getActionCommand())) {
+            RealTimePacer.peek(sim).ifPresent(RealTimePacer::wakeUp);
             sim.addCommand(new Engine.StateCommand<T>().run().build());
             sim.addCommand(new Engine.StateCommand<T>().pause().build());
         } else if (SimControlCommand.STOP.equalsToString(e.getActionCommand())) {
+            RealTimePacer.peek(sim).ifPresent(RealTimePacer::wakeUp);
             sim.addCommand(new Engine.StateCommand<T>().stop().build());
             bar.setFileOK(true);
+        } else if (SimControlCommand.FAST_FORWARD.equalsToString(e.getActionCommand())) {
+            fastForward();
         } else if (Commands.REACTIVITY.equalsToString(e.getActionCommand())) {
             switch (bar.getReactivityStatus()) {
             case MAX_REACTIVITY:
                 main.setStep(1);
+                main.setAdaptive(false);
                 main.setRealTime(false);
                 break;
             case REAL_TIME:
+                updateRatio();
+                main.setAdaptive(false);
                 main.setRealTime(true);
                 main.setStep(1);
                 break;
-            case USER_SELECTED:
-                main.setStep(bar.getReactivity());
+            case ADAPTIVE:
+                main.setStep(1);
+                main.setMaxOverhead(bar.getMaxOverhead());
                 main.setRealTime(false);
+                main.setAdaptive(true);
                 break;
             default:
                 break;
@@ -158,6 +193,57 @@ public class Perspective<T> extends JPanel implements ChangeListener, ActionList
         }
     }
 
+    private void fastForward() {
+        final JComboBox<String> unit = new JComboBox<>(new String[] { getString("time"), getString("steps") });
+        final JTextField target = new JTextField(TARGET_COLUMNS);
+        final JPanel panel = new JPanel();
+        panel.add(unit);
+        panel.add(target);
+        if (JOptionPane.showConfirmDialog(this, panel, getString("fast_forward_to"), JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        /*
+         * Data monitors attached from the Monitors tab keep running: only the
+         * graphical ones get suspended. Besides these two, FastForward also
+         * suspends the node trackers and recordings registered as displays.
+         */
+        final List<OutputMonitor<T>> suspended = Arrays.asList(main, bar.getTimeMonitor());
+        final Runnable onDone = () -> SwingUtilities.invokeLater(this::fastForwardDone);
+        final String text = target.getText().trim();
+        try {
+            forward = unit.getSelectedIndex() == 0
+                    ? FastForward.toTime(sim, Double.parseDouble(text), suspended, onDone)
+                    : FastForward.toStep(sim, Long.parseLong(text), suspended, onDone);
+        } catch (final NumberFormatException e) {
+            status.setNo();
+            status.setText(text + " " + NOT_A_NUMBER);
+            return;
+        }
+        forward.start();
+        bar.setPlay(true);
+        status.setOK();
+        progressReport.start();
+    }
+
+    private void reportProgress() {
+        if (forward != null) {
+            status.setText(FAST_FORWARDING + ": " + getString("time") + " " + forward.getTime()
+                    + ", " + getString("steps") + " " + forward.getStep()
+                    + " (" + Math.round(forward.getProgress() * PERCENT) + "%)");
+        }
+    }
+
+    private void fastForwardDone() {
+        if (forward != null) {
+            reportProgress();
+            progressReport.stop();
+            forward = null;
+            if (sim != null && sim.getStatus() != Status.STOPPED) {
+                bar.setPlay(false);
+            }
+        }
+    }
+
     private void createMonitor() {
         final GraphicalOutputMonitor<T> display = GraphicalMonitorFactory.createMonitor(sim, e -> L.error("Cannot create monitor", e));
         setMainDisplay(display);
@@ -198,6 +284,8 @@ public class Perspective<T> extends JPanel implements ChangeListener, ActionList
             final Environment<T> env = fenv.get().getEnvironment();
             rand = fenv.get().getRandomGenerator();
             sim = new Engine<>(env, new DoubleTime(Double.POSITIVE_INFINITY), parallel);
+            updateRatio();
+            speedReport.start();
             bar.setSimulation(sim);
             scp.setSimulation(sim);
             final Thread simThread = new Thread(sim);
@@ -230,6 +318,8 @@ public class Perspective<T> extends JPanel implements ChangeListener, ActionList
             sim.removeOutputMonitor(main);
             gom.setStep(main.getStep());
             gom.setRealTime(main.isRealTime());
+            gom.setAdaptive(main.isAdaptive());
+            gom.setMaxOverhead(main.getMaxOverhead());
             remove((Component) main);
         }
         main = gom;
@@ -259,11 +349,29 @@ public class Perspective<T> extends JPanel implements ChangeListener, ActionList
 
     @Override
     public void stateChanged(final ChangeEvent e) {
-        if (bar.getReactivityStatus().equals(it.unibo.alchemist.boundary.gui.ReactivityPanel.Status.USER_SELECTED)) {
-            main.setStep(bar.getReactivity());
+        main.setMaxOverhead(bar.getMaxOverhead());
+        updateRatio();
+    }
+
+    /*
+     * The pacer is reached through a command, as it may need to be attached,
+     * and this runs on the EDT while the engine may be notifying its monitors.
+     */
+    private void updateRatio() {
+        if (sim != null) {
+            final double ratio = bar.getRealTimeRatio();
+            sim.addCommand(s -> RealTimePacer.of(s).setRatio(ratio));
         }
     }
 
+    private void reportSpeed() {
+        bar.setAchievedRatio(Optional.ofNullable(sim)
+                .flatMap(RealTimePacer::peek)
+                .filter(RealTimePacer::isEnabled)
+                .map(RealTimePacer::getAchievedRatio)
+                .orElse(Double.NaN));
+    }
+
     @Override
     protected void finalize() throws Throwable {
         if (sim != null) {
@@ -13,6 +13,7 @@ import it.unibo.alchemist.boundary.gui.tape.JTapeFeatureStack;
 import it.unibo.alchemist.boundary.gui.tape.JTapeGroup;
 import it.unibo.alchemist.boundary.gui.tape.JTapeMainFeature;
 import it.unibo.alchemist.boundary.gui.tape.JTapeSection;
+import it.unibo.alchemist.boundary.interfaces.GraphicalOutputMonitor;
 
 import java.awt.Dimension;
 import java.awt.event.ActionListener;
@@ -21,6 +22,7 @@ import java.awt.event.ItemListener;
 
 import javax.swing.AbstractButton;
 import javax.swing.Icon;
+import javax.swing.JLabel;
 import javax.swing.JSlider;
 import javax.swing.JToggleButton;
 import javax.swing.event.ChangeListener;
@@ -33,24 +35,45 @@ public class ReactivityPanel extends JTapeGroup implements ItemListener {
 
     private static final long serialVersionUID = 6688803192091760332L;
 
-    private static final int SLIDE_MAX = 20;
+    /*
+     * The overhead slider goes from 1% to 20% of the engine time.
+     */
+    private static final int OVERHEAD_MIN = 1;
+    private static final int OVERHEAD_MAX = 20;
+    private static final double PERCENT = 100;
     private static final int SLIDE_SIZE = 150;
+    /*
+     * The speed slider is logarithmic: ten ticks per order of magnitude, from
+     * 0.1x to 100x.
+     */
+    private static final int SPEED_TICKS_PER_DECADE = 10;
+    private static final int SPEED_MIN = -SPEED_TICKS_PER_DECADE;
+    private static final int SPEED_MAX = 2 * SPEED_TICKS_PER_DECADE;
 
     private static final String UI_REACTIVITY = getString("ui_reactivity");
     private static final String MAX_REACTIVITY = getString("max_reactivity");
     private static final String REALTIME = getString("realtime");
-    private static final String USER_SELECTED = getString("user_selected");
+    private static final String ADAPTIVE = getString("adaptive");
+    private static final String MAX_OVERHEAD = getString("max_overhead");
+    private static final String SPEED = getString("speed");
+    private static final String ACHIEVED = getString("achieved");
 
     private final JTapeSection stack1 = new JTapeFeatureStack();
     private final JTapeSection buttMF = new JTapeMainFeature();
-    private final JTapeSection sliderMF = new JTapeMainFeature();
+    private final JTapeSection sliderStack = new JTapeFeatureStack();
+    private final JTapeSection speedStack = new JTapeFeatureStack();
     private final JToggleButton btnMax;
     private final JToggleButton btnReal;
-    private final JToggleButton btnUser;
-    private final JSlider slider = new JSlider(0, SLIDE_MAX, SLIDE_MAX / 2);
+    private final JToggleButton btnAdaptive;
+    private final JSlider slider = new JSlider(OVERHEAD_MIN, OVERHEAD_MAX,
+            (int) Math.round(GraphicalOutputMonitor.DEFAULT_MAX_OVERHEAD * PERCENT));
+    private final JLabel overheadLabel = new JLabel();
+    private final JSlider speed = new JSlider(SPEED_MIN, SPEED_MAX, 0);
+    private final JLabel speedLabel = new JLabel();
+    private double achieved = Double.NaN;
     private final Icon max = loadScaledImage("/oxygen/status/user-online.png");
     private final Icon real = loadScaledImage("/oxygen/status/user-invisible.png");
-    private final Icon user = loadScaledImage("/oxygen/status/user-offline.png");
+    private final Icon adaptive = loadScaledImage("/oxygen/status/user-offline.png");
     private Status status = Status.MAX_REACTIVITY;
 
     /**
@@ -61,14 +84,17 @@ public class ReactivityPanel extends JTapeGroup implements ItemListener {
          */
         MAX_REACTIVITY,
         /**
-         * The GUI tries to run in sync with the real time, keeping at least 25
-         * frames per second.
+         * The simulation runs at a fixed speed with respect to the real time,
+         * set with the speed slider. The GUI keeps at most 25 frames per
+         * second.
          */
         REAL_TIME,
         /**
-         * The GUI update frequency is user defined. Use the slider.
+         * The GUI decides how often to update, trying to keep 25 frames per
+         * second while slowing down the simulation at most by the share set
+         * with the slider.
          */
-        USER_SELECTED,
+        ADAPTIVE,
     }
 
     /**
@@ -81,23 +107,33 @@ public class ReactivityPanel extends JTapeGroup implements ItemListener {
         // button = new JButton(max);
         btnMax = new JToggleButton(MAX_REACTIVITY, max, true);
         btnReal = new JToggleButton(REALTIME, real, false);
-        btnUser = new JToggleButton(USER_SELECTED, user, false);
+        btnAdaptive = new JToggleButton(ADAPTIVE, adaptive, false);
         /*
          * add(button); add(slider); button.addActionListener(this);
          */
         btnMax.addItemListener(this);
         btnReal.addItemListener(this);
-        btnUser.addItemListener(this);
+        btnAdaptive.addItemListener(this);
         slider.setEnabled(false);
+        slider.addChangeListener(e -> updateOverheadLabel());
+        updateOverheadLabel();
+        speed.setPreferredSize(new Dimension(SLIDE_SIZE, speed.getHeight()));
+        speed.setEnabled(false);
+        speed.addChangeListener(e -> updateSpeedLabel());
+        updateSpeedLabel();
 
         stack1.registerFeature(btnMax);
         stack1.registerFeature(btnReal);
-        buttMF.registerFeature(btnUser);
-        sliderMF.registerFeature(slider);
+        buttMF.registerFeature(btnAdaptive);
+        sliderStack.registerFeature(overheadLabel);
+        sliderStack.registerFeature(slider);
 
         registerSection(stack1);
         registerSection(buttMF);
-        registerSection(sliderMF);
+        registerSection(sliderStack);
+        speedStack.registerFeature(speedLabel);
+        speedStack.registerFeature(speed);
+        registerSection(speedStack);
     }
 
     /**
@@ -109,7 +145,7 @@ public class ReactivityPanel extends JTapeGroup implements ItemListener {
     public void addActionListener(final ActionListener l) {
         btnMax.addActionListener(l);
         btnReal.addActionListener(l);
-        btnUser.addActionListener(l);
+        btnAdaptive.addActionListener(l);
     }
 
     /**
@@ -118,6 +154,7 @@ public class ReactivityPanel extends JTapeGroup implements ItemListener {
      */
     public void addChangeLister(final ChangeListener c) {
         slider.addChangeListener(c);
+        speed.addChangeListener(c);
     }
 
     /**
@@ -128,10 +165,40 @@ public class ReactivityPanel extends JTapeGroup implements ItemListener {
     }
 
     /**
-     * @return the current reactivity set by user
+     * @return the largest share of the engine time the adaptive mode can
+     *         spend updating the GUI
+     */
+    public double getMaxOverhead() {
+        return slider.getValue() / PERCENT;
+    }
+
+    private void updateOverheadLabel() {
+        overheadLabel.setText(MAX_OVERHEAD + ": " + slider.getValue() + "%");
+    }
+
+    /**
+     * @return the ratio between simulation time and real time selected for
+     *         the real time mode
      */
-    public int getUserReactivity() {
-        return (int) Math.pow(2, slider.getValue());
+    public double getRealTimeRatio() {
+        return Math.pow(10, (double) speed.getValue() / SPEED_TICKS_PER_DECADE);
+    }
+
+    /**
+     * @param ratio
+     *            the ratio between simulation time and real time actually
+     *            achieved by the simulation, or NaN if unknown
+     */
+    public void setAchievedRatio(final double ratio) {
+        achieved = ratio;
+        updateSpeedLabel();
+    }
+
+    private void updateSpeedLabel() {
+        final String target = String.format("%s: %.2gx", SPEED, getRealTimeRatio());
+        speedLabel.setText(Double.isNaN(achieved) || status != Status.REAL_TIME
+                ? target
+                : String.format("%s (%s %.2gx)", target, ACHIEVED, achieved));
     }
 
     @Override
@@ -141,19 +208,23 @@ public class ReactivityPanel extends JTapeGroup implements ItemListener {
             if (src.equals(btnMax)) {
                 status = Status.MAX_REACTIVITY;
                 btnReal.setSelected(false);
-                btnUser.setSelected(false);
+                btnAdaptive.setSelected(false);
                 slider.setEnabled(false);
+                speed.setEnabled(false);
             } else if (src.equals(btnReal)) {
                 status = Status.REAL_TIME;
                 btnMax.setSelected(false);
-                btnUser.setSelected(false);
+                btnAdaptive.setSelected(false);
                 slider.setEnabled(false);
-            } else if (src.equals(btnUser)) {
-                status = Status.USER_SELECTED;
+                speed.setEnabled(true);
+            } else if (src.equals(btnAdaptive)) {
+                status = Status.ADAPTIVE;
                 btnReal.setSelected(false);
                 btnMax.setSelected(false);
                 slider.setEnabled(true);
+                speed.setEnabled(false);
             }
+            updateSpeedLabel();
         }
     }
 
@@ -167,7 +238,7 @@ public class ReactivityPanel extends JTapeGroup implements ItemListener {
         // button.setActionCommand(c);
         btnMax.setActionCommand(c);
         btnReal.setActionCommand(c);
-        btnUser.setActionCommand(c);
+        btnAdaptive.setActionCommand(c);
     }
 
 }
@@ -29,7 +29,11 @@ public enum SimControlCommand {
     /**
      * 
      */
-    STOP("/oxygen/actions/media-playback-stop.png", getString("stop"));
+    STOP("/oxygen/actions/media-playback-stop.png", getString("stop")),
+    /**
+     * Runs without graphical updates until a target time or step.
+     */
+    FAST_FORWARD("/oxygen/actions/player-time.png", getString("fast_forward"));
 
     private final String icon, tt;
 
@@ -209,10 +209,28 @@ public final class UpperBar extends JTape {
     }
 
     /**
-     * @return the reactivity level
+     * @return the largest share of the engine time the adaptive mode can
+     *         spend updating the GUI
      */
-    public int getReactivity() {
-        return reactivity.getUserReactivity();
+    public double getMaxOverhead() {
+        return reactivity.getMaxOverhead();
+    }
+
+    /**
+     * @return the ratio between simulation time and real time selected for
+     *         the real time mode
+     */
+    public double getRealTimeRatio() {
+        return reactivity.getRealTimeRatio();
+    }
+
+    /**
+     * @param ratio
+     *            the ratio between simulation time and real time actually
+     *            achieved, or NaN if unknown
+     */
+    public void setAchievedRatio(final double ratio) {
+        reactivity.setAchievedRatio(ratio);
     }
 
     /**
@@ -261,6 +279,7 @@ public final class UpperBar extends JTape {
         scp.setButtonEnabled(SimControlCommand.PAUSE, b);
         scp.setButtonEnabled(SimControlCommand.STEP, !b);
         scp.setButtonEnabled(SimControlCommand.STOP, true);
+        scp.setButtonEnabled(SimControlCommand.FAST_FORWARD, !b);
     }
 
     /**
@@ -278,6 +297,7 @@ public final class UpperBar extends JTape {
         scp.setButtonEnabled(SimControlCommand.PAUSE, false);
         scp.setButtonEnabled(SimControlCommand.STEP, b);
         scp.setButtonEnabled(SimControlCommand.STOP, false);
+        scp.setButtonEnabled(SimControlCommand.FAST_FORWARD, b);
     }
 
     /**
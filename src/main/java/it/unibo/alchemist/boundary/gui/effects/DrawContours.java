@@ -0,0 +1,416 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.math3.util.FastMath;
+import org.danilopianini.lang.HashUtils;
+import org.danilopianini.lang.RangedInteger;
+import org.danilopianini.view.ExportForGUI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unibo.alchemist.SupportedIncarnations;
+import it.unibo.alchemist.boundary.gui.util.RenderingExecutor;
+import it.unibo.alchemist.model.interfaces.Molecule;
+
+/**
+ * Draws the isolines of a molecule property. The property is sampled on a
+ * regular grid covering the nodes, with inverse distance weighting over the
+ * nodes binned in the grid cells. Marching squares then run in parallel over
+ * blocks of grid rows, and the resulting segments are merged into polylines.
+ *
+ * Polylines are kept in environment coordinates, and traced again only when
+ * node positions or values change: panning, zooming and rotating the view
+ * only cost a transform.
+ */
+public class DrawContours implements FrameEffect {
+
+    private static final long serialVersionUID = 4937815233401877152L;
+    private static final Logger L = LoggerFactory.getLogger(DrawContours.class);
+    private static final int MAX_COLOUR_VALUE = 255;
+    private static final int PROPERTY_SCALE = 10;
+    private static final int DEFAULT_LEVELS = 9;
+    private static final int MAX_LEVELS = 50;
+    private static final int DEFAULT_RESOLUTION = 100;
+    private static final int MAX_RESOLUTION = 400;
+    private static final int MIN_RESOLUTION = 10;
+    private static final int DEFAULT_REACH = 2;
+    private static final int MAX_REACH = 10;
+    private static final int ROWS_PER_BLOCK = 8;
+    private static final float COLD_HUE = 2f / 3;
+    private static final double HALF = 0.5;
+    private static final int ALPHA_SHIFT = 24;
+    private static final int RGB_MASK = 0xFFFFFF;
+    /*
+     * Pairs of crossed cell edges for each marching squares case. Edges are
+     * numbered bottom, right, top, left. Saddles (5 and 10) are resolved
+     * separately.
+     */
+    private static final int[][] CASES = {
+        {}, {3, 0}, {0, 1}, {3, 1}, {1, 2}, {}, {0, 2}, {3, 2},
+        {3, 2}, {0, 2}, {}, {1, 2}, {3, 1}, {0, 1}, {3, 0}, {},
+    };
+    private static final int SADDLE_A = 5;
+    private static final int SADDLE_B = 10;
+    private static final int[] SEPARATE_EVEN = {3, 0, 1, 2};
+    private static final int[] SEPARATE_ODD = {0, 1, 2, 3};
+    private static final int CORNER_1 = 1;
+    private static final int CORNER_2 = 2;
+    private static final int CORNER_3 = 4;
+    private static final int CORNER_4 = 8;
+
+    @ExportForGUI(nameToExport = "Incarnation to use")
+    private SupportedIncarnations incarnation = SupportedIncarnations.SAPERE;
+    @ExportForGUI(nameToExport = "Molecule")
+    private String molString = "";
+    @ExportForGUI(nameToExport = "Molecule property")
+    private String property = "";
+    @ExportForGUI(nameToExport = "Number of isolines")
+    private RangedInteger levels = new RangedInteger(1, MAX_LEVELS, DEFAULT_LEVELS);
+    @ExportForGUI(nameToExport = "Grid cells on the longest side")
+    private RangedInteger resolution = new RangedInteger(MIN_RESOLUTION, MAX_RESOLUTION, DEFAULT_RESOLUTION);
+    @ExportForGUI(nameToExport = "Interpolation reach (cells)")
+    private RangedInteger reach = new RangedInteger(1, MAX_REACH, DEFAULT_REACH);
+    @ExportForGUI(nameToExport = "A")
+    private RangedInteger alpha = new RangedInteger(0, MAX_COLOUR_VALUE, MAX_COLOUR_VALUE);
+    @ExportForGUI(nameToExport = "Reverse effect")
+    private boolean reverse;
+    @ExportForGUI(nameToExport = "Property order of magnitude")
+    private RangedInteger propoom = new RangedInteger(-PROPERTY_SCALE, PROPERTY_SCALE, 0);
+    @ExportForGUI(nameToExport = "Minimum property value")
+    private RangedInteger minprop = new RangedInteger(-PROPERTY_SCALE, PROPERTY_SCALE, 0);
+    @ExportForGUI(nameToExport = "Maximum property value")
+    private RangedInteger maxprop = new RangedInteger(-PROPERTY_SCALE, PROPERTY_SCALE, PROPERTY_SCALE);
+
+    private transient Molecule molecule;
+    private transient Object molStringCached;
+    private transient SupportedIncarnations prevIncarnation;
+    private transient List<Object> tracedSettings;
+    private transient double[] tracedXs;
+    private transient double[] tracedYs;
+    private transient boolean[] tracedPresence;
+    private transient double[] tracedValues;
+    private transient Path2D[] isolines;
+
+    @Override
+    public void draw(final Graphics2D g, final FrameContext context) {
+        updateMolecule();
+        final Molecule mol = molecule;
+        if (mol == null) {
+            return;
+        }
+        final double minV = minprop.getVal() * FastMath.pow(PROPERTY_SCALE, propoom.getVal());
+        final double maxV = maxprop.getVal() * FastMath.pow(PROPERTY_SCALE, propoom.getVal());
+        if (minV >= maxV) {
+            return;
+        }
+        final MoleculePropertyCache cache = context.getCache();
+        final double[] xs = cache.getEnvXs();
+        final double[] ys = cache.getEnvYs();
+        final boolean[] presence = cache.getPresence(incarnation, mol);
+        final double[] values = cache.getProperties(incarnation, mol, property);
+        final List<Object> settings = Arrays.asList(incarnation, mol, property, levels.getVal(),
+                resolution.getVal(), reach.getVal(), minV, maxV);
+        if (isolines == null || !settings.equals(tracedSettings)
+                || !Arrays.equals(xs, tracedXs) || !Arrays.equals(ys, tracedYs)
+                || !Arrays.equals(presence, tracedPresence) || !Arrays.equals(values, tracedValues)) {
+            isolines = trace(xs, ys, presence, values, minV, maxV, context);
+            tracedSettings = settings;
+            tracedXs = xs;
+            tracedYs = ys;
+            tracedPresence = presence;
+            tracedValues = values;
+        }
+        final AffineTransform envToView = context.getEnvToView();
+        final Color toRestore = g.getColor();
+        for (int l = 0; l < isolines.length; l++) {
+            final float level = isolines.length == 1 ? 0 : (float) l / (isolines.length - 1);
+            final int rgb = Color.HSBtoRGB(COLD_HUE * (reverse ? level : 1 - level), 1f, 1f);
+            g.setColor(new Color(rgb & RGB_MASK | alpha.getVal() << ALPHA_SHIFT, true));
+            g.draw(envToView.createTransformedShape(isolines[l]));
+        }
+        g.setColor(toRestore);
+    }
+
+    private Path2D[] trace(final double[] xs, final double[] ys, final boolean[] presence, final double[] values,
+            final double minV, final double maxV, final FrameContext context) {
+        final int count = levels.getVal();
+        final Path2D[] result = new Path2D[count];
+        /*
+         * Grid bounds
+         */
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < xs.length; i++) {
+            if (presence[i] && !Double.isNaN(values[i]) && !Double.isNaN(xs[i]) && !Double.isNaN(ys[i])) {
+                minX = Math.min(minX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxX = Math.max(maxX, xs[i]);
+                maxY = Math.max(maxY, ys[i]);
+            }
+        }
+        final double step = Math.max(maxX - minX, maxY - minY) / resolution.getVal();
+        if (!(step > 0) || Double.isInfinite(step)) {
+            Arrays.setAll(result, l -> new Path2D.Double());
+            return result;
+        }
+        final Grid grid = new Grid(minX, minY, step,
+                (int) ((maxX - minX) / step) + 2, (int) ((maxY - minY) / step) + 2, reach.getVal());
+        grid.bin(xs, ys, presence, values);
+        grid.sample();
+        RenderingExecutor.forEach(count, grid.size(), l -> {
+            final double level = minV + (l + 1) * (maxV - minV) / (count + 1);
+            result[l] = grid.isolines(level);
+        });
+        return result;
+    }
+
+    private void updateMolecule() {
+        if (!HashUtils.pointerEquals(molString, molStringCached) || !incarnation.equals(prevIncarnation)) {
+            molStringCached = molString;
+            prevIncarnation = incarnation;
+            /*
+             * Process in a separate thread: if it fails, does not kill EDT.
+             */
+            final Thread th = new Thread(() -> molecule = incarnation.createMolecule(molString));
+            th.start();
+            try {
+                th.join();
+            } catch (final InterruptedException e) {
+                L.error("Bug.", e);
+            }
+        }
+    }
+
+    @Override
+    public Color getColorSummary() {
+        return Color.BLUE;
+    }
+
+    /*
+     * Regular grid in environment coordinates. Vertex (i, j) lies at
+     * (minX + i * step, minY + j * step).
+     */
+    private static final class Grid {
+        private final double minX;
+        private final double minY;
+        private final double step;
+        private final int columns;
+        private final int rows;
+        private final int reach;
+        private final int[] counts;
+        private final double[] sumXs;
+        private final double[] sumYs;
+        private final double[] sumValues;
+        private final double[] samples;
+
+        Grid(final double minX, final double minY, final double step, final int columns, final int rows, final int reach) {
+            this.minX = minX;
+            this.minY = minY;
+            this.step = step;
+            this.columns = columns;
+            this.rows = rows;
+            this.reach = reach;
+            counts = new int[columns * rows];
+            sumXs = new double[columns * rows];
+            sumYs = new double[columns * rows];
+            sumValues = new double[columns * rows];
+            samples = new double[columns * rows];
+        }
+
+        int size() {
+            return columns * rows;
+        }
+
+        void bin(final double[] xs, final double[] ys, final boolean[] presence, final double[] values) {
+            for (int i = 0; i < xs.length; i++) {
+                if (presence[i] && !Double.isNaN(values[i]) && !Double.isNaN(xs[i]) && !Double.isNaN(ys[i])) {
+                    final int cell = (int) ((ys[i] - minY) / step) * columns + (int) ((xs[i] - minX) / step);
+                    counts[cell]++;
+                    sumXs[cell] += xs[i];
+                    sumYs[cell] += ys[i];
+                    sumValues[cell] += values[i];
+                }
+            }
+        }
+
+        /*
+         * Inverse distance weighting over the cells within reach of each
+         * vertex. Vertices with no node in reach are NaN.
+         */
+        void sample() {
+            final double maxD2 = reach * step * reach * step;
+            final double epsilon = step * step / 4;
+            RenderingExecutor.forEach(rows, columns, j -> {
+                for (int i = 0; i < columns; i++) {
+                    final double x = minX + i * step;
+                    final double y = minY + j * step;
+                    double weights = 0;
+                    double weighted = 0;
+                    for (int cj = Math.max(0, j - reach); cj < Math.min(rows, j + reach); cj++) {
+                        for (int ci = Math.max(0, i - reach); ci < Math.min(columns, i + reach); ci++) {
+                            final int cell = cj * columns + ci;
+                            final int n = counts[cell];
+                            if (n > 0) {
+                                final double dx = sumXs[cell] / n - x;
+                                final double dy = sumYs[cell] / n - y;
+                                final double d2 = dx * dx + dy * dy;
+                                if (d2 <= maxD2) {
+                                    final double w = 1 / (d2 + epsilon);
+                                    weights += w * n;
+                                    weighted += w * sumValues[cell];
+                                }
+                            }
+                        }
+                    }
+                    samples[j * columns + i] = weights > 0 ? weighted / weights : Double.NaN;
+                }
+            });
+        }
+
+        Path2D isolines(final double level) {
+            /*
+             * Marching squares over blocks of rows, in parallel. Segments are
+             * pairs of edge ids: edge 2 * v goes right from vertex v, edge
+             * 2 * v + 1 goes up.
+             */
+            final int blocks = (rows - 1 + ROWS_PER_BLOCK - 1) / ROWS_PER_BLOCK;
+            final int[][] segments = new int[blocks][];
+            RenderingExecutor.forEach(blocks, ROWS_PER_BLOCK * columns, b -> segments[b] = march(level,
+                    b * ROWS_PER_BLOCK, Math.min(rows - 1, (b + 1) * ROWS_PER_BLOCK)));
+            final int[] all = Arrays.stream(segments).flatMapToInt(Arrays::stream).toArray();
+            return merge(all, level);
+        }
+
+        private int[] march(final double level, final int fromRow, final int toRow) {
+            int[] result = new int[(toRow - fromRow) * (columns - 1) * 2];
+            int size = 0;
+            for (int j = fromRow; j < toRow; j++) {
+                for (int i = 0; i < columns - 1; i++) {
+                    final int v = j * columns + i;
+                    final double c0 = samples[v];
+                    final double c1 = samples[v + 1];
+                    final double c2 = samples[v + columns + 1];
+                    final double c3 = samples[v + columns];
+                    if (Double.isNaN(c0) || Double.isNaN(c1) || Double.isNaN(c2) || Double.isNaN(c3)) {
+                        continue;
+                    }
+                    final int index = (c0 >= level ? CORNER_1 : 0) | (c1 >= level ? CORNER_2 : 0)
+                            | (c2 >= level ? CORNER_3 : 0) | (c3 >= level ? CORNER_4 : 0);
+                    final int[] crossed;
+                    if (index == SADDLE_A || index == SADDLE_B) {
+                        final boolean centerAbove = (c0 + c1 + c2 + c3) / 4 >= level;
+                        crossed = centerAbove == (index == SADDLE_A) ? SEPARATE_ODD : SEPARATE_EVEN;
+                    } else {
+                        crossed = CASES[index];
+                    }
+                    if (size + crossed.length > result.length) {
+                        result = Arrays.copyOf(result, result.length * 2);
+                    }
+                    for (final int edge : crossed) {
+                        result[size++] = edgeId(v, edge);
+                    }
+                }
+            }
+            return Arrays.copyOf(result, size);
+        }
+
+        private int edgeId(final int vertex, final int edge) {
+            switch (edge) {
+            case 0:
+                return 2 * vertex;
+            case 1:
+                return 2 * (vertex + 1) + 1;
+            case 2:
+                return 2 * (vertex + columns);
+            default:
+                return 2 * vertex + 1;
+            }
+        }
+
+        /*
+         * Chains segments sharing an edge into polylines.
+         */
+        private Path2D merge(final int[] segments, final double level) {
+            final Path2D path = new Path2D.Double();
+            final int count = segments.length / 2;
+            final int[] first = new int[2 * columns * rows];
+            final int[] second = new int[first.length];
+            Arrays.fill(first, -1);
+            Arrays.fill(second, -1);
+            for (int s = 0; s < count; s++) {
+                for (int end = 0; end < 2; end++) {
+                    final int edge = segments[2 * s + end];
+                    if (first[edge] < 0) {
+                        first[edge] = s;
+                    } else {
+                        second[edge] = s;
+                    }
+                }
+            }
+            final boolean[] visited = new boolean[count];
+            for (int s = 0; s < count; s++) {
+                if (!visited[s]) {
+                    /*
+                     * Walk backwards to the start of the chain (or around the
+                     * loop), then forward emitting points.
+                     */
+                    int start = s;
+                    int startEdge = segments[2 * s];
+                    for (int prev = other(first, second, startEdge, start); prev >= 0 && prev != s;
+                            prev = other(first, second, startEdge, start)) {
+                        startEdge = otherEnd(segments, prev, startEdge);
+                        start = prev;
+                    }
+                    moveTo(path, startEdge, level, true);
+                    int edge = startEdge;
+                    for (int cur = start; cur >= 0 && !visited[cur]; cur = other(first, second, edge, cur)) {
+                        visited[cur] = true;
+                        edge = otherEnd(segments, cur, edge);
+                        moveTo(path, edge, level, false);
+                    }
+                }
+            }
+            return path;
+        }
+
+        private static int other(final int[] first, final int[] second, final int edge, final int segment) {
+            return first[edge] == segment ? second[edge] : first[edge];
+        }
+
+        private static int otherEnd(final int[] segments, final int segment, final int edge) {
+            return segments[2 * segment] == edge ? segments[2 * segment + 1] : segments[2 * segment];
+        }
+
+        private void moveTo(final Path2D path, final int edge, final double level, final boolean newLine) {
+            final int a = edge / 2;
+            final int b = edge % 2 == 0 ? a + 1 : a + columns;
+            final double va = samples[a];
+            final double vb = samples[b];
+            final double t = va == vb ? HALF : (level - va) / (vb - va);
+            final double x = minX + (a % columns + (edge % 2 == 0 ? t : 0)) * step;
+            final double y = minY + (a / columns + (edge % 2 == 0 ? 0 : t)) * step;
+            if (newLine) {
+                path.moveTo(x, y);
+            } else {
+                path.lineTo(x, y);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,438 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.util.FastMath;
+import org.danilopianini.lang.HashUtils;
+import org.danilopianini.lang.RangedInteger;
+import org.danilopianini.view.ExportForGUI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unibo.alchemist.SupportedIncarnations;
+import it.unibo.alchemist.boundary.gui.util.RenderingExecutor;
+import it.unibo.alchemist.boundary.wormhole.interfaces.IWormhole2D;
+import it.unibo.alchemist.model.interfaces.Molecule;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * Draws the value of a molecule property as a continuous field, interpolating
+ * the node values over the view with either inverse distance weighting or a
+ * Gaussian kernel.
+ *
+ * Nodes are first binned in an environment-space grid whose cells are as
+ * large as a sample of the field: each cell only keeps the number of nodes,
+ * their centroid and the sum of their values. The field is then sampled on a
+ * low resolution raster, split in tiles evaluated in parallel, and upscaled
+ * when drawn. The cost of a sample only depends on the kernel radius, not on
+ * the number of nodes. Across frames, only the tiles close to a grid cell
+ * whose content changed get evaluated again.
+ */
+public class DrawField implements FrameEffect {
+
+    /**
+     * Interpolation kernel.
+     */
+    public enum Kernel {
+        /**
+         * Inverse square distance weighting.
+         */
+        InverseDistance,
+        /**
+         * Gaussian kernel, whose standard deviation is a third of the radius.
+         */
+        Gaussian;
+
+        @Override
+        public String toString() {
+            return this == InverseDistance ? "Inverse distance" : "Gaussian";
+        }
+    }
+
+    private static final long serialVersionUID = -2871862049406478112L;
+    private static final Logger L = LoggerFactory.getLogger(DrawField.class);
+    private static final int MAX_COLOUR_VALUE = 255;
+    private static final int DEFAULT_ALPHA = 160;
+    private static final int PROPERTY_SCALE = 10;
+    private static final int DEFAULT_RADIUS = 40;
+    private static final int MAX_RADIUS = 200;
+    private static final int MIN_RADIUS = 4;
+    private static final int DEFAULT_RESOLUTION = 8;
+    private static final int MAX_RESOLUTION = 32;
+    private static final int MIN_RESOLUTION = 2;
+    private static final int TILE = 16;
+    private static final int PALETTE_SIZE = 256;
+    private static final float COLD_HUE = 2f / 3;
+    private static final int ALPHA_SHIFT = 24;
+    private static final int RGB_MASK = 0xFFFFFF;
+    private static final double SIGMAS_PER_RADIUS = 3;
+
+    @ExportForGUI(nameToExport = "Incarnation to use")
+    private SupportedIncarnations incarnation = SupportedIncarnations.SAPERE;
+    @ExportForGUI(nameToExport = "Molecule")
+    private String molString = "";
+    @ExportForGUI(nameToExport = "Molecule property")
+    private String property = "";
+    @ExportForGUI(nameToExport = "Kernel")
+    private Kernel kernel = Kernel.InverseDistance;
+    @ExportForGUI(nameToExport = "Kernel radius (pixels)")
+    private RangedInteger radius = new RangedInteger(MIN_RADIUS, MAX_RADIUS, DEFAULT_RADIUS);
+    @ExportForGUI(nameToExport = "Sample size (pixels)")
+    private RangedInteger resolution = new RangedInteger(MIN_RESOLUTION, MAX_RESOLUTION, DEFAULT_RESOLUTION);
+    @ExportForGUI(nameToExport = "A")
+    private RangedInteger alpha = new RangedInteger(0, MAX_COLOUR_VALUE, DEFAULT_ALPHA);
+    @ExportForGUI(nameToExport = "Reverse effect")
+    private boolean reverse;
+    @ExportForGUI(nameToExport = "Property order of magnitude")
+    private RangedInteger propoom = new RangedInteger(-PROPERTY_SCALE, PROPERTY_SCALE, 0);
+    @ExportForGUI(nameToExport = "Minimum property value")
+    private RangedInteger minprop = new RangedInteger(-PROPERTY_SCALE, PROPERTY_SCALE, 0);
+    @ExportForGUI(nameToExport = "Maximum property value")
+    private RangedInteger maxprop = new RangedInteger(-PROPERTY_SCALE, PROPERTY_SCALE, PROPERTY_SCALE);
+
+    private transient Molecule molecule;
+    private transient Object molStringCached;
+    private transient SupportedIncarnations prevIncarnation;
+    private transient FieldState state;
+
+    @Override
+    public void draw(final Graphics2D g, final FrameContext context) {
+        updateMolecule();
+        final Molecule mol = molecule;
+        if (mol == null || context.getWidth() <= 0 || context.getHeight() <= 0) {
+            return;
+        }
+        final double minV = minprop.getVal() * FastMath.pow(PROPERTY_SCALE, propoom.getVal());
+        final double maxV = maxprop.getVal() * FastMath.pow(PROPERTY_SCALE, propoom.getVal());
+        if (minV >= maxV) {
+            return;
+        }
+        final int res = resolution.getVal();
+        final List<Object> settings = Arrays.asList(incarnation, mol, property, kernel,
+                radius.getVal(), res, alpha.getVal(), reverse, minV, maxV);
+        final FieldState previous = state;
+        final FieldState current = FieldState.build(previous, context, res, radius.getVal(), settings);
+        if (current == null) {
+            return;
+        }
+        state = current;
+        final MoleculePropertyCache cache = context.getCache();
+        current.bin(cache.getEnvXs(), cache.getEnvYs(),
+                cache.getPresence(incarnation, mol),
+                cache.getProperties(incarnation, mol, property));
+        final int[] palette = palette(alpha.getVal(), reverse);
+        current.evaluate(previous, kernel, minV, maxV, palette, context);
+        final Object interpolation = g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(current.image, 0, 0, current.columns * res, current.rows * res, null);
+        if (interpolation != null) {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        }
+    }
+
+    private static int[] palette(final int alpha, final boolean reverse) {
+        final int[] palette = new int[PALETTE_SIZE];
+        for (int i = 0; i < PALETTE_SIZE; i++) {
+            final float level = (float) i / (PALETTE_SIZE - 1);
+            final float hue = COLD_HUE * (reverse ? level : 1 - level);
+            palette[i] = alpha << ALPHA_SHIFT | Color.HSBtoRGB(hue, 1f, 1f) & RGB_MASK;
+        }
+        return palette;
+    }
+
+    private void updateMolecule() {
+        if (!HashUtils.pointerEquals(molString, molStringCached) || !incarnation.equals(prevIncarnation)) {
+            molStringCached = molString;
+            prevIncarnation = incarnation;
+            /*
+             * Process in a separate thread: if it fails, does not kill EDT.
+             */
+            final Thread th = new Thread(() -> molecule = incarnation.createMolecule(molString));
+            th.start();
+            try {
+                th.join();
+            } catch (final InterruptedException e) {
+                L.error("Bug.", e);
+            }
+        }
+    }
+
+    @Override
+    public Color getColorSummary() {
+        return Color.RED;
+    }
+
+    /*
+     * Sampling raster, node binning grid and tile bookkeeping of a frame.
+     * Geometry is shared with the previous frame as long as the view, the
+     * sample size and the radius do not change.
+     */
+    private static final class FieldState {
+        private final List<Object> settings;
+        private final double[] view;
+        private final int columns;
+        private final int rows;
+        private final BufferedImage image;
+        private final int[] pixels;
+        private final double[] sampleXs;
+        private final double[] sampleYs;
+        private final double minX;
+        private final double minY;
+        private final double cellSize;
+        private final double radius;
+        private final int reach;
+        private final int gridColumns;
+        private final int gridRows;
+        private final int[] tileBounds;
+        private final int tileColumns;
+        private final int tileRows;
+        private int[] counts;
+        private double[] sumXs;
+        private double[] sumYs;
+        private double[] sumValues;
+
+        private FieldState(final FieldState geometry, final List<Object> settings, final double[] view) {
+            this.settings = settings;
+            this.view = view;
+            columns = geometry.columns;
+            rows = geometry.rows;
+            image = geometry.image;
+            pixels = geometry.pixels;
+            sampleXs = geometry.sampleXs;
+            sampleYs = geometry.sampleYs;
+            minX = geometry.minX;
+            minY = geometry.minY;
+            cellSize = geometry.cellSize;
+            radius = geometry.radius;
+            reach = geometry.reach;
+            gridColumns = geometry.gridColumns;
+            gridRows = geometry.gridRows;
+            tileBounds = geometry.tileBounds;
+            tileColumns = geometry.tileColumns;
+            tileRows = geometry.tileRows;
+        }
+
+        private FieldState(final List<Object> settings, final double[] view, final FrameContext context,
+                final int res, final double scale, final int radiusPixels) {
+            this.settings = settings;
+            this.view = view;
+            columns = (context.getWidth() + res - 1) / res;
+            rows = (context.getHeight() + res - 1) / res;
+            image = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            sampleXs = new double[columns * rows];
+            sampleYs = new double[columns * rows];
+            final IWormhole2D wormhole = context.getWormhole();
+            RenderingExecutor.forEach(sampleXs.length, s -> {
+                final Position p = wormhole.getEnvPoint(new Point(s % columns * res + res / 2, s / columns * res + res / 2));
+                sampleXs[s] = p.getCoordinate(0);
+                sampleYs[s] = p.getCoordinate(1);
+            });
+            cellSize = res * scale;
+            radius = radiusPixels * scale;
+            reach = (int) Math.ceil(radius / cellSize);
+            minX = Arrays.stream(sampleXs).min().getAsDouble() - radius;
+            minY = Arrays.stream(sampleYs).min().getAsDouble() - radius;
+            gridColumns = (int) ((Arrays.stream(sampleXs).max().getAsDouble() + radius - minX) / cellSize) + 1;
+            gridRows = (int) ((Arrays.stream(sampleYs).max().getAsDouble() + radius - minY) / cellSize) + 1;
+            /*
+             * For each tile, the range of grid cells that may contribute to
+             * its samples.
+             */
+            tileColumns = (columns + TILE - 1) / TILE;
+            tileRows = (rows + TILE - 1) / TILE;
+            tileBounds = new int[tileColumns * tileRows * 4];
+            for (int t = 0; t < tileColumns * tileRows; t++) {
+                int minCol = Integer.MAX_VALUE;
+                int minRow = Integer.MAX_VALUE;
+                int maxCol = Integer.MIN_VALUE;
+                int maxRow = Integer.MIN_VALUE;
+                for (final int s : samplesOf(t)) {
+                    final int col = column(sampleXs[s]);
+                    final int row = row(sampleYs[s]);
+                    minCol = Math.min(minCol, col);
+                    maxCol = Math.max(maxCol, col);
+                    minRow = Math.min(minRow, row);
+                    maxRow = Math.max(maxRow, row);
+                }
+                tileBounds[t * 4] = Math.max(0, minCol - reach);
+                tileBounds[t * 4 + 1] = Math.max(0, minRow - reach);
+                tileBounds[t * 4 + 2] = Math.min(gridColumns - 1, maxCol + reach);
+                tileBounds[t * 4 + 3] = Math.min(gridRows - 1, maxRow + reach);
+            }
+        }
+
+        static FieldState build(final FieldState previous, final FrameContext context,
+                final int res, final int radiusPixels, final List<Object> settings) {
+            final IWormhole2D wormhole = context.getWormhole();
+            final Position origin = wormhole.getEnvPoint(new Point(0, 0));
+            final Position right = wormhole.getEnvPoint(new Point(context.getWidth(), 0));
+            final Position down = wormhole.getEnvPoint(new Point(0, context.getHeight()));
+            /*
+             * Everything the geometry depends on: the sample size and the
+             * radius set the raster and the binning grid as the view does.
+             */
+            final double[] view = {
+                res, radiusPixels,
+                context.getWidth(), context.getHeight(),
+                origin.getCoordinate(0), origin.getCoordinate(1),
+                right.getCoordinate(0), right.getCoordinate(1),
+                down.getCoordinate(0), down.getCoordinate(1),
+            };
+            if (previous != null && Arrays.equals(view, previous.view)) {
+                return new FieldState(previous, settings, view);
+            }
+            final double scale = origin.getDistanceTo(right) / context.getWidth();
+            if (!(scale > 0) || Double.isInfinite(scale)) {
+                return null;
+            }
+            return new FieldState(settings, view, context, res, scale, radiusPixels);
+        }
+
+        void bin(final double[] xs, final double[] ys, final boolean[] presence, final double[] values) {
+            final int cells = gridColumns * gridRows;
+            counts = new int[cells];
+            sumXs = new double[cells];
+            sumYs = new double[cells];
+            sumValues = new double[cells];
+            for (int i = 0; i < xs.length; i++) {
+                final double x = xs[i];
+                final double y = ys[i];
+                final double v = values[i];
+                if (presence[i] && !Double.isNaN(v) && x >= minX && y >= minY) {
+                    final int col = column(x);
+                    final int row = row(y);
+                    if (col < gridColumns && row < gridRows) {
+                        final int cell = row * gridColumns + col;
+                        counts[cell]++;
+                        sumXs[cell] += x;
+                        sumYs[cell] += y;
+                        sumValues[cell] += v;
+                    }
+                }
+            }
+        }
+
+        void evaluate(final FieldState previous, final Kernel kernel, final double minV, final double maxV,
+                final int[] palette, final FrameContext context) {
+            final int[] dirty = dirtyTiles(previous);
+            if (dirty.length == 0) {
+                return;
+            }
+            final double r2 = radius * radius;
+            final double sigma = radius / SIGMAS_PER_RADIUS;
+            final double twoSigma2 = 2 * sigma * sigma;
+            final double epsilon = cellSize * cellSize / 4;
+            RenderingExecutor.forEach(dirty.length, TILE * TILE, d -> {
+                final int t = dirty[d];
+                for (final int s : samplesOf(t)) {
+                    final double x = sampleXs[s];
+                    final double y = sampleYs[s];
+                    final int col = column(x);
+                    final int row = row(y);
+                    double weights = 0;
+                    double weighted = 0;
+                    for (int gr = Math.max(0, row - reach); gr <= Math.min(gridRows - 1, row + reach); gr++) {
+                        for (int gc = Math.max(0, col - reach); gc <= Math.min(gridColumns - 1, col + reach); gc++) {
+                            final int cell = gr * gridColumns + gc;
+                            final int n = counts[cell];
+                            if (n > 0) {
+                                final double dx = sumXs[cell] / n - x;
+                                final double dy = sumYs[cell] / n - y;
+                                final double d2 = dx * dx + dy * dy;
+                                if (d2 <= r2) {
+                                    final double w = kernel == Kernel.Gaussian
+                                            ? FastMath.exp(-d2 / twoSigma2)
+                                            : 1 / (d2 + epsilon);
+                                    weights += w * n;
+                                    weighted += w * sumValues[cell];
+                                }
+                            }
+                        }
+                    }
+                    if (weights > 0) {
+                        final double level = Math.min(Math.max((weighted / weights - minV) / (maxV - minV), 0), 1);
+                        pixels[s] = palette[(int) (level * (palette.length - 1))];
+                    } else {
+                        pixels[s] = 0;
+                    }
+                }
+            });
+        }
+
+        /*
+         * Tiles are dirty if a grid cell within their reach changed. Changed
+         * cells are counted through a 2D prefix sum.
+         */
+        private int[] dirtyTiles(final FieldState previous) {
+            final int tiles = tileColumns * tileRows;
+            if (previous == null || previous.counts == null
+                    || previous.tileBounds != tileBounds || !previous.settings.equals(settings)) {
+                return IntStream.range(0, tiles).toArray();
+            }
+            final int stride = gridColumns + 1;
+            final int[] changed = new int[stride * (gridRows + 1)];
+            for (int row = 0; row < gridRows; row++) {
+                for (int col = 0; col < gridColumns; col++) {
+                    final int cell = row * gridColumns + col;
+                    final int differs = counts[cell] != previous.counts[cell]
+                            || sumXs[cell] != previous.sumXs[cell]
+                            || sumYs[cell] != previous.sumYs[cell]
+                            || sumValues[cell] != previous.sumValues[cell] ? 1 : 0;
+                    changed[(row + 1) * stride + col + 1] = differs
+                            + changed[row * stride + col + 1]
+                            + changed[(row + 1) * stride + col]
+                            - changed[row * stride + col];
+                }
+            }
+            return IntStream.range(0, tiles).filter(t -> {
+                final int c0 = tileBounds[t * 4];
+                final int r0 = tileBounds[t * 4 + 1];
+                final int c1 = tileBounds[t * 4 + 2] + 1;
+                final int r1 = tileBounds[t * 4 + 3] + 1;
+                return c1 > c0 && r1 > r0 && changed[r1 * stride + c1] - changed[r0 * stride + c1]
+                        - changed[r1 * stride + c0] + changed[r0 * stride + c0] > 0;
+            }).toArray();
+        }
+
+        private int[] samplesOf(final int tile) {
+            final int c0 = tile % tileColumns * TILE;
+            final int r0 = tile / tileColumns * TILE;
+            final int c1 = Math.min(columns, c0 + TILE);
+            final int r1 = Math.min(rows, r0 + TILE);
+            final int[] result = new int[(c1 - c0) * (r1 - r0)];
+            int i = 0;
+            for (int r = r0; r < r1; r++) {
+                for (int c = c0; c < c1; c++) {
+                    result[i++] = r * columns + c;
+                }
+            }
+            return result;
+        }
+
+        private int column(final double x) {
+            return (int) ((x - minX) / cellSize);
+        }
+
+        private int row(final double y) {
+            return (int) ((y - minY) / cellSize);
+        }
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import org.danilopianini.lang.HashUtils;
+import org.danilopianini.lang.RangedInteger;
+import org.danilopianini.view.ExportForGUI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unibo.alchemist.SupportedIncarnations;
+import it.unibo.alchemist.model.interfaces.Molecule;
+
+/**
+ * Writes a label next to each node: its id, or the value of a molecule
+ * property. Labels are pre-rendered once in a {@link GlyphCache}, labels that
+ * would overlap already drawn ones are skipped, and nothing is drawn when the
+ * view is zoomed out so much that labels could not be read anyway.
+ */
+public class DrawLabel implements FrameEffect {
+
+    /**
+     * What to write.
+     */
+    public enum Content {
+        /**
+         * The node id.
+         */
+        NodeId,
+        /**
+         * The value of the molecule property.
+         */
+        MoleculeProperty;
+
+        @Override
+        public String toString() {
+            return this == NodeId ? "Node id" : "Molecule property";
+        }
+    }
+
+    private static final long serialVersionUID = 6358413528497617640L;
+    private static final Logger L = LoggerFactory.getLogger(DrawLabel.class);
+    private static final int CACHE_SIZE = 4096;
+    private static final int DEFAULT_FONT_SIZE = 10;
+    private static final int MAX_FONT_SIZE = 48;
+    private static final int MIN_FONT_SIZE = 6;
+    private static final int MAX_DIGITS = 8;
+    private static final int DEFAULT_DIGITS = 2;
+    private static final int MAX_COLOUR_VALUE = 255;
+    private static final int MAX_SPACING = 100;
+    private static final int OFFSET = 3;
+
+    @ExportForGUI(nameToExport = "Incarnation to use")
+    private SupportedIncarnations incarnation = SupportedIncarnations.SAPERE;
+    @ExportForGUI(nameToExport = "Content")
+    private Content content = Content.NodeId;
+    @ExportForGUI(nameToExport = "Molecule")
+    private String molString = "";
+    @ExportForGUI(nameToExport = "Molecule property")
+    private String property = "";
+    @ExportForGUI(nameToExport = "Decimal digits")
+    private RangedInteger digits = new RangedInteger(0, MAX_DIGITS, DEFAULT_DIGITS);
+    @ExportForGUI(nameToExport = "Font size")
+    private RangedInteger fontSize = new RangedInteger(MIN_FONT_SIZE, MAX_FONT_SIZE, DEFAULT_FONT_SIZE);
+    @ExportForGUI(nameToExport = "R")
+    private RangedInteger red = new RangedInteger(0, MAX_COLOUR_VALUE);
+    @ExportForGUI(nameToExport = "G")
+    private RangedInteger green = new RangedInteger(0, MAX_COLOUR_VALUE);
+    @ExportForGUI(nameToExport = "B")
+    private RangedInteger blue = new RangedInteger(0, MAX_COLOUR_VALUE);
+    @ExportForGUI(nameToExport = "A")
+    private RangedInteger alpha = new RangedInteger(0, MAX_COLOUR_VALUE, MAX_COLOUR_VALUE);
+    @ExportForGUI(nameToExport = "Skip overlapping labels")
+    private boolean cull = true;
+    @ExportForGUI(nameToExport = "Minimum average node spacing (pixels)")
+    private RangedInteger minSpacing = new RangedInteger(0, MAX_SPACING, DEFAULT_FONT_SIZE);
+
+    private Color colorCache = Color.BLACK;
+    private transient GlyphCache glyphs;
+    private transient Font font;
+    private transient Molecule molecule;
+    private transient Object molStringCached;
+    private transient SupportedIncarnations prevIncarnation;
+
+    @Override
+    public void draw(final Graphics2D g, final FrameContext context) {
+        final int count = context.size();
+        if (count == 0) {
+            return;
+        }
+        /*
+         * The average spacing between the nodes in sight grows with the zoom:
+         * below the threshold labels would be an unreadable blob.
+         */
+        final double spacing = Math.sqrt((double) context.getWidth() * context.getHeight() / count);
+        if (spacing < minSpacing.getVal()) {
+            return;
+        }
+        if (glyphs == null) {
+            glyphs = new GlyphCache(CACHE_SIZE);
+        }
+        if (font == null || font.getSize() != fontSize.getVal()) {
+            font = new Font(Font.SANS_SERIF, Font.PLAIN, fontSize.getVal());
+        }
+        colorCache = new Color(red.getVal(), green.getVal(), blue.getVal(), alpha.getVal());
+        final String[] texts = texts(context);
+        /*
+         * Draw in id order, so that the same labels win the culling from a
+         * frame to the next one, and labels do not flicker.
+         */
+        final int[] order = IntStream.range(0, count)
+                .filter(slot -> texts[slot] != null)
+                .boxed()
+                .sorted(Comparator.comparingInt(slot -> context.getNode(slot).getId()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        final int cell = Math.max(1, glyphs.getLineHeight(font));
+        final OccupancyGrid grid = cull ? new OccupancyGrid(context.getWidth(), context.getHeight(), cell) : null;
+        final int argb = colorCache.getRGB();
+        final int[] xs = context.getXs();
+        final int[] ys = context.getYs();
+        for (final int slot : order) {
+            final BufferedImage label = glyphs.get(texts[slot], font, argb);
+            final int x = xs[slot] + OFFSET;
+            final int y = ys[slot] - label.getHeight() - OFFSET;
+            if (grid == null || grid.claim(x, y, label.getWidth(), label.getHeight())) {
+                g.drawImage(label, x, y, null);
+            }
+        }
+    }
+
+    private String[] texts(final FrameContext context) {
+        final String[] texts = new String[context.size()];
+        if (content == Content.NodeId) {
+            for (int slot = 0; slot < texts.length; slot++) {
+                texts[slot] = Integer.toString(context.getNode(slot).getId());
+            }
+            return texts;
+        }
+        updateMolecule();
+        final Molecule mol = molecule;
+        if (mol != null) {
+            final boolean[] presence = context.getCache().getPresence(incarnation, mol);
+            final double[] values = context.getCache().getProperties(incarnation, mol, property);
+            final int[] indexes = context.getIndexes();
+            final String format = "%." + digits.getVal() + "f";
+            for (int slot = 0; slot < texts.length; slot++) {
+                final int index = indexes[slot];
+                if (index >= 0 && presence[index] && !Double.isNaN(values[index])) {
+                    texts[slot] = String.format(format, values[index]);
+                }
+            }
+        }
+        return texts;
+    }
+
+    private void updateMolecule() {
+        if (!HashUtils.pointerEquals(molString, molStringCached) || !incarnation.equals(prevIncarnation)) {
+            molStringCached = molString;
+            prevIncarnation = incarnation;
+            /*
+             * Process in a separate thread: if it fails, does not kill EDT.
+             */
+            final Thread th = new Thread(() -> molecule = incarnation.createMolecule(molString));
+            th.start();
+            try {
+                th.join();
+            } catch (final InterruptedException e) {
+                L.error("Bug.", e);
+            }
+        }
+    }
+
+    @Override
+    public Optional<NodeFilter> getFilter() {
+        if (content == Content.MoleculeProperty) {
+            updateMolecule();
+            final Molecule mol = molecule;
+            if (mol != null) {
+                return Optional.of(NodeFilters.contains(mol));
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Color getColorSummary() {
+        return colorCache;
+    }
+
+    /*
+     * Screen-space grid of cells already covered by a label.
+     */
+    private static final class OccupancyGrid {
+        private final BitSet cells;
+        private final int columns;
+        private final int rows;
+        private final int cellSize;
+
+        OccupancyGrid(final int width, final int height, final int cellSize) {
+            this.cellSize = cellSize;
+            columns = width / cellSize + 1;
+            rows = height / cellSize + 1;
+            cells = new BitSet(columns * rows);
+        }
+
+        /*
+         * Marks the cells covered by the rectangle, if none of them is taken.
+         */
+        boolean claim(final int x, final int y, final int width, final int height) {
+            final int minCol = clamp(x / cellSize, columns);
+            final int maxCol = clamp((x + width - 1) / cellSize, columns);
+            final int minRow = clamp(y / cellSize, rows);
+            final int maxRow = clamp((y + height - 1) / cellSize, rows);
+            for (int row = minRow; row <= maxRow; row++) {
+                final int base = row * columns;
+                final int taken = cells.nextSetBit(base + minCol);
+                if (taken >= 0 && taken <= base + maxCol) {
+                    return false;
+                }
+            }
+            for (int row = minRow; row <= maxRow; row++) {
+                cells.set(row * columns + minCol, row * columns + maxCol + 1);
+            }
+            return true;
+        }
+
+        private static int clamp(final int value, final int size) {
+            return Math.max(0, Math.min(size - 1, value));
+        }
+    }
+
+}
@@ -15,6 +15,8 @@ import it.unibo.alchemist.model.interfaces.Node;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.util.Optional;
+import java.util.function.DoubleSupplier;
 
 import org.apache.commons.math3.util.FastMath;
 import org.danilopianini.lang.HashUtils;
@@ -27,7 +29,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 /**
  */
-public class DrawShape implements Effect {
+public class DrawShape implements StagedEffect {
 
     /**
      */
@@ -109,6 +111,32 @@ public class DrawShape implements Effect {
 
     @Override
     public void apply(final Graphics2D g, final Node<?> n, final int x, final int y) {
+        updateMolecule();
+        if (!molFilter || (molecule != null && n.contains(molecule))) {
+            draw(g, x, y, () -> incarnation.getProperty(n, molecule, property));
+        }
+    }
+
+    @Override
+    public void apply(final Graphics2D g, final Node<?> n, final int x, final int y, final MoleculePropertyCache cache, final int index) {
+        if (index < 0) {
+            apply(g, n, x, y);
+            return;
+        }
+        updateMolecule();
+        if (!molFilter || (molecule != null && cache.contains(incarnation, molecule, index))) {
+            draw(g, x, y, () -> cache.getProperty(incarnation, molecule, property, index));
+        }
+    }
+
+    @Override
+    public Optional<NodeFilter> getFilter() {
+        updateMolecule();
+        final Molecule mol = molecule;
+        return molFilter && mol != null ? Optional.of(NodeFilters.contains(mol)) : Optional.empty();
+    }
+
+    private void updateMolecule() {
         if (!HashUtils.pointerEquals(molString, molStringCached) || !incarnation.equals(prevIncarnation)) {
             molStringCached = molString;
             prevIncarnation = incarnation;
@@ -123,47 +151,124 @@ public class DrawShape implements Effect {
                 L.error("Bug.", e);
             }
         }
-        if (!molFilter || (molecule != null && n.contains(molecule))) {
-            final Color toRestore = g.getColor();
-            colorCache = new Color(red.getVal(), green.getVal(), blue.getVal(), alpha.getVal());
-            Color newcolor = colorCache;
-            if (molPropertyFilter && molecule != null) {
-                final int minV = (int) (minprop.getVal() * FastMath.pow(PROPERTY_SCALE, propoom.getVal()));
-                final int maxV = (int) (maxprop.getVal() * FastMath.pow(PROPERTY_SCALE, propoom.getVal()));
-                if (minV < maxV) {
-                    double propval = incarnation.getProperty(n, molecule, property);
-                    propval = Math.min(Math.max(propval, minV), maxV);
-                    propval = (propval - minV) / (maxV - minV);
-                    if (reverse) {
-                        propval = 1f - propval;
-                    }
-                    newcolor = c.alter(newcolor, (float) propval);
+    }
+
+    @Override
+    public Evaluator prepare(final MoleculePropertyCache cache) {
+        updateMolecule();
+        final Molecule mol = molecule;
+        if (molFilter && mol == null) {
+            return (index, out, slot) -> out.hide(slot);
+        }
+        colorCache = new Color(red.getVal(), green.getVal(), blue.getVal(), alpha.getVal());
+        final Color base = colorCache;
+        final int baseRGB = base.getRGB();
+        final boolean[] presence = molFilter ? cache.getPresence(incarnation, mol) : null;
+        final double minV = (int) (minprop.getVal() * FastMath.pow(PROPERTY_SCALE, propoom.getVal()));
+        final double maxV = (int) (maxprop.getVal() * FastMath.pow(PROPERTY_SCALE, propoom.getVal()));
+        final double[] props = molPropertyFilter && mol != null && minV < maxV
+                ? cache.getProperties(incarnation, mol, property)
+                : null;
+        final boolean rev = reverse;
+        final ColorChannel channel = c;
+        final double ks = (scaleFactor.getVal() - MIN_SCALE) * 2 / (double) (SCALE_DIFF);
+        final int sizex = size.getVal();
+        final int sizey = (int) Math.ceil(sizex * ks);
+        final byte shape = (byte) mode.ordinal();
+        return (index, out, slot) -> {
+            if (presence != null && !presence[index]) {
+                out.hide(slot);
+            } else if (props == null) {
+                out.set(slot, baseRGB, sizex, sizey, shape);
+            } else {
+                double propval = Math.min(Math.max(props[index], minV), maxV);
+                propval = (propval - minV) / (maxV - minV);
+                if (rev) {
+                    propval = 1f - propval;
                 }
+                out.set(slot, channel.alter(base, (float) propval).getRGB(), sizex, sizey, shape);
             }
-            g.setColor(newcolor);
-            final double ks = (scaleFactor.getVal() - MIN_SCALE) * 2 / (double) (SCALE_DIFF);
-            final int sizex = size.getVal();
-            final int startx = x - sizex / 2;
-            final int sizey = (int) Math.ceil(sizex * ks);
-            final int starty = y - sizey / 2;
-            switch (mode) {
-            case FillEllipse:
-                g.fillOval(startx, starty, sizex, sizey);
-                break;
-            case DrawEllipse:
-                g.drawOval(startx, starty, sizex, sizey);
-                break;
-            case DrawRectangle:
-                g.drawRect(startx, starty, sizex, sizey);
-                break;
-            case FillRectangle:
-                g.fillRect(startx, starty, sizex, sizey);
-                break;
-            default:
-                g.fillOval(startx, starty, sizex, sizey);
+        };
+    }
+
+    @Override
+    public void draw(final Graphics2D g, final NodeAttributes attributes, final int[] xs, final int[] ys) {
+        final Color toRestore = g.getColor();
+        final Mode[] modes = Mode.values();
+        Color current = null;
+        for (int i = 0; i < attributes.size(); i++) {
+            if (attributes.isVisible(i)) {
+                final int argb = attributes.getColor(i);
+                if (current == null || current.getRGB() != argb) {
+                    current = new Color(argb, true);
+                    g.setColor(current);
+                }
+                final int sizex = attributes.getWidth(i);
+                final int sizey = attributes.getHeight(i);
+                drawShape(g, modes[attributes.getShape(i)], xs[i] - sizex / 2, ys[i] - sizey / 2, sizex, sizey);
+            }
+        }
+        g.setColor(toRestore);
+    }
+
+    @Override
+    public boolean rasterize(final PointRasterizer rasterizer, final NodeAttributes attributes, final int[] xs, final int[] ys) {
+        switch (mode) {
+        case FillEllipse:
+            rasterizer.fill(attributes, xs, ys, PointRasterizer.Shape.CIRCLE);
+            return true;
+        case FillRectangle:
+            rasterizer.fill(attributes, xs, ys, PointRasterizer.Shape.SQUARE);
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static void drawShape(final Graphics2D g, final Mode m, final int startx, final int starty, final int sizex, final int sizey) {
+        switch (m) {
+        case FillEllipse:
+            g.fillOval(startx, starty, sizex, sizey);
+            break;
+        case DrawEllipse:
+            g.drawOval(startx, starty, sizex, sizey);
+            break;
+        case DrawRectangle:
+            g.drawRect(startx, starty, sizex, sizey);
+            break;
+        case FillRectangle:
+            g.fillRect(startx, starty, sizex, sizey);
+            break;
+        default:
+            g.fillOval(startx, starty, sizex, sizey);
+        }
+    }
+
+    private void draw(final Graphics2D g, final int x, final int y, final DoubleSupplier propertyValue) {
+        final Color toRestore = g.getColor();
+        colorCache = new Color(red.getVal(), green.getVal(), blue.getVal(), alpha.getVal());
+        Color newcolor = colorCache;
+        if (molPropertyFilter && molecule != null) {
+            final int minV = (int) (minprop.getVal() * FastMath.pow(PROPERTY_SCALE, propoom.getVal()));
+            final int maxV = (int) (maxprop.getVal() * FastMath.pow(PROPERTY_SCALE, propoom.getVal()));
+            if (minV < maxV) {
+                double propval = propertyValue.getAsDouble();
+                propval = Math.min(Math.max(propval, minV), maxV);
+                propval = (propval - minV) / (maxV - minV);
+                if (reverse) {
+                    propval = 1f - propval;
+                }
+                newcolor = c.alter(newcolor, (float) propval);
             }
-            g.setColor(toRestore);
         }
+        g.setColor(newcolor);
+        final double ks = (scaleFactor.getVal() - MIN_SCALE) * 2 / (double) (SCALE_DIFF);
+        final int sizex = size.getVal();
+        final int startx = x - sizex / 2;
+        final int sizey = (int) Math.ceil(sizex * ks);
+        final int starty = y - sizey / 2;
+        drawShape(g, mode, startx, starty, sizex, sizey);
+        g.setColor(toRestore);
     }
 
     /**
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.danilopianini.lang.RangedInteger;
+import org.danilopianini.view.ExportForGUI;
+
+import it.unibo.alchemist.boundary.gui.util.RenderingExecutor;
+
+/**
+ * Colors the nodes by connected component or by degree, and reports the
+ * number and the sizes of the connected components of the whole network:
+ * displays showing it capture every node, see
+ * {@link FrameEffect#requiresFullCapture()}.
+ *
+ * Components are computed with union-find over the frame topology. When the
+ * topology was updated incrementally and only gained links, the previous
+ * components are merged along the new links. Otherwise, a lock-free
+ * union-find runs in parallel over all the links.
+ */
+public class DrawTopology implements FrameEffect {
+
+    /**
+     * What to show.
+     */
+    public enum Mode {
+        /**
+         * A color per connected component.
+         */
+        ConnectedComponents,
+        /**
+         * A color ramp on the node degree.
+         */
+        Degree;
+
+        @Override
+        public String toString() {
+            return this == ConnectedComponents ? "Connected components" : "Degree";
+        }
+    }
+
+    private static final long serialVersionUID = -1590215460413925542L;
+    private static final int DEFAULT_SIZE = 7;
+    private static final int MAX_SIZE = 50;
+    private static final int DEFAULT_DEGREE = 10;
+    private static final int MAX_DEGREE = 500;
+    private static final int MAX_REPORTED = 5;
+    private static final int TEXT_MARGIN = 15;
+    private static final float GOLDEN_RATIO = 0.618_034f;
+    private static final float SATURATION = 0.8f;
+    private static final float BRIGHTNESS = 0.9f;
+    private static final float COLD_HUE = 2f / 3;
+
+    @ExportForGUI(nameToExport = "Mode")
+    private Mode mode = Mode.ConnectedComponents;
+    @ExportForGUI(nameToExport = "Size")
+    private RangedInteger size = new RangedInteger(1, MAX_SIZE, DEFAULT_SIZE);
+    @ExportForGUI(nameToExport = "Automatic degree range")
+    private boolean autoDegree = true;
+    @ExportForGUI(nameToExport = "Maximum degree")
+    private RangedInteger maxDegree = new RangedInteger(1, MAX_DEGREE, DEFAULT_DEGREE);
+    @ExportForGUI(nameToExport = "Show component report")
+    private boolean report = true;
+
+    private transient int[][] lastRows;
+    private transient int[] parents;
+    private transient int[] componentSizes;
+    private transient int[] colorKeys;
+
+    @Override
+    public void draw(final Graphics2D g, final FrameContext context) {
+        final MoleculePropertyCache frame = context.getCache();
+        final FrameTopology topology = frame.getTopology();
+        if (topology.getRows() != lastRows) {
+            updateComponents(frame, topology, context);
+            lastRows = topology.getRows();
+        }
+        final int[] indexes = context.getIndexes();
+        final int[] xs = context.getXs();
+        final int[] ys = context.getYs();
+        final int diameter = size.getVal();
+        int degreeRange = maxDegree.getVal();
+        if (mode == Mode.Degree && autoDegree) {
+            degreeRange = Math.max(1, Arrays.stream(topology.getRows()).mapToInt(r -> r.length).max().orElse(1));
+        }
+        final Color toRestore = g.getColor();
+        int currentRGB = 0;
+        for (int slot = 0; slot < indexes.length; slot++) {
+            final int i = indexes[slot];
+            if (i >= 0) {
+                final int rgb;
+                if (mode == Mode.Degree) {
+                    final float level = Math.min(1f, (float) topology.getDegree(i) / degreeRange);
+                    rgb = Color.HSBtoRGB(COLD_HUE * (1 - level), 1f, 1f);
+                } else {
+                    rgb = Color.HSBtoRGB(colorKeys[parents[i]] * GOLDEN_RATIO % 1, SATURATION, BRIGHTNESS);
+                }
+                if (slot == 0 || rgb != currentRGB) {
+                    g.setColor(new Color(rgb));
+                    currentRGB = rgb;
+                }
+                g.fillOval(xs[slot] - diameter / 2, ys[slot] - diameter / 2, diameter, diameter);
+            }
+        }
+        if (report) {
+            g.setColor(Color.BLACK);
+            g.drawString(describe(), TEXT_MARGIN, TEXT_MARGIN);
+        }
+        g.setColor(toRestore);
+    }
+
+    private void updateComponents(final MoleculePropertyCache frame, final FrameTopology topology, final FrameContext context) {
+        final int[][] rows = topology.getRows();
+        final int[] rebuilt = topology.getRebuilt();
+        if (parents != null && lastRows != null && topology.getBase() == lastRows && rebuilt != null
+                && onlyAdditions(lastRows, rows, rebuilt)) {
+            for (final int i : rebuilt) {
+                for (final int j : rows[i]) {
+                    union(parents, i, j);
+                }
+            }
+            for (int i = 0; i < parents.length; i++) {
+                parents[i] = find(parents, i);
+            }
+        } else {
+            parents = parallelComponents(rows, context);
+        }
+        /*
+         * Sizes, and a stable key per component: the smallest node id in it.
+         */
+        final int[] sizes = new int[parents.length];
+        final int[] keys = new int[parents.length];
+        Arrays.fill(keys, Integer.MAX_VALUE);
+        for (int i = 0; i < parents.length; i++) {
+            sizes[parents[i]]++;
+            keys[parents[i]] = Math.min(keys[parents[i]], frame.getNode(i).getId());
+        }
+        colorKeys = keys;
+        componentSizes = Arrays.stream(sizes)
+                .filter(s -> s > 0)
+                .boxed()
+                .sorted((a, b) -> Integer.compare(b, a))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private static boolean onlyAdditions(final int[][] before, final int[][] after, final int[] rebuilt) {
+        for (final int i : rebuilt) {
+            final int[] old = before[i];
+            final int[] now = after[i];
+            int k = 0;
+            for (final int j : old) {
+                while (k < now.length && now[k] < j) {
+                    k++;
+                }
+                if (k == now.length || now[k] != j) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Lock-free union-find: roots always link to the smaller index, so
+     * concurrent unions can not create cycles.
+     */
+    private static int[] parallelComponents(final int[][] rows, final FrameContext context) {
+        final AtomicIntegerArray parent = new AtomicIntegerArray(rows.length);
+        for (int i = 0; i < rows.length; i++) {
+            parent.set(i, i);
+        }
+        final int[] result = new int[rows.length];
+        RenderingExecutor.forEach(rows.length, i -> {
+            for (final int j : rows[i]) {
+                if (j > i) {
+                    concurrentUnion(parent, i, j);
+                }
+            }
+        });
+        RenderingExecutor.forEach(rows.length, i -> result[i] = concurrentFind(parent, i));
+        return result;
+    }
+
+    private static int concurrentFind(final AtomicIntegerArray parent, final int node) {
+        int x = node;
+        int p = parent.get(x);
+        while (p != x) {
+            final int gp = parent.get(p);
+            parent.compareAndSet(x, p, gp);
+            x = p;
+            p = gp;
+        }
+        return x;
+    }
+
+    private static void concurrentUnion(final AtomicIntegerArray parent, final int a, final int b) {
+        while (true) {
+            final int ra = concurrentFind(parent, a);
+            final int rb = concurrentFind(parent, b);
+            if (ra == rb) {
+                return;
+            }
+            final int high = Math.max(ra, rb);
+            final int low = Math.min(ra, rb);
+            if (parent.compareAndSet(high, high, low)) {
+                return;
+            }
+        }
+    }
+
+    private static int find(final int[] parent, final int node) {
+        int root = node;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        for (int x = node; parent[x] != root;) {
+            final int next = parent[x];
+            parent[x] = root;
+            x = next;
+        }
+        return root;
+    }
+
+    private static void union(final int[] parent, final int a, final int b) {
+        final int ra = find(parent, a);
+        final int rb = find(parent, b);
+        if (ra != rb) {
+            parent[Math.max(ra, rb)] = Math.min(ra, rb);
+        }
+    }
+
+    private String describe() {
+        final int[] sizes = getComponentSizes();
+        final StringBuilder sb = new StringBuilder("Components: ").append(sizes.length);
+        if (sizes.length > 0) {
+            sb.append(" - sizes: ");
+            for (int i = 0; i < Math.min(MAX_REPORTED, sizes.length); i++) {
+                sb.append(i == 0 ? "" : ", ").append(sizes[i]);
+            }
+            if (sizes.length > MAX_REPORTED) {
+                sb.append(", ...");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the number of connected components found in the last frame
+     *         drawn
+     */
+    public int getComponentCount() {
+        return componentSizes == null ? 0 : componentSizes.length;
+    }
+
+    /**
+     * @return the sizes of the connected components found in the last frame
+     *         drawn, largest first
+     */
+    public int[] getComponentSizes() {
+        return componentSizes == null ? new int[0] : componentSizes.clone();
+    }
+
+    /**
+     * Components are those of the whole network, not of the part in sight.
+     */
+    @Override
+    public boolean requiresFullCapture() {
+        return true;
+    }
+
+    @Override
+    public Color getColorSummary() {
+        return Color.MAGENTA;
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Path2D;
+
+import org.apache.commons.math3.util.FastMath;
+import org.danilopianini.lang.RangedInteger;
+import org.danilopianini.view.ExportForGUI;
+
+/**
+ * Draws where the nodes have been, as polylines fading with age. Positions
+ * are sampled from the frames at a configurable simulation time interval, and
+ * kept in a {@link TrailBuffer}. All the segments of the same age are drawn
+ * in a single call, so the number of drawing calls only depends on the trail
+ * length.
+ */
+public class DrawTrails implements FrameEffect {
+
+    private static final long serialVersionUID = -5765370582263390170L;
+    private static final int MAX_COLOUR_VALUE = 255;
+    private static final int DEFAULT_LENGTH = 20;
+    private static final int MAX_LENGTH = 500;
+    private static final int TIME_SCALE = 10;
+    private static final int MAX_INTERVAL = 100;
+
+    @ExportForGUI(nameToExport = "Trail length (samples)")
+    private RangedInteger length = new RangedInteger(2, MAX_LENGTH, DEFAULT_LENGTH);
+    @ExportForGUI(nameToExport = "Sampling interval (simulation time)")
+    private RangedInteger interval = new RangedInteger(0, MAX_INTERVAL, 1);
+    @ExportForGUI(nameToExport = "Sampling interval order of magnitude")
+    private RangedInteger intervalOom = new RangedInteger(-TIME_SCALE, TIME_SCALE, 0);
+    @ExportForGUI(nameToExport = "R")
+    private RangedInteger red = new RangedInteger(0, MAX_COLOUR_VALUE);
+    @ExportForGUI(nameToExport = "G")
+    private RangedInteger green = new RangedInteger(0, MAX_COLOUR_VALUE);
+    @ExportForGUI(nameToExport = "B")
+    private RangedInteger blue = new RangedInteger(0, MAX_COLOUR_VALUE, MAX_COLOUR_VALUE);
+    @ExportForGUI(nameToExport = "A")
+    private RangedInteger alpha = new RangedInteger(0, MAX_COLOUR_VALUE, MAX_COLOUR_VALUE);
+
+    private Color colorCache = Color.BLUE;
+    private transient TrailBuffer trails;
+    private transient MoleculePropertyCache lastSampled;
+    private transient double lastSampleTime = Double.NaN;
+
+    @Override
+    public void draw(final Graphics2D g, final FrameContext context) {
+        final MoleculePropertyCache frame = context.getCache();
+        if (trails == null || trails.getLength() != length.getVal()) {
+            trails = new TrailBuffer(length.getVal(), frame.size());
+            lastSampled = null;
+            lastSampleTime = Double.NaN;
+        }
+        final double time = frame.getTime();
+        if (frame != lastSampled && !Double.isNaN(time)
+                && (Double.isNaN(lastSampleTime) || time < lastSampleTime
+                    || time - lastSampleTime >= interval.getVal() * FastMath.pow(TIME_SCALE, intervalOom.getVal()))) {
+            trails.sample(frame);
+            lastSampled = frame;
+            lastSampleTime = time;
+        }
+        /*
+         * Gather the trails of the nodes in sight, and transform them on the
+         * view at once.
+         */
+        final int k = trails.getLength();
+        final int[] rows = new int[context.size()];
+        int points = 0;
+        for (int slot = 0; slot < rows.length; slot++) {
+            rows[slot] = trails.rowOf(context.getNode(slot));
+            if (rows[slot] >= 0) {
+                points += trails.size(rows[slot]);
+            }
+        }
+        final float[] coords = new float[points * 2];
+        final int[] starts = new int[rows.length + 1];
+        int offset = 0;
+        for (int slot = 0; slot < rows.length; slot++) {
+            starts[slot] = offset;
+            if (rows[slot] >= 0) {
+                for (int age = 0; age < trails.size(rows[slot]); age++) {
+                    trails.get(rows[slot], age, coords, offset);
+                    offset += 2;
+                }
+            }
+        }
+        starts[rows.length] = offset;
+        context.getEnvToView().transform(coords, 0, coords, 0, points);
+        final GeneralPath[] byAge = new GeneralPath[k - 1];
+        for (int slot = 0; slot < rows.length; slot++) {
+            for (int p = starts[slot]; p + 2 < starts[slot + 1]; p += 2) {
+                final int age = (p - starts[slot]) / 2;
+                if (byAge[age] == null) {
+                    byAge[age] = new GeneralPath(Path2D.WIND_NON_ZERO, 2 * rows.length);
+                }
+                byAge[age].moveTo(coords[p], coords[p + 1]);
+                byAge[age].lineTo(coords[p + 2], coords[p + 3]);
+            }
+        }
+        colorCache = new Color(red.getVal(), green.getVal(), blue.getVal(), alpha.getVal());
+        final Color toRestore = g.getColor();
+        for (int age = byAge.length - 1; age >= 0; age--) {
+            if (byAge[age] != null) {
+                final int fade = alpha.getVal() * (k - 1 - age) / (k - 1);
+                g.setColor(new Color(red.getVal(), green.getVal(), blue.getVal(), fade));
+                g.draw(byAge[age]);
+            }
+        }
+        g.setColor(toRestore);
+    }
+
+    /**
+     * Trails must survive nodes leaving and entering the view.
+     */
+    @Override
+    public boolean requiresFullCapture() {
+        return true;
+    }
+
+    @Override
+    public Color getColorSummary() {
+        return colorCache;
+    }
+
+}
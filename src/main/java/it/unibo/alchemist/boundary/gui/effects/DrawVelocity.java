@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+
+import org.apache.commons.math3.util.FastMath;
+import org.danilopianini.lang.RangedInteger;
+import org.danilopianini.view.ExportForGUI;
+
+import it.unibo.alchemist.boundary.gui.util.RenderingExecutor;
+
+/**
+ * Draws an arrow showing the heading and speed of each node, computed from
+ * the displacement between the last two frames. When nodes are too dense on
+ * screen, velocities are averaged on a coarse screen grid and an arrow is
+ * drawn per cell instead, so the cost only depends on the view size. All the
+ * arrows go in a single path.
+ */
+public class DrawVelocity implements FrameEffect {
+
+    private static final long serialVersionUID = 2311860637412557393L;
+    private static final int MAX_COLOUR_VALUE = 255;
+    private static final int SCALE_MAGNITUDE = 10;
+    private static final int MAX_SCALE = 100;
+    private static final int DEFAULT_CELL = 24;
+    private static final int MIN_CELL = 8;
+    private static final int MAX_CELL = 200;
+    private static final int DEFAULT_SPACING = 16;
+    private static final int MAX_SPACING = 100;
+    private static final double HEAD_ANGLE = Math.toRadians(25);
+    private static final double HEAD_RATIO = 1d / 3;
+    private static final double MAX_HEAD = 6;
+    private static final double MIN_LENGTH = 0.5;
+
+    @ExportForGUI(nameToExport = "Arrow length per unit of speed")
+    private RangedInteger scale = new RangedInteger(1, MAX_SCALE, 1);
+    @ExportForGUI(nameToExport = "Arrow length order of magnitude")
+    private RangedInteger scaleOom = new RangedInteger(-SCALE_MAGNITUDE, SCALE_MAGNITUDE, 0);
+    @ExportForGUI(nameToExport = "Average on a grid below this node spacing (pixels)")
+    private RangedInteger minSpacing = new RangedInteger(0, MAX_SPACING, DEFAULT_SPACING);
+    @ExportForGUI(nameToExport = "Grid cell size (pixels)")
+    private RangedInteger cellSize = new RangedInteger(MIN_CELL, MAX_CELL, DEFAULT_CELL);
+    @ExportForGUI(nameToExport = "R")
+    private RangedInteger red = new RangedInteger(0, MAX_COLOUR_VALUE, MAX_COLOUR_VALUE);
+    @ExportForGUI(nameToExport = "G")
+    private RangedInteger green = new RangedInteger(0, MAX_COLOUR_VALUE);
+    @ExportForGUI(nameToExport = "B")
+    private RangedInteger blue = new RangedInteger(0, MAX_COLOUR_VALUE);
+    @ExportForGUI(nameToExport = "A")
+    private RangedInteger alpha = new RangedInteger(0, MAX_COLOUR_VALUE, MAX_COLOUR_VALUE);
+
+    private Color colorCache = Color.RED;
+    private transient MoleculePropertyCache previous;
+    private transient MoleculePropertyCache current;
+    private transient float[] vxs = new float[0];
+    private transient float[] vys = new float[0];
+
+    @Override
+    public void draw(final Graphics2D g, final FrameContext context) {
+        final MoleculePropertyCache frame = context.getCache();
+        if (frame != current) {
+            previous = current;
+            current = frame;
+            computeVelocities(context);
+        }
+        final int count = context.size();
+        if (count == 0 || vxs.length != frame.size()) {
+            return;
+        }
+        final AffineTransform envToView = context.getEnvToView();
+        final double factor = scale.getVal() * FastMath.pow(SCALE_MAGNITUDE, scaleOom.getVal());
+        final double ax = envToView.getScaleX() * factor;
+        final double bx = envToView.getShearX() * factor;
+        final double ay = envToView.getShearY() * factor;
+        final double by = envToView.getScaleY() * factor;
+        final int[] xs = context.getXs();
+        final int[] ys = context.getYs();
+        final int[] indexes = context.getIndexes();
+        final GeneralPath arrows = new GeneralPath();
+        final double spacing = Math.sqrt((double) context.getWidth() * context.getHeight() / count);
+        if (spacing >= minSpacing.getVal()) {
+            for (int slot = 0; slot < count; slot++) {
+                final int i = indexes[slot];
+                if (i >= 0) {
+                    arrow(arrows, xs[slot], ys[slot], ax * vxs[i] + bx * vys[i], ay * vxs[i] + by * vys[i]);
+                }
+            }
+        } else {
+            final int cell = cellSize.getVal();
+            final int columns = context.getWidth() / cell + 1;
+            final int rows = context.getHeight() / cell + 1;
+            final double[] sumX = new double[columns * rows];
+            final double[] sumY = new double[columns * rows];
+            final int[] n = new int[columns * rows];
+            for (int slot = 0; slot < count; slot++) {
+                final int i = indexes[slot];
+                final int col = xs[slot] / cell;
+                final int row = ys[slot] / cell;
+                if (i >= 0 && col >= 0 && row >= 0 && col < columns && row < rows) {
+                    final int c = row * columns + col;
+                    sumX[c] += vxs[i];
+                    sumY[c] += vys[i];
+                    n[c]++;
+                }
+            }
+            for (int c = 0; c < n.length; c++) {
+                if (n[c] > 0) {
+                    final double vx = sumX[c] / n[c];
+                    final double vy = sumY[c] / n[c];
+                    arrow(arrows, c % columns * cell + cell / 2, c / columns * cell + cell / 2,
+                            ax * vx + bx * vy, ay * vx + by * vy);
+                }
+            }
+        }
+        colorCache = new Color(red.getVal(), green.getVal(), blue.getVal(), alpha.getVal());
+        final Color toRestore = g.getColor();
+        g.setColor(colorCache);
+        g.draw(arrows);
+        g.setColor(toRestore);
+    }
+
+    /*
+     * Per node velocity, in environment units per unit of simulated time.
+     * Nodes missing from the previous frame stand still.
+     */
+    private void computeVelocities(final FrameContext context) {
+        final MoleculePropertyCache prev = previous;
+        final MoleculePropertyCache cur = current;
+        final float[] newVxs = new float[cur.size()];
+        final float[] newVys = new float[cur.size()];
+        final double dt = prev == null ? Double.NaN : cur.getTime() - prev.getTime();
+        if (dt > 0) {
+            final boolean sameNodes = cur.hasSameNodes(prev);
+            final double[] cx = cur.getEnvXs();
+            final double[] cy = cur.getEnvYs();
+            final double[] px = prev.getEnvXs();
+            final double[] py = prev.getEnvYs();
+            RenderingExecutor.forEach(newVxs.length, i -> {
+                final int j = sameNodes ? i : prev.indexOf(cur.getNode(i));
+                if (j >= 0) {
+                    final double vx = (cx[i] - px[j]) / dt;
+                    final double vy = (cy[i] - py[j]) / dt;
+                    if (!Double.isNaN(vx) && !Double.isNaN(vy)) {
+                        newVxs[i] = (float) vx;
+                        newVys[i] = (float) vy;
+                    }
+                }
+            });
+        }
+        vxs = newVxs;
+        vys = newVys;
+    }
+
+    private static void arrow(final GeneralPath path, final double x, final double y, final double dx, final double dy) {
+        final double length = Math.hypot(dx, dy);
+        if (length < MIN_LENGTH || Double.isInfinite(length)) {
+            return;
+        }
+        final double tipX = x + dx;
+        final double tipY = y + dy;
+        path.moveTo(x, y);
+        path.lineTo(tipX, tipY);
+        final double head = Math.min(MAX_HEAD, length * HEAD_RATIO);
+        final double angle = Math.atan2(dy, dx);
+        path.moveTo(tipX - head * Math.cos(angle - HEAD_ANGLE), tipY - head * Math.sin(angle - HEAD_ANGLE));
+        path.lineTo(tipX, tipY);
+        path.lineTo(tipX - head * Math.cos(angle + HEAD_ANGLE), tipY - head * Math.sin(angle + HEAD_ANGLE));
+    }
+
+    @Override
+    public Color getColorSummary() {
+        return colorCache;
+    }
+
+}
@@ -13,6 +13,7 @@ import it.unibo.alchemist.model.interfaces.Node;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.io.Serializable;
+import java.util.Optional;
 
 /**
  */
@@ -32,6 +33,42 @@ public interface Effect extends Serializable {
      */
     void apply(Graphics2D g, Node<?> n, int x, int y);
 
+    /**
+     * Applies the effect, exploiting the data that the display cached for the
+     * current frame. Effects that query molecules or properties should
+     * override this method and read from the cache rather than from the node.
+     * By default, it calls {@link #apply(Graphics2D, Node, int, int)}.
+     * 
+     * @param g
+     *            Graphics2D to use
+     * @param n
+     *            the node to draw
+     * @param x
+     *            x screen position
+     * @param y
+     *            y screen position
+     * @param cache
+     *            the {@link MoleculePropertyCache} of the current frame
+     * @param index
+     *            the index of the node within the cache, or -1 if the node is
+     *            not part of it
+     */
+    default void apply(final Graphics2D g, final Node<?> n, final int x, final int y, final MoleculePropertyCache cache, final int index) {
+        apply(g, n, x, y);
+    }
+
+    /**
+     * Effects that only draw a subset of the nodes can declare it, letting the
+     * display skip the other nodes altogether. The display keeps the matches
+     * of the declared filter indexed, and updates them incrementally.
+     * 
+     * @return the {@link NodeFilter} selecting the nodes this effect draws,
+     *         or an empty {@link Optional} if every node may be drawn
+     */
+    default Optional<NodeFilter> getFilter() {
+        return Optional.empty();
+    }
+
     /**
      * @return a color which resembles the color of this effect
      */
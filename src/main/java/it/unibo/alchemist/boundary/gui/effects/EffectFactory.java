@@ -8,10 +8,15 @@
  */
 package it.unibo.alchemist.boundary.gui.effects;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  */
 public final class EffectFactory {
 
+    private static final Logger L = LoggerFactory.getLogger(EffectFactory.class);
+
     /**
      * @return the effect which is inserted by default
      */
@@ -30,7 +35,12 @@ public final class EffectFactory {
         if (DrawShape.class.isAssignableFrom(effect)) {
             return buildDefaultEffect();
         }
-        return null;
+        try {
+            return effect.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            L.error("Cannot build " + effect.getName() + ": a public constructor with no parameters is required.", e);
+            return null;
+        }
     }
 
     private EffectFactory() {
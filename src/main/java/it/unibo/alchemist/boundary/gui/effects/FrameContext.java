@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.awt.Point;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.util.concurrent.ForkJoinPool;
+
+import it.unibo.alchemist.boundary.wormhole.interfaces.IWormhole2D;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * Everything a {@link FrameEffect} may need to draw a frame: the view, the
+ * nodes in sight with their screen positions, and the
+ * {@link MoleculePropertyCache} of the frame.
+ *
+ * Nodes are addressed by slot. Arrays are shared with the display and must
+ * not be modified.
+ */
+public final class FrameContext {
+
+    private final IWormhole2D wormhole;
+    private final int width;
+    private final int height;
+    private final MoleculePropertyCache cache;
+    private final Node<?>[] nodes;
+    private final int[] xs;
+    private final int[] ys;
+    private final int[] indexes;
+    private final ForkJoinPool pool;
+    private AffineTransform envToView;
+
+    /**
+     * @param wormhole
+     *            the {@link IWormhole2D} mapping the environment on the view
+     * @param width
+     *            the view width, in pixels
+     * @param height
+     *            the view height, in pixels
+     * @param cache
+     *            the {@link MoleculePropertyCache} of the frame
+     * @param nodes
+     *            the nodes in sight, one per slot
+     * @param xs
+     *            x screen positions, one per slot
+     * @param ys
+     *            y screen positions, one per slot
+     * @param indexes
+     *            the index of each node within the cache, or -1 if missing
+     * @param pool
+     *            the {@link ForkJoinPool} where parallel work should run
+     */
+    public FrameContext(final IWormhole2D wormhole, final int width, final int height,
+            final MoleculePropertyCache cache, final Node<?>[] nodes,
+            final int[] xs, final int[] ys, final int[] indexes, final ForkJoinPool pool) {
+        this.wormhole = wormhole;
+        this.width = width;
+        this.height = height;
+        this.cache = cache;
+        this.nodes = nodes;
+        this.xs = xs;
+        this.ys = ys;
+        this.indexes = indexes;
+        this.pool = pool;
+    }
+
+    /**
+     * @return the {@link IWormhole2D} mapping the environment on the view
+     */
+    public IWormhole2D getWormhole() {
+        return wormhole;
+    }
+
+    /**
+     * Affine approximation of the environment to view mapping of the
+     * wormhole, obtained by mapping three corners of the view. It is exact for
+     * wormholes that only translate, rotate and scale. Shapes cached in
+     * environment coordinates can be drawn through it with no further
+     * per-point work.
+     * 
+     * @return the environment to view {@link AffineTransform}. If the view
+     *         is degenerate, a transform collapsing everything on the origin
+     */
+    public AffineTransform getEnvToView() {
+        if (envToView == null) {
+            envToView = envToView(wormhole, width, height);
+        }
+        return envToView;
+    }
+
+    /**
+     * @param wormhole
+     *            the {@link IWormhole2D}
+     * @param width
+     *            the view width, in pixels
+     * @param height
+     *            the view height, in pixels
+     * @return the affine approximation of the environment to view mapping of
+     *         the wormhole, see {@link #getEnvToView()}
+     */
+    public static AffineTransform envToView(final IWormhole2D wormhole, final int width, final int height) {
+        if (width <= 0 || height <= 0) {
+            return new AffineTransform(0, 0, 0, 0, 0, 0);
+        }
+        final Position origin = wormhole.getEnvPoint(new Point(0, 0));
+        final Position right = wormhole.getEnvPoint(new Point(width, 0));
+        final Position down = wormhole.getEnvPoint(new Point(0, height));
+        final double x0 = origin.getCoordinate(0);
+        final double y0 = origin.getCoordinate(1);
+        final AffineTransform viewToEnv = new AffineTransform(
+                (right.getCoordinate(0) - x0) / width, (right.getCoordinate(1) - y0) / width,
+                (down.getCoordinate(0) - x0) / height, (down.getCoordinate(1) - y0) / height,
+                x0, y0);
+        try {
+            return viewToEnv.createInverse();
+        } catch (final NoninvertibleTransformException e) {
+            return new AffineTransform(0, 0, 0, 0, 0, 0);
+        }
+    }
+
+    /**
+     * @return the view width, in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the view height, in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the {@link MoleculePropertyCache} of the frame
+     */
+    public MoleculePropertyCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return the number of slots
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * @param slot
+     *            the slot
+     * @return the node in the slot
+     */
+    public Node<?> getNode(final int slot) {
+        return nodes[slot];
+    }
+
+    /**
+     * @return x screen positions, one per slot
+     */
+    public int[] getXs() {
+        return xs;
+    }
+
+    /**
+     * @return y screen positions, one per slot
+     */
+    public int[] getYs() {
+        return ys;
+    }
+
+    /**
+     * @return the index of each node within the cache, or -1 if missing
+     */
+    public int[] getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * @return the {@link ForkJoinPool} where parallel work should run
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+}
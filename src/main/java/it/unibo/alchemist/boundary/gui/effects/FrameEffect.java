@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.awt.Graphics2D;
+
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ * An {@link Effect} that draws a whole frame at once, rather than a node at a
+ * time. Useful for effects that need to look at the view or at several nodes
+ * together, such as labels with overlap culling, fields or overlays.
+ */
+public interface FrameEffect extends Effect {
+
+    /**
+     * Draws the effect.
+     * 
+     * @param g
+     *            Graphics2D to use
+     * @param context
+     *            the {@link FrameContext} of the frame to draw
+     */
+    void draw(Graphics2D g, FrameContext context);
+
+    /**
+     * Displays may only capture the nodes around the view. Effects reporting
+     * on the whole environment, or keeping per-node state across frames,
+     * need every node instead.
+     *
+     * @return true if the displays showing this effect must capture every
+     *         node of the environment, regardless of the view
+     */
+    default boolean requiresFullCapture() {
+        return false;
+    }
+
+    /**
+     * Frame effects do not draw a node at a time: this method does nothing.
+     */
+    @Override
+    default void apply(final Graphics2D g, final Node<?> n, final int x, final int y) {
+    }
+
+}
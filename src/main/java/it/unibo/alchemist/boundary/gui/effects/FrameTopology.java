@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.util.BitSet;
+
+import it.unibo.alchemist.boundary.gui.util.RenderingExecutor;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+
+/**
+ * Network topology of a frame, as sorted adjacency rows of node indexes.
+ * When the previous frame topology is known, only the rows of the nodes that
+ * changed and of their old and new neighbors are rebuilt: the others are
+ * shared with the previous frame.
+ */
+public final class FrameTopology {
+
+    private final int[][] rows;
+    private final int[][] base;
+    private final int[] rebuilt;
+
+    private FrameTopology(final int[][] rows, final int[][] base, final int[] rebuilt) {
+        this.rows = rows;
+        this.base = base;
+        this.rebuilt = rebuilt;
+    }
+
+    static FrameTopology build(final MoleculePropertyCache frame, final Neighborhood<?>[] neighborhoods,
+            final int[][] previous, final int[] changed) {
+        if (previous == null || changed == null || previous.length != neighborhoods.length) {
+            final int[][] rows = new int[neighborhoods.length][];
+            RenderingExecutor.forEach(rows.length, i -> rows[i] = row(frame, neighborhoods[i]));
+            return new FrameTopology(rows, null, null);
+        }
+        final int[][] rows = previous.clone();
+        final BitSet dirty = new BitSet(rows.length);
+        for (final int i : changed) {
+            dirty.set(i);
+            rows[i] = row(frame, neighborhoods[i]);
+            for (final int j : previous[i]) {
+                dirty.set(j);
+            }
+            for (final int j : rows[i]) {
+                dirty.set(j);
+            }
+        }
+        final int[] rebuilt = dirty.stream().toArray();
+        RenderingExecutor.forEach(rebuilt, i -> rows[i] = row(frame, neighborhoods[i]));
+        return new FrameTopology(rows, previous, rebuilt);
+    }
+
+    private static int[] row(final MoleculePropertyCache frame, final Neighborhood<?> neighborhood) {
+        if (neighborhood == null) {
+            return new int[0];
+        }
+        return neighborhood.getNeighbors().stream()
+                .mapToInt(frame::indexOf)
+                .filter(j -> j >= 0)
+                .sorted()
+                .toArray();
+    }
+
+    /**
+     * @param index
+     *            the node index
+     * @return the sorted indexes of the neighbors of the node. The array
+     *         must not be modified.
+     */
+    public int[] getNeighbors(final int index) {
+        return rows[index];
+    }
+
+    /**
+     * @param index
+     *            the node index
+     * @return the number of neighbors of the node
+     */
+    public int getDegree(final int index) {
+        return rows[index].length;
+    }
+
+    /**
+     * @return the number of nodes
+     */
+    public int size() {
+        return rows.length;
+    }
+
+    /**
+     * @return the rows of the previous frame this topology was incrementally
+     *         built from, or null if it was built from scratch. Compare it by
+     *         identity with {@link #getRows()} of a previous topology.
+     */
+    public int[][] getBase() {
+        return base;
+    }
+
+    /**
+     * @return the indexes of the rows that differ from {@link #getBase()},
+     *         or null if it was built from scratch
+     */
+    public int[] getRebuilt() {
+        return rebuilt == null ? null : rebuilt.clone();
+    }
+
+    /**
+     * @return all the rows. Neither the array nor the rows must be modified.
+     */
+    public int[][] getRows() {
+        return rows;
+    }
+
+}
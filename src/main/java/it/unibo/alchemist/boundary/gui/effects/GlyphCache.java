@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Least recently used cache of pre-rendered text labels. Laying out glyphs is
+ * by far the most expensive part of drawing a string: rendering each distinct
+ * label once and then blitting its bitmap makes drawing thousands of labels
+ * affordable.
+ */
+public final class GlyphCache {
+
+    private final Map<Key, BufferedImage> labels;
+    private final Graphics2D measure = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+
+    /**
+     * @param capacity
+     *            the maximum number of labels to keep
+     */
+    public GlyphCache(final int capacity) {
+        labels = new LinkedHashMap<Key, BufferedImage>(capacity, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, BufferedImage> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param text
+     *            the text
+     * @param font
+     *            the {@link Font}
+     * @param argb
+     *            the text color
+     * @return a transparent image with the text drawn on it, whose baseline
+     *         is at the font ascent
+     */
+    public BufferedImage get(final String text, final Font font, final int argb) {
+        return labels.computeIfAbsent(new Key(text, font, argb), this::render);
+    }
+
+    /**
+     * @param font
+     *            the {@link Font}
+     * @return the height of a line of text written with the font
+     */
+    public int getLineHeight(final Font font) {
+        return measure.getFontMetrics(font).getHeight();
+    }
+
+    /**
+     * @return the number of cached labels
+     */
+    public int size() {
+        return labels.size();
+    }
+
+    /**
+     * Drops every cached label.
+     */
+    public void clear() {
+        labels.clear();
+    }
+
+    private BufferedImage render(final Key key) {
+        final FontMetrics metrics = measure.getFontMetrics(key.font);
+        final BufferedImage img = new BufferedImage(
+                Math.max(1, metrics.stringWidth(key.text) + 1),
+                Math.max(1, metrics.getHeight()),
+                BufferedImage.TYPE_INT_ARGB_PRE);
+        final Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(key.font);
+        g.setColor(new Color(key.argb, true));
+        g.drawString(key.text, 0, metrics.getAscent());
+        g.dispose();
+        return img;
+    }
+
+    private static final class Key {
+        private final String text;
+        private final Font font;
+        private final int argb;
+
+        Key(final String text, final Font font, final int argb) {
+            this.text = Objects.requireNonNull(text);
+            this.font = Objects.requireNonNull(font);
+            this.argb = argb;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj instanceof Key) {
+                final Key k = (Key) obj;
+                return argb == k.argb && text.equals(k.text) && font.equals(k.font);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(text, font, argb);
+        }
+    }
+
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unibo.alchemist.SupportedIncarnations;
+import it.unibo.alchemist.boundary.gui.util.RenderingExecutor;
+import it.unibo.alchemist.model.interfaces.Molecule;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * Per-frame, columnar cache of node positions, topology, molecule presence
+ * and molecule properties, shared by all the {@link Effect}s of a display.
+ *
+ * Nodes are addressed by their index within the frame. Each
+ * (incarnation, molecule, property) triple gets a <code>double[]</code>
+ * column, filled on the {@link RenderingExecutor} the first time it is requested. When a new
+ * frame is built, the columns requested during the previous one are carried
+ * over, and only the nodes that changed in between get re-evaluated.
+ *
+ * Instances are never modified structurally once built: a display publishes
+ * a new one for every frame.
+ */
+public final class MoleculePropertyCache {
+
+    private static final Logger L = LoggerFactory.getLogger(MoleculePropertyCache.class);
+    /*
+     * Properties which failed at least once: each gets reported only the
+     * first time, rather than for every node of every frame.
+     */
+    private static final Set<Key> REPORTED = ConcurrentHashMap.newKeySet();
+    private static final MoleculePropertyCache EMPTY = new MoleculePropertyCache(new Node<?>[0], Collections.emptyMap(), node -> null, node -> null, Double.NaN);
+
+    private final Node<?>[] nodes;
+    private final Map<Node<?>, Integer> indexes;
+    private final double[] envXs;
+    private final double[] envYs;
+    private final double[] envZs;
+    private final double time;
+    private final Neighborhood<?>[] neighborhoods;
+    private int[] changedIndexes;
+    private int[][] previousRows;
+    private volatile FrameTopology topology;
+    private final ConcurrentMap<Key, double[]> properties = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Key, boolean[]> presence = new ConcurrentHashMap<>();
+    private final Set<Key> requested = ConcurrentHashMap.newKeySet();
+
+    private MoleculePropertyCache(final Node<?>[] nodes, final Map<Node<?>, Integer> indexes,
+            final Function<? super Node<?>, ? extends Position> position,
+            final Function<? super Node<?>, ? extends Neighborhood<?>> neighborhood,
+            final double time) {
+        this.nodes = nodes;
+        this.indexes = indexes;
+        this.time = time;
+        neighborhoods = new Neighborhood<?>[nodes.length];
+        Arrays.setAll(neighborhoods, i -> neighborhood.apply(nodes[i]));
+        envXs = new double[nodes.length];
+        envYs = new double[nodes.length];
+        envZs = new double[nodes.length];
+        RenderingExecutor.forEach(nodes.length, i -> {
+            final Position pos = position.apply(nodes[i]);
+            envXs[i] = pos == null ? Double.NaN : pos.getCoordinate(0);
+            envYs[i] = pos == null ? Double.NaN : pos.getCoordinate(1);
+            envZs[i] = pos == null ? Double.NaN : pos.getDimensions() > 2 ? pos.getCoordinate(2) : 0;
+        });
+    }
+
+    /**
+     * @return an empty cache, containing no node
+     */
+    public static MoleculePropertyCache empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds the cache for a new frame.
+     *
+     * @param previous
+     *            the cache used for the previous frame
+     * @param currentNodes
+     *            the nodes of the new frame, in the order they should be
+     *            indexed
+     * @param changed
+     *            the nodes whose content may have changed since the previous
+     *            frame. Ignored if <code>allChanged</code> is true
+     * @param allChanged
+     *            true if every node should be considered changed
+     * @param position
+     *            a function returning the current position of a node
+     * @param neighborhood
+     *            a function returning an immutable snapshot of the current
+     *            neighborhood of a node
+     * @param time
+     *            the simulation time of the new frame
+     * @return a new {@link MoleculePropertyCache}
+     */
+    public static MoleculePropertyCache next(
+            final MoleculePropertyCache previous,
+            final Collection<? extends Node<?>> currentNodes,
+            final Collection<? extends Node<?>> changed,
+            final boolean allChanged,
+            final Function<? super Node<?>, ? extends Position> position,
+            final Function<? super Node<?>, ? extends Neighborhood<?>> neighborhood,
+            final double time) {
+        final Node<?>[] nodes = currentNodes.toArray(new Node<?>[currentNodes.size()]);
+        final boolean sameStructure = Arrays.equals(nodes, previous.nodes);
+        final Map<Node<?>, Integer> indexes;
+        if (sameStructure) {
+            indexes = previous.indexes;
+        } else {
+            indexes = new HashMap<>(nodes.length * 2);
+            for (int i = 0; i < nodes.length; i++) {
+                indexes.put(nodes[i], i);
+            }
+        }
+        final MoleculePropertyCache result = new MoleculePropertyCache(nodes, indexes, position, neighborhood, time);
+        /*
+         * If nobody painted the previous frame, nobody told us which columns
+         * are still in use: keep them all.
+         */
+        final Set<Key> toCarry = previous.requested.isEmpty()
+                ? union(previous.properties.keySet(), previous.presence.keySet())
+                : previous.requested;
+        if (sameStructure && !allChanged) {
+            final int[] dirty = changed.stream()
+                    .map(indexes::get)
+                    .filter(Objects::nonNull)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            final FrameTopology previousTopology = previous.topology;
+            if (previousTopology != null) {
+                result.previousRows = previousTopology.getRows();
+                result.changedIndexes = dirty;
+            }
+            for (final Key key : toCarry) {
+                final double[] oldProp = previous.properties.get(key);
+                if (oldProp != null) {
+                    final double[] column = oldProp.clone();
+                    RenderingExecutor.forEach(dirty, i -> column[i] = key.property(nodes[i]));
+                    result.properties.put(key, column);
+                }
+                final boolean[] oldPres = previous.presence.get(key);
+                if (oldPres != null) {
+                    final boolean[] column = oldPres.clone();
+                    RenderingExecutor.forEach(dirty, i -> column[i] = key.contains(nodes[i]));
+                    result.presence.put(key, column);
+                }
+            }
+        } else {
+            for (final Key key : toCarry) {
+                if (previous.properties.containsKey(key)) {
+                    result.properties.put(key, result.computeProperties(key));
+                }
+                if (previous.presence.containsKey(key)) {
+                    result.presence.put(key, result.computePresence(key));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static <E> Set<E> union(final Set<E> s1, final Set<E> s2) {
+        final Set<E> result = ConcurrentHashMap.newKeySet();
+        result.addAll(s1);
+        result.addAll(s2);
+        return result;
+    }
+
+    private double[] computeProperties(final Key key) {
+        final double[] column = new double[nodes.length];
+        RenderingExecutor.forEach(nodes.length, i -> column[i] = key.property(nodes[i]));
+        return column;
+    }
+
+    private boolean[] computePresence(final Key key) {
+        final boolean[] column = new boolean[nodes.length];
+        RenderingExecutor.forEach(nodes.length, i -> column[i] = key.contains(nodes[i]));
+        return column;
+    }
+
+    /**
+     * @param node
+     *            the node
+     * @return the index of the node within this frame, or -1 if the node is
+     *         not part of it
+     */
+    public int indexOf(final Node<?> node) {
+        final Integer idx = indexes.get(node);
+        return idx == null ? -1 : idx;
+    }
+
+    /**
+     * @param other
+     *            another cache
+     * @return true if the two caches index exactly the same nodes in the same
+     *         order
+     */
+    public boolean hasSameNodes(final MoleculePropertyCache other) {
+        return indexes == other.indexes;
+    }
+
+    /**
+     * @return the number of nodes in this frame
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * @param index
+     *            the node index
+     * @return the node at the given index
+     */
+    public Node<?> getNode(final int index) {
+        return nodes[index];
+    }
+
+    /**
+     * Builds the topology of this frame the first time it is called. If the
+     * topology of the previous frame was built, and the display knows which
+     * nodes changed in between, it gets updated incrementally.
+     *
+     * @return the {@link FrameTopology} of this frame
+     */
+    public FrameTopology getTopology() {
+        FrameTopology result = topology;
+        if (result == null) {
+            synchronized (this) {
+                result = topology;
+                if (result == null) {
+                    result = FrameTopology.build(this, neighborhoods, previousRows, changedIndexes);
+                    topology = result;
+                    previousRows = null;
+                    changedIndexes = null;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the simulation time this frame was captured at, or NaN for the
+     *         empty frame
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * @return a column with the first environment coordinate of each node of
+     *         this frame. It must not be modified.
+     */
+    public double[] getEnvXs() {
+        return envXs;
+    }
+
+    /**
+     * @return a column with the second environment coordinate of each node of
+     *         this frame. It must not be modified.
+     */
+    public double[] getEnvYs() {
+        return envYs;
+    }
+
+    /**
+     * @return a column with the third environment coordinate of each node of
+     *         this frame, 0 for two dimensional positions. It must not be
+     *         modified.
+     */
+    public double[] getEnvZs() {
+        return envZs;
+    }
+
+    /**
+     * @param incarnation
+     *            the incarnation
+     * @param molecule
+     *            the molecule
+     * @param property
+     *            the property
+     * @return a column with the value of the property for each node of this
+     *         frame. It must not be modified.
+     */
+    public double[] getProperties(final SupportedIncarnations incarnation, final Molecule molecule, final String property) {
+        final Key key = new Key(incarnation, molecule, property);
+        requested.add(key);
+        return properties.computeIfAbsent(key, this::computeProperties);
+    }
+
+    /**
+     * @param incarnation
+     *            the incarnation
+     * @param molecule
+     *            the molecule
+     * @param property
+     *            the property
+     * @param index
+     *            the node index
+     * @return the value of the property for the node at the given index
+     */
+    public double getProperty(final SupportedIncarnations incarnation, final Molecule molecule, final String property, final int index) {
+        return getProperties(incarnation, molecule, property)[index];
+    }
+
+    /**
+     * @param incarnation
+     *            the incarnation
+     * @param molecule
+     *            the molecule
+     * @return a column telling, for each node of this frame, whether it
+     *         contains the molecule. It must not be modified.
+     */
+    public boolean[] getPresence(final SupportedIncarnations incarnation, final Molecule molecule) {
+        final Key key = new Key(incarnation, molecule, null);
+        requested.add(key);
+        return presence.computeIfAbsent(key, this::computePresence);
+    }
+
+    /**
+     * @param incarnation
+     *            the incarnation
+     * @param molecule
+     *            the molecule
+     * @param index
+     *            the node index
+     * @return true if the node at the given index contains the molecule
+     */
+    public boolean contains(final SupportedIncarnations incarnation, final Molecule molecule, final int index) {
+        return getPresence(incarnation, molecule)[index];
+    }
+
+    private static final class Key {
+        private final SupportedIncarnations incarnation;
+        private final Molecule molecule;
+        private final String property;
+
+        Key(final SupportedIncarnations incarnation, final Molecule molecule, final String property) {
+            this.incarnation = Objects.requireNonNull(incarnation);
+            this.molecule = Objects.requireNonNull(molecule);
+            this.property = property;
+        }
+
+        double property(final Node<?> node) {
+            try {
+                return incarnation.getProperty(node, molecule, property);
+            } catch (final RuntimeException e) {
+                /*
+                 * This code may run on the simulation thread: never let a
+                 * broken property kill it.
+                 */
+                if (REPORTED.add(this)) {
+                    L.warn("Cannot compute property " + property + " of " + molecule + " on " + node
+                            + ", further failures will not be reported", e);
+                }
+                return Double.NaN;
+            }
+        }
+
+        boolean contains(final Node<?> node) {
+            return node.contains(molecule);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj instanceof Key) {
+                final Key k = (Key) obj;
+                return incarnation == k.incarnation && molecule.equals(k.molecule) && Objects.equals(property, k.property);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(incarnation, molecule, property);
+        }
+    }
+
+}
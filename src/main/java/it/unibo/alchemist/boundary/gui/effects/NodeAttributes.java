@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+/**
+ * Per-node visual attributes computed by a {@link StagedEffect} during the
+ * parallel evaluation phase, stored in primitive arrays. Each slot
+ * corresponds to a node on view. Distinct slots can be written concurrently.
+ */
+public final class NodeAttributes {
+
+    private final int[] colors;
+    private final int[] widths;
+    private final int[] heights;
+    private final byte[] shapes;
+    private final boolean[] visible;
+
+    /**
+     * @param size
+     *            the number of slots
+     */
+    public NodeAttributes(final int size) {
+        colors = new int[size];
+        widths = new int[size];
+        heights = new int[size];
+        shapes = new byte[size];
+        visible = new boolean[size];
+    }
+
+    /**
+     * @return the number of slots
+     */
+    public int size() {
+        return visible.length;
+    }
+
+    /**
+     * Marks a slot as visible, and sets all its attributes.
+     * 
+     * @param slot
+     *            the slot
+     * @param argb
+     *            the color, as ARGB int
+     * @param width
+     *            the width, in pixels
+     * @param height
+     *            the height, in pixels
+     * @param shape
+     *            an effect-specific shape code
+     */
+    public void set(final int slot, final int argb, final int width, final int height, final byte shape) {
+        colors[slot] = argb;
+        widths[slot] = width;
+        heights[slot] = height;
+        shapes[slot] = shape;
+        visible[slot] = true;
+    }
+
+    /**
+     * Marks a slot as not visible.
+     * 
+     * @param slot
+     *            the slot
+     */
+    public void hide(final int slot) {
+        visible[slot] = false;
+    }
+
+    /**
+     * @param slot
+     *            the slot
+     * @return true if the node in the slot should be drawn
+     */
+    public boolean isVisible(final int slot) {
+        return visible[slot];
+    }
+
+    /**
+     * @param slot
+     *            the slot
+     * @return the color, as ARGB int
+     */
+    public int getColor(final int slot) {
+        return colors[slot];
+    }
+
+    /**
+     * @param slot
+     *            the slot
+     * @return the width, in pixels
+     */
+    public int getWidth(final int slot) {
+        return widths[slot];
+    }
+
+    /**
+     * @param slot
+     *            the slot
+     * @return the height, in pixels
+     */
+    public int getHeight(final int slot) {
+        return heights[slot];
+    }
+
+    /**
+     * @param slot
+     *            the slot
+     * @return the effect-specific shape code
+     */
+    public byte getShape(final int slot) {
+        return shapes[slot];
+    }
+
+}
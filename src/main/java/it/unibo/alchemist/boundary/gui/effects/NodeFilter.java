@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.util.function.Predicate;
+
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ * A predicate over nodes that displays can index incrementally. The result of
+ * {@link #test(Object)} must only depend on the node state, and two filters
+ * testing the same condition must be equal, since filters are used as keys of
+ * the {@link NodeFilterIndex}. See {@link NodeFilters} for the available
+ * implementations.
+ */
+public interface NodeFilter extends Predicate<Node<?>> {
+
+    @Override
+    boolean equals(Object obj);
+
+    @Override
+    int hashCode();
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unibo.alchemist.boundary.gui.util.RenderingExecutor;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ * Per-frame index of the nodes matching each active {@link NodeFilter}, as a
+ * {@link BitSet} over the node indexes of a {@link MoleculePropertyCache}.
+ *
+ * A filter becomes active the first time its matches are requested, and stays
+ * active as long as it gets requested at every frame. When a new frame is
+ * built, the bitsets of the active filters are carried over and only the
+ * changed nodes are tested again.
+ */
+public final class NodeFilterIndex {
+
+    private static final Logger L = LoggerFactory.getLogger(NodeFilterIndex.class);
+    private static final NodeFilterIndex EMPTY = new NodeFilterIndex(MoleculePropertyCache.empty());
+
+    private final MoleculePropertyCache frame;
+    private final ConcurrentMap<NodeFilter, BitSet> index = new ConcurrentHashMap<>();
+    private final Set<NodeFilter> requested = ConcurrentHashMap.newKeySet();
+
+    private NodeFilterIndex(final MoleculePropertyCache frame) {
+        this.frame = frame;
+    }
+
+    /**
+     * @return an index with no nodes and no active filter
+     */
+    public static NodeFilterIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds the index for a new frame.
+     *
+     * @param previous
+     *            the index of the previous frame
+     * @param frame
+     *            the {@link MoleculePropertyCache} of the new frame, which
+     *            defines the node indexes
+     * @param changed
+     *            the nodes whose content may have changed since the previous
+     *            frame. Ignored if <code>allChanged</code> is true
+     * @param allChanged
+     *            true if every node should be considered changed
+     * @return a new {@link NodeFilterIndex}
+     */
+    public static NodeFilterIndex next(
+            final NodeFilterIndex previous,
+            final MoleculePropertyCache frame,
+            final Collection<? extends Node<?>> changed,
+            final boolean allChanged) {
+        final NodeFilterIndex result = new NodeFilterIndex(frame);
+        final Set<NodeFilter> toCarry = previous.requested.isEmpty() ? previous.index.keySet() : previous.requested;
+        final boolean incremental = !allChanged && frame.hasSameNodes(previous.frame);
+        for (final NodeFilter filter : toCarry) {
+            final BitSet old = previous.index.get(filter);
+            if (old != null) {
+                final BitSet matches;
+                if (incremental) {
+                    matches = (BitSet) old.clone();
+                    for (final Node<?> node : changed) {
+                        final int idx = frame.indexOf(node);
+                        if (idx >= 0) {
+                            matches.set(idx, test(filter, node));
+                        }
+                    }
+                } else {
+                    matches = result.compute(filter);
+                }
+                result.index.put(filter, matches);
+            }
+        }
+        return result;
+    }
+
+    private static boolean test(final NodeFilter filter, final Node<?> node) {
+        try {
+            return filter.test(node);
+        } catch (final RuntimeException e) {
+            /*
+             * This code may run on the simulation thread: never let a broken
+             * filter kill it.
+             */
+            L.warn("Cannot evaluate " + filter + " on " + node, e);
+            return false;
+        }
+    }
+
+    private BitSet compute(final NodeFilter filter) {
+        final int size = frame.size();
+        final long[] words = new long[(size + Long.SIZE - 1) / Long.SIZE];
+        RenderingExecutor.forEach(words.length, Long.SIZE, w -> {
+            long word = 0;
+            final int end = Math.min(size, (w + 1) * Long.SIZE);
+            for (int i = w * Long.SIZE; i < end; i++) {
+                if (test(filter, frame.getNode(i))) {
+                    word |= 1L << i;
+                }
+            }
+            words[w] = word;
+        });
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * @return the {@link MoleculePropertyCache} defining the node indexes
+     */
+    public MoleculePropertyCache getFrame() {
+        return frame;
+    }
+
+    /**
+     * Activates the filter if needed, and returns its matches.
+     *
+     * @param filter
+     *            the filter
+     * @return the indexes of the matching nodes. It must not be modified.
+     */
+    public BitSet getMatching(final NodeFilter filter) {
+        requested.add(filter);
+        return index.computeIfAbsent(filter, this::compute);
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import it.unibo.alchemist.SupportedIncarnations;
+import it.unibo.alchemist.model.interfaces.Molecule;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ * Factory for the standard {@link NodeFilter}s.
+ */
+public final class NodeFilters {
+
+    private NodeFilters() {
+    }
+
+    /**
+     * @param molecule
+     *            the molecule
+     * @return a filter matching the nodes that contain the molecule
+     */
+    public static NodeFilter contains(final Molecule molecule) {
+        return new Contains(molecule);
+    }
+
+    /**
+     * @param incarnation
+     *            the incarnation used to compute the property
+     * @param molecule
+     *            the molecule
+     * @param property
+     *            the property
+     * @param min
+     *            the minimum value (inclusive)
+     * @param max
+     *            the maximum value (inclusive)
+     * @return a filter matching the nodes whose property value falls within
+     *         [min, max]
+     */
+    public static NodeFilter propertyRange(
+            final SupportedIncarnations incarnation,
+            final Molecule molecule,
+            final String property,
+            final double min,
+            final double max) {
+        return new PropertyRange(incarnation, molecule, property, min, max);
+    }
+
+    /**
+     * @param ids
+     *            the node ids
+     * @return a filter matching the nodes whose id is among the passed ones
+     */
+    public static NodeFilter ids(final int... ids) {
+        return new IdSet(ids);
+    }
+
+    private static final class Contains implements NodeFilter {
+        private final Molecule molecule;
+
+        Contains(final Molecule molecule) {
+            this.molecule = Objects.requireNonNull(molecule);
+        }
+
+        @Override
+        public boolean test(final Node<?> node) {
+            return node.contains(molecule);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Contains && molecule.equals(((Contains) obj).molecule);
+        }
+
+        @Override
+        public int hashCode() {
+            return molecule.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "contains(" + molecule + ")";
+        }
+    }
+
+    private static final class PropertyRange implements NodeFilter {
+        private final SupportedIncarnations incarnation;
+        private final Molecule molecule;
+        private final String property;
+        private final double min;
+        private final double max;
+
+        PropertyRange(final SupportedIncarnations incarnation, final Molecule molecule, final String property, final double min, final double max) {
+            this.incarnation = Objects.requireNonNull(incarnation);
+            this.molecule = Objects.requireNonNull(molecule);
+            this.property = property;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public boolean test(final Node<?> node) {
+            final double val = incarnation.getProperty(node, molecule, property);
+            return val >= min && val <= max;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj instanceof PropertyRange) {
+                final PropertyRange pr = (PropertyRange) obj;
+                return incarnation == pr.incarnation && molecule.equals(pr.molecule) && Objects.equals(property, pr.property)
+                        && Double.compare(min, pr.min) == 0 && Double.compare(max, pr.max) == 0;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(incarnation, molecule, property, min, max);
+        }
+
+        @Override
+        public String toString() {
+            return min + " <= " + property + "(" + molecule + ") <= " + max;
+        }
+    }
+
+    private static final class IdSet implements NodeFilter {
+        private final int[] ids;
+
+        IdSet(final int... ids) {
+            this.ids = Arrays.copyOf(ids, ids.length);
+            Arrays.sort(this.ids);
+        }
+
+        @Override
+        public boolean test(final Node<?> node) {
+            return Arrays.binarySearch(ids, node.getId()) >= 0;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof IdSet && Arrays.equals(ids, ((IdSet) obj).ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(ids);
+        }
+
+        @Override
+        public String toString() {
+            return "id in " + Arrays.toString(ids);
+        }
+    }
+
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Software renderer for filled node markers. Instead of issuing a Java2D call
+ * per node, it writes circles and squares with source-over alpha blending
+ * straight into the int[] raster of a {@link BufferedImage#TYPE_INT_ARGB_PRE}
+ * image. The image is split in horizontal stripes, rasterized in parallel on
+ * a {@link ForkJoinPool}. The resulting image can then be composited onto any
+ * Graphics2D.
+ */
+public final class PointRasterizer {
+
+    /**
+     * Supported marker shapes.
+     */
+    public enum Shape {
+        /**
+         * Filled ellipse inscribed in the marker bounds.
+         */
+        CIRCLE,
+        /**
+         * Filled rectangle covering the marker bounds.
+         */
+        SQUARE
+    }
+
+    private static final int ROWS_PER_STRIPE = 16;
+    private static final int STRIPES_PER_TASK = 2;
+    private static final int FULL = 0xFF;
+    private static final int BYTE = 8;
+    private static final int RED_SHIFT = 16;
+    private static final int ALPHA_SHIFT = 24;
+    private static final double HALF = 0.5;
+
+    private final ForkJoinPool pool;
+    private final BufferedImage image;
+    private final int[] data;
+    private final int width;
+    private final int height;
+    private final int stripes;
+    private boolean dirty;
+
+    /**
+     * @param width
+     *            raster width, in pixels
+     * @param height
+     *            raster height, in pixels
+     * @param pool
+     *            the {@link ForkJoinPool} where stripes are rasterized
+     */
+    public PointRasterizer(final int width, final int height, final ForkJoinPool pool) {
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+        this.pool = pool;
+        image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        stripes = (this.height + ROWS_PER_STRIPE - 1) / ROWS_PER_STRIPE;
+    }
+
+    /**
+     * @return the image this rasterizer writes on
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * @return the raster width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the raster height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return true if something has been rasterized since the last
+     *         {@link #clear()}
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Resets every pixel to fully transparent.
+     */
+    public void clear() {
+        if (dirty) {
+            Arrays.fill(data, 0);
+            dirty = false;
+        }
+    }
+
+    /**
+     * Rasterizes the visible slots of the passed attributes. Markers are
+     * centered on their screen position, and blended in slot order.
+     *
+     * @param attributes
+     *            colors, sizes and visibility of the markers
+     * @param xs
+     *            x screen positions, one per slot
+     * @param ys
+     *            y screen positions, one per slot
+     * @param shape
+     *            the marker {@link Shape}
+     */
+    public void fill(final NodeAttributes attributes, final int[] xs, final int[] ys, final Shape shape) {
+        final int count = attributes.size();
+        /*
+         * Bucket the markers by stripe (counting sort), preserving their
+         * order, so that each stripe only visits the markers crossing it.
+         */
+        final int[] starts = new int[stripes + 1];
+        final int[] firstStripe = new int[count];
+        final int[] lastStripe = new int[count];
+        for (int i = 0; i < count; i++) {
+            firstStripe[i] = -1;
+            if (attributes.isVisible(i) && attributes.getWidth(i) > 0 && attributes.getHeight(i) > 0) {
+                final int top = ys[i] - attributes.getHeight(i) / 2;
+                final int bottom = top + attributes.getHeight(i) - 1;
+                final int left = xs[i] - attributes.getWidth(i) / 2;
+                final int right = left + attributes.getWidth(i) - 1;
+                if (bottom >= 0 && top < height && right >= 0 && left < width) {
+                    firstStripe[i] = Math.max(0, top) / ROWS_PER_STRIPE;
+                    lastStripe[i] = Math.min(height - 1, bottom) / ROWS_PER_STRIPE;
+                    for (int s = firstStripe[i]; s <= lastStripe[i]; s++) {
+                        starts[s + 1]++;
+                    }
+                }
+            }
+        }
+        for (int s = 0; s < stripes; s++) {
+            starts[s + 1] += starts[s];
+        }
+        if (starts[stripes] == 0) {
+            return;
+        }
+        final int[] buckets = new int[starts[stripes]];
+        final int[] fill = Arrays.copyOf(starts, stripes);
+        for (int i = 0; i < count; i++) {
+            for (int s = firstStripe[i]; s >= 0 && s <= lastStripe[i]; s++) {
+                buckets[fill[s]++] = i;
+            }
+        }
+        dirty = true;
+        pool.invoke(new StripeTask(0, stripes, starts, buckets, attributes, xs, ys, shape));
+    }
+
+    private void rasterizeStripe(final int stripe, final int[] starts, final int[] buckets,
+            final NodeAttributes attributes, final int[] xs, final int[] ys, final Shape shape) {
+        final int minRow = stripe * ROWS_PER_STRIPE;
+        final int maxRow = Math.min(height, minRow + ROWS_PER_STRIPE);
+        for (int b = starts[stripe]; b < starts[stripe + 1]; b++) {
+            final int i = buckets[b];
+            final int w = attributes.getWidth(i);
+            final int h = attributes.getHeight(i);
+            final int left = xs[i] - w / 2;
+            final int top = ys[i] - h / 2;
+            final int premultiplied = premultiply(attributes.getColor(i));
+            final int fromRow = Math.max(minRow, top);
+            final int toRow = Math.min(maxRow, top + h);
+            if (shape == Shape.SQUARE) {
+                final int from = Math.max(0, left);
+                final int to = Math.min(width, left + w);
+                for (int row = fromRow; row < toRow; row++) {
+                    blendSpan(row * width, from, to, premultiplied);
+                }
+            } else {
+                final double rx = w / 2d;
+                final double ry = h / 2d;
+                final double cx = left + rx;
+                final double cy = top + ry;
+                for (int row = fromRow; row < toRow; row++) {
+                    final double dy = (row + HALF - cy) / ry;
+                    final double span = 1 - dy * dy;
+                    if (span >= 0) {
+                        final double half = rx * Math.sqrt(span);
+                        final int from = Math.max(0, (int) Math.round(cx - half));
+                        final int to = Math.min(width, (int) Math.round(cx + half));
+                        blendSpan(row * width, from, to, premultiplied);
+                    }
+                }
+            }
+        }
+    }
+
+    private void blendSpan(final int rowOffset, final int from, final int to, final int src) {
+        final int alpha = src >>> ALPHA_SHIFT;
+        if (alpha == FULL) {
+            Arrays.fill(data, rowOffset + from, rowOffset + to, src);
+        } else if (alpha > 0) {
+            final int inverse = FULL - alpha;
+            for (int p = rowOffset + from; p < rowOffset + to; p++) {
+                data[p] = src + scale(data[p], inverse);
+            }
+        }
+    }
+
+    /*
+     * Multiplies each of the four 8-bit channels of c by f / 255.
+     */
+    private static int scale(final int c, final int f) {
+        return div255((c >>> ALPHA_SHIFT) * f) << ALPHA_SHIFT
+                | div255((c >>> RED_SHIFT & FULL) * f) << RED_SHIFT
+                | div255((c >>> BYTE & FULL) * f) << BYTE
+                | div255((c & FULL) * f);
+    }
+
+    private static int div255(final int v) {
+        return (v + 1 + (v >>> BYTE)) >>> BYTE;
+    }
+
+    /**
+     * @param argb
+     *            a non premultiplied ARGB color
+     * @return the premultiplied version of the color
+     */
+    public static int premultiply(final int argb) {
+        final int alpha = argb >>> ALPHA_SHIFT;
+        if (alpha == FULL) {
+            return argb;
+        }
+        return alpha << ALPHA_SHIFT | (scale(argb, alpha) & 0xFFFFFF);
+    }
+
+    private final class StripeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final int[] starts;
+        private final int[] buckets;
+        private final NodeAttributes attributes;
+        private final int[] xs;
+        private final int[] ys;
+        private final Shape shape;
+
+        StripeTask(final int from, final int to, final int[] starts, final int[] buckets,
+                final NodeAttributes attributes, final int[] xs, final int[] ys, final Shape shape) {
+            super();
+            this.from = from;
+            this.to = to;
+            this.starts = starts;
+            this.buckets = buckets;
+            this.attributes = attributes;
+            this.xs = xs;
+            this.ys = ys;
+            this.shape = shape;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= STRIPES_PER_TASK) {
+                for (int s = from; s < to; s++) {
+                    rasterizeStripe(s, starts, buckets, attributes, xs, ys, shape);
+                }
+            } else {
+                final int mid = (from + to) >>> 1;
+                invokeAll(
+                    new StripeTask(from, mid, starts, buckets, attributes, xs, ys, shape),
+                    new StripeTask(mid, to, starts, buckets, attributes, xs, ys, shape));
+            }
+        }
+    }
+
+}
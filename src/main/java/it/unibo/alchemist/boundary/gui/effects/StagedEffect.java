@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.awt.Graphics2D;
+
+/**
+ * An {@link Effect} whose work is split in stages, so that displays can run
+ * the expensive part in parallel. The drawing thread still waits for the
+ * evaluation to complete: splitting it among cores shortens the wait, but
+ * does not remove it.
+ * <ol>
+ * <li>{@link #prepare(MoleculePropertyCache)} is called once per frame,
+ * sequentially, and may touch the effect state;</li>
+ * <li>the returned {@link Evaluator} is invoked concurrently for every node on
+ * view, and must be pure;</li>
+ * <li>{@link #draw(Graphics2D, NodeAttributes, int[], int[])} is called
+ * sequentially, and should only paint what has been computed.</li>
+ * </ol>
+ */
+public interface StagedEffect extends Effect {
+
+    /**
+     * Sequential preparation phase.
+     * 
+     * @param cache
+     *            the {@link MoleculePropertyCache} of the current frame
+     * @return an {@link Evaluator} capturing everything needed to compute the
+     *         node attributes
+     */
+    Evaluator prepare(MoleculePropertyCache cache);
+
+    /**
+     * Sequential drawing phase.
+     * 
+     * @param g
+     *            Graphics2D to use
+     * @param attributes
+     *            the attributes computed in the evaluation phase
+     * @param xs
+     *            x screen positions, one per slot
+     * @param ys
+     *            y screen positions, one per slot
+     */
+    void draw(Graphics2D g, NodeAttributes attributes, int[] xs, int[] ys);
+
+    /**
+     * Optional, faster drawing phase through a {@link PointRasterizer}. Effects
+     * whose markers can be represented as filled circles or squares should
+     * override this method.
+     * 
+     * @param rasterizer
+     *            the {@link PointRasterizer} to use
+     * @param attributes
+     *            the attributes computed in the evaluation phase
+     * @param xs
+     *            x screen positions, one per slot
+     * @param ys
+     *            y screen positions, one per slot
+     * @return true if the effect has been rasterized, false if it must be
+     *         drawn through {@link #draw(Graphics2D, NodeAttributes, int[], int[])}
+     */
+    default boolean rasterize(final PointRasterizer rasterizer, final NodeAttributes attributes, final int[] xs, final int[] ys) {
+        return false;
+    }
+
+    /**
+     * Pure, thread safe computation of the visual attributes of a node.
+     */
+    @FunctionalInterface
+    interface Evaluator {
+        /**
+         * @param index
+         *            the node index within the {@link MoleculePropertyCache}
+         * @param out
+         *            where to write the attributes
+         * @param slot
+         *            the slot of out reserved to this node
+         */
+        void evaluate(int index, NodeAttributes out, int slot);
+    }
+
+}
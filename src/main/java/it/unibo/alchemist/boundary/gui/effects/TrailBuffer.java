@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.effects;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import it.unibo.alchemist.boundary.gui.util.RenderingExecutor;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ * Keeps the last positions of each node in a single preallocated
+ * <code>float</code> matrix, with one ring buffer of (x, y) pairs per row.
+ * Memory is fixed at rows x length x 8 bytes: the matrix only grows, by
+ * doubling its rows, when there are more nodes than rows. Rows of removed
+ * nodes are recycled for new ones.
+ */
+public final class TrailBuffer {
+
+    private static final int MIN_ROWS = 16;
+
+    private final int length;
+    private final Map<Node<?>, Integer> rows = new HashMap<>();
+    private float[] data;
+    private int[] heads;
+    private int[] sizes;
+    private int[] free;
+    private int freeCount;
+    private int capacity;
+    private MoleculePropertyCache lastFrame = MoleculePropertyCache.empty();
+    private int[] rowOf = new int[0];
+
+    /**
+     * @param length
+     *            the number of positions to keep for each node
+     * @param expectedNodes
+     *            the initial number of rows
+     */
+    public TrailBuffer(final int length, final int expectedNodes) {
+        if (length < 1) {
+            throw new IllegalArgumentException("Trails must have at least a point.");
+        }
+        this.length = length;
+        allocate(Math.max(MIN_ROWS, expectedNodes));
+    }
+
+    private void allocate(final int newCapacity) {
+        data = data == null ? new float[newCapacity * length * 2] : Arrays.copyOf(data, newCapacity * length * 2);
+        heads = heads == null ? new int[newCapacity] : Arrays.copyOf(heads, newCapacity);
+        sizes = sizes == null ? new int[newCapacity] : Arrays.copyOf(sizes, newCapacity);
+        final int[] newFree = new int[newCapacity];
+        if (free != null) {
+            System.arraycopy(free, 0, newFree, 0, freeCount);
+        }
+        for (int row = newCapacity - 1; row >= capacity; row--) {
+            newFree[freeCount++] = row;
+        }
+        free = newFree;
+        capacity = newCapacity;
+    }
+
+    /**
+     * Appends the current position of every node of the frame to its trail.
+     * Nodes that are no longer part of the frame lose their trail, new nodes
+     * start a new one.
+     *
+     * @param frame
+     *            the frame to sample
+     */
+    public void sample(final MoleculePropertyCache frame) {
+        if (!frame.hasSameNodes(lastFrame)) {
+            final Iterator<Map.Entry<Node<?>, Integer>> entries = rows.entrySet().iterator();
+            while (entries.hasNext()) {
+                final Map.Entry<Node<?>, Integer> entry = entries.next();
+                if (frame.indexOf(entry.getKey()) < 0) {
+                    free[freeCount++] = entry.getValue();
+                    entries.remove();
+                }
+            }
+            rowOf = new int[frame.size()];
+            for (int i = 0; i < rowOf.length; i++) {
+                final Node<?> node = frame.getNode(i);
+                Integer row = rows.get(node);
+                if (row == null) {
+                    if (freeCount == 0) {
+                        allocate(capacity * 2);
+                    }
+                    row = free[--freeCount];
+                    heads[row] = 0;
+                    sizes[row] = 0;
+                    rows.put(node, row);
+                }
+                rowOf[i] = row;
+            }
+        }
+        lastFrame = frame;
+        final double[] xs = frame.getEnvXs();
+        final double[] ys = frame.getEnvYs();
+        final int[] rowIndex = rowOf;
+        RenderingExecutor.forEach(rowIndex.length, i -> {
+            final int row = rowIndex[i];
+            final int offset = (row * length + heads[row]) * 2;
+            data[offset] = (float) xs[i];
+            data[offset + 1] = (float) ys[i];
+            heads[row] = (heads[row] + 1) % length;
+            sizes[row] = Math.min(length, sizes[row] + 1);
+        });
+    }
+
+    /**
+     * @return the number of positions kept for each node
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @param node
+     *            the node
+     * @return the row of the node, or -1 if it has no trail
+     */
+    public int rowOf(final Node<?> node) {
+        final Integer row = rows.get(node);
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * @param row
+     *            the row
+     * @return the number of positions stored in the row
+     */
+    public int size(final int row) {
+        return sizes[row];
+    }
+
+    /**
+     * Copies a position in the passed array.
+     *
+     * @param row
+     *            the row
+     * @param age
+     *            0 for the most recent position, up to size - 1 for the oldest
+     * @param dest
+     *            destination array
+     * @param offset
+     *            where to write x (y goes at offset + 1)
+     */
+    public void get(final int row, final int age, final float[] dest, final int offset) {
+        final int src = (row * length + Math.floorMod(heads[row] - 1 - age, length)) * 2;
+        dest[offset] = data[src];
+        dest[offset + 1] = data[src + 1];
+    }
+
+    /**
+     * @return the memory used by the position matrix, in bytes
+     */
+    public long getFootprint() {
+        return (long) data.length * Float.BYTES;
+    }
+
+}
@@ -9,20 +9,32 @@
 package it.unibo.alchemist.boundary.gui.monitors;
 
 import java.awt.BorderLayout;
+import java.awt.Component;
 import java.awt.GridLayout;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
-import java.util.LinkedList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import javax.swing.JButton;
 import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
 import javax.swing.JPanel;
+import javax.swing.Timer;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
+import org.danilopianini.view.GUIUtilities;
 import org.reflections.Reflections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,12 +47,23 @@ import it.unibo.alchemist.boundary.gui.tape.JTapeTab;
 import it.unibo.alchemist.boundary.interfaces.GraphicalOutputMonitor;
 import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
 import it.unibo.alchemist.boundary.l10n.R;
+import it.unibo.alchemist.boundary.monitors.AsyncOutputMonitor;
+import it.unibo.alchemist.boundary.monitors.Conflatable;
 import it.unibo.alchemist.boundary.monitors.ExportInspector;
+import it.unibo.alchemist.boundary.monitors.FastForward;
+import it.unibo.alchemist.boundary.monitors.ProfiledOutputMonitor;
+import it.unibo.alchemist.boundary.monitors.RecordingMonitor;
 import it.unibo.alchemist.core.implementations.Engine;
 import it.unibo.alchemist.core.interfaces.Simulation;
 import it.unibo.alchemist.core.interfaces.Status;
 
 /**
+ * Tab attaching and detaching data monitors. Each monitor runs on its own
+ * thread through an {@link AsyncOutputMonitor}, and can be attached and
+ * detached while the simulation runs. Monitors are profiled on the
+ * simulation side with a {@link ProfiledOutputMonitor}, whose statistics are
+ * shown and can be exported as CSV.
+ *
  * @param <T>
  */
 public class JMonitorsTab<T> extends JTapeTab implements ItemListener {
@@ -51,13 +74,18 @@ public class JMonitorsTab<T> extends JTapeTab implements ItemListener {
     private static final Reflections REFLECTIONS = new Reflections("it.unibo.alchemist");
     private static final Logger L = LoggerFactory.getLogger(JMonitorsTab.class);
     private static final String MONITORS = R.getString("monitors");
+    private static final int STATISTICS_REFRESH_PERIOD = 1000;
+    private static final String CSV = "csv";
     private final JButton btnAddMonitor = new JButton(R.getString("attach_monitor"));
     private final JButton btnRemMonitor = new JButton(R.getString("detach_monitor"));
+    private final JButton btnExportProfile = new JButton(R.getString("export_profile"));
     private final JComboBox<ClassItem<? extends OutputMonitor<T>>> monitorCombo = new JComboBox<>();
     private final JTapeSection monitorsFS = new JTapeFeatureStack(Type.HORIZONTAL_STACK);
-    private final List<JOutputMonitorRepresentation<T>> monitors = new LinkedList<>();
+    private final Map<JOutputMonitorRepresentation<T>, AsyncOutputMonitor<T>> monitors = new LinkedHashMap<>();
+    private final Set<AsyncOutputMonitor<T>> displays = new HashSet<>();
     private JOutputMonitorRepresentation<T> selected;
     private Simulation<T> simulation;
+    private File currentDirectory = new File(System.getProperty("user.home"));
 
     /**
      * 
@@ -87,6 +115,7 @@ public class JMonitorsTab<T> extends JTapeTab implements ItemListener {
         p.add(btnAddMonitor, BorderLayout.WEST);
         p.add(btnRemMonitor, BorderLayout.EAST);
         monFS.registerFeature(p);
+        monFS.registerFeature(btnExportProfile);
 
         monitorsGroup1.registerSection(monFS);
         monitorsGroup2.registerSection(monitorsFS);
@@ -101,6 +130,8 @@ public class JMonitorsTab<T> extends JTapeTab implements ItemListener {
                 selected = null;
             }
         );
+        btnExportProfile.addActionListener(e -> exportProfile());
+        new Timer(STATISTICS_REFRESH_PERIOD, e -> monitors.keySet().forEach(JOutputMonitorRepresentation::refreshStatistics)).start();
     }
 
     private void addOutputMonitor(final Class<? extends OutputMonitor<T>> monClass) {
@@ -110,11 +141,19 @@ public class JMonitorsTab<T> extends JTapeTab implements ItemListener {
             try {
                 final Constructor<? extends OutputMonitor<T>> c = monClass.getConstructor();
                 mon = c.newInstance();
+                final AsyncOutputMonitor<T> async = AsyncOutputMonitor.of(mon, AsyncOutputMonitor.DEFAULT_CAPACITY,
+                        monClass.isAnnotationPresent(Conflatable.class), true);
+                if (isDisplay(mon)) {
+                    displays.add(async);
+                }
                 if (simulation != null) {
-                    simulation.addOutputMonitor(mon);
+                    async.attach(simulation);
+                    if (displays.contains(async)) {
+                        FastForward.registerDisplay(simulation, async);
+                    }
                 }
-                repr = new JOutputMonitorRepresentation<>(mon);
-                monitors.add(repr);
+                repr = new JOutputMonitorRepresentation<>(mon, async.getProfile());
+                monitors.put(repr, async);
                 monitorsFS.add(repr);
                 repr.addItemListener(this);
                 revalidate();
@@ -127,12 +166,39 @@ public class JMonitorsTab<T> extends JTapeTab implements ItemListener {
         }
     }
 
+    /*
+     * Monitors drawing the environment get suspended while fast forwarding,
+     * as the main display.
+     */
+    private static boolean isDisplay(final OutputMonitor<?> mon) {
+        return mon instanceof Component || mon instanceof RecordingMonitor;
+    }
+
+    private void exportProfile() {
+        final JFileChooser fc = new JFileChooser();
+        fc.setFileFilter(new FileNameExtensionFilter(CSV.toUpperCase(), CSV));
+        fc.setCurrentDirectory(currentDirectory);
+        if (fc.showSaveDialog(null) == JFileChooser.APPROVE_OPTION) {
+            currentDirectory = fc.getSelectedFile().getParentFile();
+            final File f = fc.getSelectedFile();
+            final File fileToWrite = f.getName().endsWith("." + CSV) ? f : new File(f.getAbsolutePath() + "." + CSV);
+            try (Writer out = Files.newBufferedWriter(fileToWrite.toPath(), StandardCharsets.UTF_8)) {
+                out.append(ProfiledOutputMonitor.CSV_HEADER).append(System.lineSeparator());
+                for (final JOutputMonitorRepresentation<T> repr : monitors.keySet()) {
+                    repr.getProfile().appendCsv(out);
+                }
+            } catch (final IOException e) {
+                GUIUtilities.errorMessage(e);
+            }
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public void itemStateChanged(final ItemEvent e) {
         if (e.getStateChange() == ItemEvent.SELECTED) {
             selected = (JOutputMonitorRepresentation<T>) e.getItem();
-            for (final JOutputMonitorRepresentation<?> m : monitors) {
+            for (final JOutputMonitorRepresentation<?> m : monitors.keySet()) {
                 if (!m.equals(selected) && m.isSelected()) {
                     m.setSelected(false);
                 }
@@ -142,10 +208,12 @@ public class JMonitorsTab<T> extends JTapeTab implements ItemListener {
 
     private void removeOutputMonitor(final JOutputMonitorRepresentation<T> mon) {
         if (mon != null) {
+            final AsyncOutputMonitor<T> async = monitors.remove(mon);
+            displays.remove(async);
             if (simulation != null) {
-                simulation.addCommand(new Engine.StateCommand<T>().stop().build());
+                FastForward.unregisterDisplay(simulation, async);
             }
-            monitors.remove(mon);
+            async.detach();
             monitorsFS.remove(mon);
             revalidate();
         }
@@ -157,16 +225,23 @@ public class JMonitorsTab<T> extends JTapeTab implements ItemListener {
     @SuppressWarnings("unchecked")
     public void setSimulation(final Simulation<?> sim) {
         if (simulation != null) {
-            for (final JOutputMonitorRepresentation<T> jor : monitors) {
-                final OutputMonitor<T> mon = jor.getMonitor();
-                simulation.removeOutputMonitor(mon);
+            /*
+             * Detaching before stopping lets the monitors receive the last
+             * steps and terminate their threads.
+             */
+            for (final AsyncOutputMonitor<T> mon : monitors.values()) {
+                FastForward.unregisterDisplay(simulation, mon);
+                mon.detach();
             }
             simulation.addCommand(new Engine.StateCommand<T>().stop().build());
             simulation.waitFor(Status.STOPPED, 0, TimeUnit.MILLISECONDS);
         }
         simulation = (Simulation<T>) sim;
-        for (final JOutputMonitorRepresentation<T> jor : monitors) {
-            simulation.addOutputMonitor(jor.getMonitor());
+        for (final AsyncOutputMonitor<T> mon : monitors.values()) {
+            mon.attach(simulation);
+            if (displays.contains(mon)) {
+                FastForward.registerDisplay(simulation, mon);
+            }
         }
     }
 
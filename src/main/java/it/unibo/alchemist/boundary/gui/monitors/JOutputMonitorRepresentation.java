@@ -17,6 +17,7 @@ import java.awt.event.ItemListener;
 import java.awt.event.MouseAdapter;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -31,6 +32,7 @@ import org.slf4j.LoggerFactory;
 
 import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
 import it.unibo.alchemist.boundary.l10n.R;
+import it.unibo.alchemist.boundary.monitors.ProfiledOutputMonitor;
 
 /**
  * @param <T>
@@ -41,7 +43,13 @@ public class JOutputMonitorRepresentation<T> extends JPanel implements ItemSelec
      */
     private static final long serialVersionUID = 5590060251090393414L;
     private static final Logger L = LoggerFactory.getLogger(JOutputMonitorRepresentation.class);
+    private static final double NANOS_PER_MICRO = 1e3;
+    private static final double PERCENT = 100;
+    private static final double P50 = 0.5;
+    private static final double P99 = 0.99;
     private final OutputMonitor<T> monitor;
+    private final ProfiledOutputMonitor<T> profile;
+    private final JLabel statsLabel = new JLabel();
     private boolean selected;
     private final transient List<ItemListener> itemListeners = new LinkedList<>();
     private final transient MouseAdapter mouseAdapter = new MouseAdapter() {
@@ -83,6 +91,16 @@ public class JOutputMonitorRepresentation<T> extends JPanel implements ItemSelec
      * @param mon the {@link OutputMonitor}
      */
     public JOutputMonitorRepresentation(final OutputMonitor<T> mon) {
+        this(mon, null);
+    }
+
+    /**
+     * @param mon the {@link OutputMonitor}
+     * @param profile
+     *            the profiler of the monitor, whose statistics get displayed
+     *            by {@link #refreshStatistics()}. Can be null
+     */
+    public JOutputMonitorRepresentation(final OutputMonitor<T> mon, final ProfiledOutputMonitor<T> profile) {
         super();
         setBorder(new LineBorder(new Color(0, 0, 0), 1, true));
         setLayout(new BorderLayout(0, 0));
@@ -92,6 +110,12 @@ public class JOutputMonitorRepresentation<T> extends JPanel implements ItemSelec
         add(infoLabel, BorderLayout.CENTER);
         monitor = mon;
         infoLabel.setText(monitor.getClass().getSimpleName());
+        this.profile = profile;
+        if (profile != null) {
+            statsLabel.setHorizontalAlignment(SwingConstants.CENTER);
+            add(statsLabel, BorderLayout.SOUTH);
+            refreshStatistics();
+        }
 
         addMouseListener(mouseAdapter);
         addItemListener((e) -> {
@@ -115,6 +139,28 @@ public class JOutputMonitorRepresentation<T> extends JPanel implements ItemSelec
         return monitor;
     }
 
+    /**
+     * @return the profiler of the monitor, or null if it is not profiled
+     */
+    public ProfiledOutputMonitor<T> getProfile() {
+        return profile;
+    }
+
+    /**
+     * Shows the share of wall time spent by the monitor, the median and
+     * 99th percentile of its step latency, and the share of wall time spent
+     * waiting for its queue to have room.
+     */
+    public void refreshStatistics() {
+        if (profile != null) {
+            statsLabel.setText(String.format(Locale.US, "%.1f%% p50 %.0f\u00b5s p99 %.0f\u00b5s full %.1f%%",
+                    profile.getWallShare() * PERCENT,
+                    profile.getStepLatency().getQuantile(P50) / NANOS_PER_MICRO,
+                    profile.getStepLatency().getQuantile(P99) / NANOS_PER_MICRO,
+                    profile.getQueueWaitShare() * PERCENT));
+        }
+    }
+
     @Override
     public Object[] getSelectedObjects() {
         if (selected) {
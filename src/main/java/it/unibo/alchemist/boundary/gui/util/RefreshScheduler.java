@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.util;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Application wide scheduler for the refreshes of the Swing components
+ * following the simulation.
+ *
+ * Monitors {@link #register(Runnable) register} the action bringing their
+ * components up to date, and mark it dirty from any thread, as often as they
+ * like. Dirty marks are collected, and the actions get run at most once per
+ * period, all within a single task on the event dispatch thread, so that the
+ * latest state gets shown without flooding the event queue, regardless of
+ * how many steps per second the simulation performs. The rate defaults to
+ * {@value #DEFAULT_RATE} refreshes per second, and can be changed through the
+ * {@value #RATE_PROPERTY} system property or {@link #setRate(int)}.
+ */
+public final class RefreshScheduler {
+
+    /**
+     * System property setting the number of refreshes per second.
+     */
+    public static final String RATE_PROPERTY = "alchemist.ui.refreshRate";
+    /**
+     * Default number of refreshes per second.
+     */
+    public static final int DEFAULT_RATE = 30;
+
+    private static final Logger L = LoggerFactory.getLogger(RefreshScheduler.class);
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final Queue<Target> DIRTY = new ConcurrentLinkedQueue<>();
+    private static final AtomicBoolean SCHEDULED = new AtomicBoolean();
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "Alchemist UI refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static volatile long period = periodOf(Integer.getInteger(RATE_PROPERTY, DEFAULT_RATE));
+    private static volatile long lastFlush;
+
+    private RefreshScheduler() {
+    }
+
+    private static long periodOf(final int rate) {
+        return NANOS_PER_SECOND / Math.max(1, rate);
+    }
+
+    /**
+     * @return the maximum number of refreshes per second
+     */
+    public static int getRate() {
+        return (int) (NANOS_PER_SECOND / period);
+    }
+
+    /**
+     * @param rate
+     *            the maximum number of refreshes per second, at least 1
+     */
+    public static void setRate(final int rate) {
+        period = periodOf(rate);
+    }
+
+    /**
+     * @param refresh
+     *            the action bringing a component up to date with the latest
+     *            state. It always runs on the event dispatch thread
+     * @return the {@link Target} to mark dirty when the state changes
+     */
+    public static Target register(final Runnable refresh) {
+        return new Target(Objects.requireNonNull(refresh));
+    }
+
+    private static void schedule() {
+        if (SCHEDULED.compareAndSet(false, true)) {
+            final long delay = Math.max(0, lastFlush + period - System.nanoTime());
+            TIMER.schedule(() -> SwingUtilities.invokeLater(RefreshScheduler::flush), delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static void flush() {
+        lastFlush = System.nanoTime();
+        /*
+         * Marks arriving from now on need a new flush: they could have been
+         * set after their target got refreshed below.
+         */
+        SCHEDULED.set(false);
+        for (Target target = DIRTY.poll(); target != null; target = DIRTY.poll()) {
+            target.refresh();
+        }
+    }
+
+    /**
+     * A registered refresh action.
+     */
+    public static final class Target {
+        private final Runnable refresh;
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        private volatile boolean cancelled;
+
+        private Target(final Runnable refresh) {
+            this.refresh = refresh;
+        }
+
+        /**
+         * Marks the target dirty: its refresh action will run within the
+         * next period. Cheap enough to be called at every simulation step.
+         */
+        public void markDirty() {
+            if (!cancelled && dirty.compareAndSet(false, true)) {
+                DIRTY.add(this);
+                schedule();
+            }
+        }
+
+        /**
+         * Stops refreshing the target. Pending refreshes are dropped.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * @return true if the target has been cancelled
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void refresh() {
+            dirty.set(false);
+            if (!cancelled) {
+                try {
+                    refresh.run();
+                } catch (final RuntimeException e) {
+                    L.error("Refresh failed", e);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.gui.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Executor for the parallel work of the user interface: capturing frames,
+ * computing node properties, transforming coordinates, evaluating effects.
+ *
+ * Parallel streams run on the common {@link ForkJoinPool}, which is shared
+ * with the simulation when the engine runs in parallel. The work submitted
+ * here runs instead on a dedicated pool, whose parallelism and thread
+ * priority can be configured through the {@value #PARALLELISM_PROPERTY} and
+ * {@value #PRIORITY_PROPERTY} system properties, or at runtime through
+ * {@link #configure(int, int)}. Inputs smaller than a threshold
+ * ({@value #THRESHOLD_PROPERTY}, {@value #DEFAULT_THRESHOLD} elements by
+ * default) are processed sequentially on the calling thread, since splitting
+ * them costs more than it saves.
+ */
+public final class RenderingExecutor {
+
+    /**
+     * System property setting the parallelism of the pool. Defaults to the
+     * number of available processors.
+     */
+    public static final String PARALLELISM_PROPERTY = "alchemist.rendering.parallelism";
+    /**
+     * System property setting the priority of the threads of the pool.
+     * Defaults to {@value #DEFAULT_PRIORITY}.
+     */
+    public static final String PRIORITY_PROPERTY = "alchemist.rendering.priority";
+    /**
+     * System property setting the minimum number of elements processed in
+     * parallel.
+     */
+    public static final String THRESHOLD_PROPERTY = "alchemist.rendering.threshold";
+    /**
+     * Default minimum number of elements processed in parallel.
+     */
+    public static final int DEFAULT_THRESHOLD = 2048;
+    /**
+     * Default priority of the threads of the pool: just below the
+     * simulation, which should win when they compete for processors.
+     */
+    public static final int DEFAULT_PRIORITY = Thread.NORM_PRIORITY - 1;
+
+    private static volatile ForkJoinPool pool = newPool(
+            Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors()),
+            Integer.getInteger(PRIORITY_PROPERTY, DEFAULT_PRIORITY));
+    private static volatile int priority = Integer.getInteger(PRIORITY_PROPERTY, DEFAULT_PRIORITY);
+    private static volatile int threshold = Math.max(1, Integer.getInteger(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD));
+
+    private RenderingExecutor() {
+    }
+
+    private static ForkJoinPool newPool(final int parallelism, final int threadPriority) {
+        final int checkedPriority = Math.max(Thread.MIN_PRIORITY, Math.min(Thread.MAX_PRIORITY, threadPriority));
+        return new ForkJoinPool(Math.max(1, parallelism), p -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("Alchemist rendering " + thread.getPoolIndex());
+            thread.setPriority(checkedPriority);
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * @return the dedicated {@link ForkJoinPool}
+     */
+    public static ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * @return the parallelism of the pool
+     */
+    public static int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * @return the priority of the threads of the pool
+     */
+    public static int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return the minimum number of elements processed in parallel
+     */
+    public static int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Replaces the pool. The work already submitted completes on the previous
+     * one, whose threads terminate once idle.
+     *
+     * @param parallelism
+     *            the parallelism of the new pool, at least 1
+     * @param threadPriority
+     *            the priority of its threads
+     */
+    public static synchronized void configure(final int parallelism, final int threadPriority) {
+        if (parallelism != getParallelism() || threadPriority != priority) {
+            pool = newPool(parallelism, threadPriority);
+            priority = threadPriority;
+        }
+    }
+
+    /**
+     * @param minimumSize
+     *            the minimum number of elements processed in parallel
+     */
+    public static void setThreshold(final int minimumSize) {
+        threshold = Math.max(1, minimumSize);
+    }
+
+    /**
+     * @param size
+     *            the number of elements to process
+     * @return true if they are worth processing in parallel
+     */
+    public static boolean isWorthParallelizing(final int size) {
+        return size >= threshold && pool.getParallelism() > 1;
+    }
+
+    /**
+     * Calls the action for each integer in [0, size), in parallel if worth
+     * it. Returns when all the calls have completed.
+     *
+     * @param size
+     *            the number of elements
+     * @param action
+     *            the action, which must be thread safe
+     */
+    public static void forEach(final int size, final IntConsumer action) {
+        forEach(size, 1, action);
+    }
+
+    /**
+     * Calls the action for each integer in [0, size), where each call
+     * processes several elements, in parallel if worth it. Returns when all
+     * the calls have completed.
+     *
+     * @param size
+     *            the number of calls
+     * @param elementsPerCall
+     *            the number of elements each call processes
+     * @param action
+     *            the action, which must be thread safe
+     */
+    public static void forEach(final int size, final int elementsPerCall, final IntConsumer action) {
+        if (isWorthParallelizing((int) Math.min(Integer.MAX_VALUE, (long) size * elementsPerCall)) && size > 1) {
+            run(() -> IntStream.range(0, size).parallel().forEach(action));
+        } else {
+            for (int i = 0; i < size; i++) {
+                action.accept(i);
+            }
+        }
+    }
+
+    /**
+     * Calls the action for each of the passed integers, in parallel if worth
+     * it. Returns when all the calls have completed.
+     *
+     * @param values
+     *            the integers, usually indexes
+     * @param action
+     *            the action, which must be thread safe
+     */
+    public static void forEach(final int[] values, final IntConsumer action) {
+        if (isWorthParallelizing(values.length)) {
+            run(() -> Arrays.stream(values).parallel().forEach(action));
+        } else {
+            for (final int value : values) {
+                action.accept(value);
+            }
+        }
+    }
+
+    /**
+     * Runs a stream pipeline over a collection. If the collection is worth
+     * it, the pipeline receives a parallel stream, and is evaluated on the
+     * pool; otherwise, it receives a sequential stream and is evaluated on
+     * the calling thread.
+     *
+     * @param source
+     *            the collection
+     * @param pipeline
+     *            the pipeline, including its terminal operation
+     * @param <E>
+     *            elements type
+     * @param <R>
+     *            result type
+     * @return the result of the pipeline
+     */
+    public static <E, R> R apply(final Collection<E> source, final Function<Stream<E>, R> pipeline) {
+        if (isWorthParallelizing(source.size())) {
+            final ForkJoinPool current = pool;
+            if (ForkJoinTask.getPool() == current) {
+                return pipeline.apply(source.parallelStream());
+            }
+            return current.submit(() -> pipeline.apply(source.parallelStream())).join();
+        }
+        return pipeline.apply(source.stream());
+    }
+
+    /**
+     * Sorts the array, in parallel if worth it.
+     *
+     * @param values
+     *            the array to sort
+     */
+    public static void sort(final long[] values) {
+        if (isWorthParallelizing(values.length)) {
+            run(() -> Arrays.parallelSort(values));
+        } else {
+            Arrays.sort(values);
+        }
+    }
+
+    /*
+     * Parallel streams run on the pool of the thread that starts their
+     * terminal operation.
+     */
+    private static void run(final Runnable parallelWork) {
+        final ForkJoinPool current = pool;
+        if (ForkJoinTask.getPool() == current) {
+            parallelWork.run();
+        } else {
+            current.submit(parallelWork).join();
+        }
+    }
+
+}
@@ -17,6 +17,12 @@ import java.util.List;
  */
 public interface GraphicalOutputMonitor<T> extends OutputMonitor<T> {
 
+    /**
+     * The default largest share of the engine time spent capturing frames in
+     * adaptive mode.
+     */
+    double DEFAULT_MAX_OVERHEAD = 0.05;
+
     /**
      * @return how many simulation steps this monitor updates the graphics
      */
@@ -27,6 +33,44 @@ public interface GraphicalOutputMonitor<T> extends OutputMonitor<T> {
      */
     boolean isRealTime();
 
+    /**
+     * @return true if this monitor decides on its own which steps to draw.
+     *         Monitors without an adaptive mode return false
+     */
+    default boolean isAdaptive() {
+        return false;
+    }
+
+    /**
+     * If enabled, the monitor ignores the step setting, and decides on its
+     * own how often to draw, trying to reach its default frame rate while
+     * spending at most a share of the engine time capturing frames. Monitors
+     * without an adaptive mode ignore it.
+     *
+     * @param enabled
+     *            true for the adaptive mode
+     */
+    default void setAdaptive(final boolean enabled) {
+    }
+
+    /**
+     * @return the largest share of the engine time the adaptive mode can
+     *         spend capturing frames, {@link #DEFAULT_MAX_OVERHEAD} if not
+     *         configurable
+     */
+    default double getMaxOverhead() {
+        return DEFAULT_MAX_OVERHEAD;
+    }
+
+    /**
+     * @param share
+     *            the largest share (between 0 and 1, exclusive) of the engine
+     *            time the adaptive mode can spend capturing frames. Monitors
+     *            without an adaptive mode ignore it
+     */
+    default void setMaxOverhead(final double share) {
+    }
+
     /**
      * 
      */
@@ -45,10 +89,11 @@ public interface GraphicalOutputMonitor<T> extends OutputMonitor<T> {
     void setEffectStack(List<Effect> l);
 
     /**
-     * If enabled, the monitor tries to synchronize the simulation time with the
-     * real time, slowing down the simulator if needed. If the simulation is
-     * slower than the real time, then the display refreshes fast enough to keep
-     * the default frame rate.
+     * If enabled, the simulation time gets synchronized with the real time,
+     * slowing down the simulator if needed, and the monitor refreshes at most
+     * at the default frame rate. Pacing is delegated to the
+     * {@link it.unibo.alchemist.boundary.monitors.RealTimePacer} of the
+     * simulation, which also controls the speed.
      * 
      * @param rt
      *            true for the real time mode
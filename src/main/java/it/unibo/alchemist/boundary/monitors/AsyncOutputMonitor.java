@@ -0,0 +1,390 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
+import it.unibo.alchemist.core.interfaces.Simulation;
+import it.unibo.alchemist.core.interfaces.Status;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Reaction;
+import it.unibo.alchemist.model.interfaces.Time;
+
+/**
+ * Runs an {@link OutputMonitor} on its own thread, so that a slow monitor
+ * does not slow down the simulation. Events are passed through a bounded
+ * queue: when it is full, the simulation waits for the monitor to catch up.
+ * Monitors which can be conflated (see {@link Conflatable}) never fill it, as
+ * pending steps get merged into the latest one.
+ *
+ * The delegate receives the live environment, which the simulation keeps
+ * modifying meanwhile: it must only read it, and tolerate inconsistencies.
+ *
+ * {@link #attach(Simulation)} and {@link #detach()} can be used at any time,
+ * also while the simulation is running: they are executed by the simulation
+ * thread between two steps, with no need to pause or stop it. A simulation
+ * which has not started yet, or has stopped, processes no command: this
+ * monitor gets added or removed right away instead.
+ *
+ * When profiled, the timings are taken on the simulation side, and measure
+ * what the monitor costs to the simulation: queueing the events, and waiting
+ * for room when the queue is full. The time spent by the delegate on its own
+ * thread is not part of them.
+ *
+ * @param <T>
+ *            concentration type
+ */
+public final class AsyncOutputMonitor<T> implements OutputMonitor<T> {
+
+    /**
+     * Default number of events which can be queued before the simulation
+     * waits for the monitor.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final long serialVersionUID = 1L;
+    private static final Logger L = LoggerFactory.getLogger(AsyncOutputMonitor.class);
+
+    private enum Kind {
+        INITIALIZED, STEP, FINISHED, CLOSE
+    }
+
+    private final OutputMonitor<T> delegate;
+    private final boolean conflate;
+    private final int capacity;
+    private final transient Lock lock = new ReentrantLock();
+    private final transient Condition notEmpty = lock.newCondition();
+    private final transient Condition notFull = lock.newCondition();
+    private final transient Deque<Event<T>> queue = new ArrayDeque<>();
+    private final ProfiledOutputMonitor<T> profile;
+    private final OutputMonitor<T> inlet;
+    private transient Thread worker;
+    private transient Simulation<T> simulation;
+    private long conflated;
+
+    private AsyncOutputMonitor(final OutputMonitor<T> delegate, final int capacity, final boolean conflate,
+            final boolean profiled) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The queue capacity must be positive, got " + capacity);
+        }
+        this.delegate = Objects.requireNonNull(delegate);
+        this.capacity = capacity;
+        this.conflate = conflate;
+        final OutputMonitor<T> queueing = new Inlet();
+        if (profiled) {
+            profile = new ProfiledOutputMonitor<>(queueing, ProfiledOutputMonitor.DEFAULT_SAMPLING_PERIOD,
+                    ProfiledOutputMonitor.nameOf(delegate));
+            inlet = profile;
+        } else {
+            profile = null;
+            inlet = queueing;
+        }
+    }
+
+    /**
+     * @param monitor
+     *            the monitor to run asynchronously. It gets conflated if its
+     *            class is annotated with {@link Conflatable}
+     * @param <T>
+     *            concentration type
+     * @return a new {@link AsyncOutputMonitor} with the default capacity
+     */
+    public static <T> AsyncOutputMonitor<T> of(final OutputMonitor<T> monitor) {
+        return of(monitor, DEFAULT_CAPACITY, monitor.getClass().isAnnotationPresent(Conflatable.class));
+    }
+
+    /**
+     * @param monitor
+     *            the monitor to run asynchronously
+     * @param capacity
+     *            the number of events which can be queued before the
+     *            simulation waits for the monitor
+     * @param conflate
+     *            true if pending steps can be merged into the latest one
+     * @param <T>
+     *            concentration type
+     * @return a new {@link AsyncOutputMonitor}
+     */
+    public static <T> AsyncOutputMonitor<T> of(final OutputMonitor<T> monitor, final int capacity, final boolean conflate) {
+        return of(monitor, capacity, conflate, false);
+    }
+
+    /**
+     * @param monitor
+     *            the monitor to run asynchronously
+     * @param capacity
+     *            the number of events which can be queued before the
+     *            simulation waits for the monitor
+     * @param conflate
+     *            true if pending steps can be merged into the latest one
+     * @param profiled
+     *            true if the cost of the monitor for the simulation must be
+     *            measured, see {@link #getProfile()}
+     * @param <T>
+     *            concentration type
+     * @return a new {@link AsyncOutputMonitor}
+     */
+    public static <T> AsyncOutputMonitor<T> of(final OutputMonitor<T> monitor, final int capacity, final boolean conflate,
+            final boolean profiled) {
+        return new AsyncOutputMonitor<>(monitor, capacity, conflate, profiled);
+    }
+
+    /**
+     * @return the wrapped monitor
+     */
+    public OutputMonitor<T> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return the simulation side timings of this monitor, or null if it is
+     *         not profiled. Waits for a full queue are reported apart, see
+     *         {@link ProfiledOutputMonitor#getQueueWaitLatency()}
+     */
+    public ProfiledOutputMonitor<T> getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return true if pending steps get merged
+     */
+    public boolean isConflating() {
+        return conflate;
+    }
+
+    /**
+     * @return the number of steps the delegate did not see because they got
+     *         merged into a later one
+     */
+    public long getConflatedCount() {
+        lock.lock();
+        try {
+            return conflated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of events waiting for the delegate
+     */
+    public int getPending() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds this monitor to the simulation, between two steps. Detaches it from
+     * the simulation it was previously attached to, if any.
+     *
+     * @param sim
+     *            the simulation
+     */
+    public void attach(final Simulation<T> sim) {
+        Objects.requireNonNull(sim);
+        lock.lock();
+        try {
+            if (simulation == sim) {
+                return;
+            }
+            if (simulation != null) {
+                detach();
+            }
+            simulation = sim;
+        } finally {
+            lock.unlock();
+        }
+        if (sim.getStatus() == Status.INIT) {
+            /*
+             * Commands run after the monitors get initialized: adding this
+             * one through a command would make it miss the initialization.
+             */
+            sim.addOutputMonitor(this);
+        } else {
+            sim.addCommand(s -> s.addOutputMonitor(this));
+        }
+    }
+
+    /**
+     * Removes this monitor from the simulation it is attached to, between two
+     * steps. The delegate still receives the events queued meanwhile, then
+     * its thread terminates.
+     */
+    public void detach() {
+        final Simulation<T> sim;
+        lock.lock();
+        try {
+            sim = simulation;
+            simulation = null;
+        } finally {
+            lock.unlock();
+        }
+        if (sim == null) {
+            enqueue(new Event<>(Kind.CLOSE, null, null, null, 0));
+        } else if (sim.getStatus() == Status.INIT || sim.getStatus() == Status.STOPPED) {
+            sim.removeOutputMonitor(this);
+            enqueue(new Event<>(Kind.CLOSE, null, null, null, 0));
+        } else {
+            sim.addCommand(s -> {
+                s.removeOutputMonitor(this);
+                enqueue(new Event<>(Kind.CLOSE, null, null, null, 0));
+            });
+        }
+    }
+
+    @Override
+    public void initialized(final Environment<T> env) {
+        inlet.initialized(env);
+    }
+
+    @Override
+    public void stepDone(final Environment<T> env, final Reaction<T> r, final Time time, final long step) {
+        inlet.stepDone(env, r, time, step);
+    }
+
+    @Override
+    public void finished(final Environment<T> env, final Time time, final long step) {
+        inlet.finished(env, time, step);
+    }
+
+    private void enqueue(final Event<T> event) {
+        lock.lock();
+        try {
+            if (event.kind == Kind.STEP && conflate && !queue.isEmpty() && queue.peekLast().kind == Kind.STEP) {
+                queue.pollLast();
+                queue.addLast(new Event<>(Kind.STEP, event.env, null, event.time, event.step));
+                conflated++;
+                return;
+            }
+            if (event.kind != Kind.CLOSE && queue.size() >= capacity) {
+                final long start = System.nanoTime();
+                while (queue.size() >= capacity) {
+                    notFull.awaitUninterruptibly();
+                }
+                if (profile != null) {
+                    profile.recordQueueWait(System.nanoTime() - start);
+                }
+            }
+            queue.addLast(event);
+            notEmpty.signal();
+            if (worker == null) {
+                worker = new Thread(this::work, getClass().getSimpleName() + " for " + delegate.getClass().getSimpleName());
+                worker.setDaemon(true);
+                worker.start();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            final Event<T> event;
+            lock.lock();
+            try {
+                while (queue.isEmpty()) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                event = queue.pollFirst();
+                notFull.signal();
+                if (event.kind == Kind.CLOSE) {
+                    /*
+                     * Events queued after the close belong to a new attach:
+                     * keep delivering them.
+                     */
+                    if (queue.isEmpty()) {
+                        worker = null;
+                        return;
+                    }
+                    continue;
+                }
+            } finally {
+                lock.unlock();
+            }
+            deliver(event);
+        }
+    }
+
+    private void deliver(final Event<T> event) {
+        try {
+            switch (event.kind) {
+            case INITIALIZED:
+                delegate.initialized(event.env);
+                break;
+            case STEP:
+                delegate.stepDone(event.env, event.reaction, event.time, event.step);
+                break;
+            case FINISHED:
+                delegate.finished(event.env, event.time, event.step);
+                break;
+            default:
+                break;
+            }
+        } catch (final RuntimeException e) {
+            L.error(delegate + " failed handling a " + event.kind + " event", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + delegate + "]";
+    }
+
+    /*
+     * Queues the events on behalf of this monitor, so that they can be
+     * profiled on the simulation side.
+     */
+    private final class Inlet implements OutputMonitor<T> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void initialized(final Environment<T> env) {
+            enqueue(new Event<>(Kind.INITIALIZED, env, null, null, 0));
+        }
+
+        @Override
+        public void stepDone(final Environment<T> env, final Reaction<T> r, final Time time, final long step) {
+            enqueue(new Event<>(Kind.STEP, env, r, time, step));
+        }
+
+        @Override
+        public void finished(final Environment<T> env, final Time time, final long step) {
+            enqueue(new Event<>(Kind.FINISHED, env, null, time, step));
+        }
+    }
+
+    private static final class Event<T> {
+        private final Kind kind;
+        private final Environment<T> env;
+        private final Reaction<T> reaction;
+        private final Time time;
+        private final long step;
+
+        Event(final Kind kind, final Environment<T> env, final Reaction<T> reaction, final Time time, final long step) {
+            this.kind = kind;
+            this.env = env;
+            this.reaction = reaction;
+            this.time = time;
+            this.step = step;
+        }
+    }
+
+}
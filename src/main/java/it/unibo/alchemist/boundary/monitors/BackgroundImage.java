@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import it.unibo.alchemist.boundary.gui.util.RenderingExecutor;
+
+/**
+ * Georeferenced raster drawn under the nodes, such as a floorplan.
+ *
+ * The image is loaded once, and a pyramid of progressively halved copies is
+ * derived from it. When drawing, the level matching the current zoom is
+ * picked, regardless of rotation, and only the tiles of that level which are
+ * in sight get drawn. Tiles are copied into images suitable for fast drawing
+ * on demand, straight from the region of the original image they cover, and
+ * kept in a bounded least recently used cache. The halved copies are never
+ * stored: only the original image always stays in memory, and a missing tile
+ * only costs reading its own region, at any zoom.
+ */
+public final class BackgroundImage {
+
+    /**
+     * Default number of tiles kept in memory.
+     */
+    public static final int DEFAULT_CACHED_TILES = 256;
+    private static final int TILE = 256;
+    private static final int CHANNEL = 0xFF;
+    private static final int BYTE = 8;
+    private static final int ALPHA_SHIFT = 24;
+    private static final int LEVEL_SHIFT = 56;
+    private static final int ROW_SHIFT = 28;
+    private static final int CHANNELS = 4;
+
+    private final BufferedImage source;
+    private final int levels;
+    private final AffineTransform imageToEnv;
+    private final Map<Long, BufferedImage> tiles;
+
+    /**
+     * @param file
+     *            the image file
+     * @param topLeftX
+     *            environment x coordinate of the top left corner of the image
+     * @param topLeftY
+     *            environment y coordinate of the top left corner of the image
+     * @param bottomRightX
+     *            environment x coordinate of the bottom right corner of the
+     *            image
+     * @param bottomRightY
+     *            environment y coordinate of the bottom right corner of the
+     *            image
+     * @throws IOException
+     *             if the image can not be read
+     */
+    public BackgroundImage(final File file, final double topLeftX, final double topLeftY,
+            final double bottomRightX, final double bottomRightY) throws IOException {
+        this(read(file), topLeftX, topLeftY, bottomRightX, bottomRightY, DEFAULT_CACHED_TILES);
+    }
+
+    /**
+     * @param image
+     *            the image
+     * @param topLeftX
+     *            environment x coordinate of the top left corner of the image
+     * @param topLeftY
+     *            environment y coordinate of the top left corner of the image
+     * @param bottomRightX
+     *            environment x coordinate of the bottom right corner of the
+     *            image
+     * @param bottomRightY
+     *            environment y coordinate of the bottom right corner of the
+     *            image
+     * @param cachedTiles
+     *            the maximum number of tiles to keep in memory
+     */
+    public BackgroundImage(final BufferedImage image, final double topLeftX, final double topLeftY,
+            final double bottomRightX, final double bottomRightY, final int cachedTiles) {
+        imageToEnv = new AffineTransform(
+                (bottomRightX - topLeftX) / image.getWidth(), 0,
+                0, (bottomRightY - topLeftY) / image.getHeight(),
+                topLeftX, topLeftY);
+        source = image;
+        tiles = new LinkedHashMap<Long, BufferedImage>(cachedTiles, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, BufferedImage> eldest) {
+                return size() > cachedTiles;
+            }
+        };
+        int count = 1;
+        while (halved(image.getWidth(), count - 1) > TILE || halved(image.getHeight(), count - 1) > TILE) {
+            count++;
+        }
+        levels = count;
+    }
+
+    /*
+     * Size of a side of the image after being halved the given number of
+     * times.
+     */
+    private static int halved(final int size, final int times) {
+        int result = size;
+        for (int i = 0; i < times; i++) {
+            result = (result + 1) / 2;
+        }
+        return result;
+    }
+
+    private static BufferedImage read(final File file) throws IOException {
+        final BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + file);
+        }
+        return image;
+    }
+
+    /**
+     * @return the number of levels of the pyramid    /**
+     * @return the number of levels of the pyramid
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * Draws the visible part of the image.
+     *
+     * @param g
+     *            the {@link Graphics2D} to draw on
+     * @param envToView
+     *            the environment to view transform
+     * @param width
+     *            the view width
+     * @param height
+     *            the view height
+     */
+    public void draw(final Graphics2D g, final AffineTransform envToView, final int width, final int height) {
+        final AffineTransform imageToView = new AffineTransform(envToView);
+        imageToView.concatenate(imageToEnv);
+        /*
+         * The determinant is the area scaling, which does not depend on
+         * rotation.
+         */
+        final double scale = Math.sqrt(Math.abs(imageToView.getDeterminant()));
+        if (!(scale > 0) || Double.isInfinite(scale)) {
+            return;
+        }
+        final int levelIndex = (int) Math.max(0, Math.min(levels - 1, Math.floor(-Math.log(scale) / Math.log(2))));
+        final int levelWidth = halved(source.getWidth(), levelIndex);
+        final int levelHeight = halved(source.getHeight(), levelIndex);
+        final AffineTransform levelToView = new AffineTransform(imageToView);
+        levelToView.scale((double) source.getWidth() / levelWidth, (double) source.getHeight() / levelHeight);
+        final AffineTransform viewToLevel;
+        try {
+            viewToLevel = levelToView.createInverse();
+        } catch (final NoninvertibleTransformException e) {
+            return;
+        }
+        /*
+         * Range of tiles in sight
+         */
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (final Point corner : new Point[] {new Point(0, 0), new Point(width, 0), new Point(0, height), new Point(width, height)}) {
+            final Point2D p = viewToLevel.transform(corner, null);
+            minX = Math.min(minX, p.getX());
+            minY = Math.min(minY, p.getY());
+            maxX = Math.max(maxX, p.getX());
+            maxY = Math.max(maxY, p.getY());
+        }
+        final int columns = (levelWidth + TILE - 1) / TILE;
+        final int rows = (levelHeight + TILE - 1) / TILE;
+        final int fromColumn = (int) Math.max(0, Math.floor(minX / TILE));
+        final int toColumn = (int) Math.min(columns - 1, Math.floor(maxX / TILE));
+        final int fromRow = (int) Math.max(0, Math.floor(minY / TILE));
+        final int toRow = (int) Math.min(rows - 1, Math.floor(maxY / TILE));
+        final Object interpolation = g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                final BufferedImage tile = getTile(levelIndex, column, row);
+                final AffineTransform tileToView = new AffineTransform(levelToView);
+                tileToView.translate(column * TILE, row * TILE);
+                g.drawImage(tile, tileToView, null);
+            }
+        }
+        if (interpolation != null) {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        }
+    }
+
+    private BufferedImage getTile(final int levelIndex, final int column, final int row) {
+        final long key = (long) levelIndex << LEVEL_SHIFT | (long) row << ROW_SHIFT | column;
+        return tiles.computeIfAbsent(key, k -> downsample(levelIndex, column, row));
+    }
+
+    /*
+     * Box filter over the pixels of the original image covered by the tile,
+     * one row of the tile per task. A pixel of level n covers a square of
+     * 2^n by 2^n pixels of the original image, clipped at its borders.
+     */
+    private BufferedImage downsample(final int levelIndex, final int column, final int row) {
+        final int factor = 1 << levelIndex;
+        final int x = column * TILE;
+        final int y = row * TILE;
+        final int w = Math.min(TILE, halved(source.getWidth(), levelIndex) - x);
+        final int h = Math.min(TILE, halved(source.getHeight(), levelIndex) - y);
+        final int sourceX = x * factor;
+        final int sourceWidth = Math.min(source.getWidth() - sourceX, w * factor);
+        final int[] pixels = new int[w * h];
+        RenderingExecutor.forEach(h, sourceWidth * factor, tileY -> {
+            final int sourceY = (y + tileY) * factor;
+            final int sourceRows = Math.min(factor, source.getHeight() - sourceY);
+            final long[] sums = new long[w * CHANNELS];
+            final int[] line = new int[sourceWidth];
+            for (int sy = sourceY; sy < sourceY + sourceRows; sy++) {
+                source.getRGB(sourceX, sy, sourceWidth, 1, line, 0, sourceWidth);
+                for (int sx = 0; sx < sourceWidth; sx++) {
+                    final int argb = line[sx];
+                    final int base = (sx >> levelIndex) * CHANNELS;
+                    sums[base] += argb & CHANNEL;
+                    sums[base + 1] += argb >>> BYTE & CHANNEL;
+                    sums[base + 2] += argb >>> 2 * BYTE & CHANNEL;
+                    sums[base + 3] += argb >>> ALPHA_SHIFT;
+                }
+            }
+            for (int tileX = 0; tileX < w; tileX++) {
+                final long samples = (long) (Math.min(sourceWidth, (tileX + 1) * factor) - tileX * factor) * sourceRows;
+                int argb = 0;
+                for (int channel = 0; channel < CHANNELS; channel++) {
+                    argb |= (int) ((sums[tileX * CHANNELS + channel] + samples / 2) / samples) << channel * BYTE;
+                }
+                pixels[tileY * w + tileX] = argb;
+            }
+        });
+        final BufferedImage tile = createTile(w, h);
+        tile.setRGB(0, 0, w, h, pixels, 0, w);
+        return tile;
+    }
+
+    private static BufferedImage createTile(final int width, final int height) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            final GraphicsConfiguration conf = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+            return conf.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
+
+/**
+ * Marks an {@link OutputMonitor} which only cares about the latest state of
+ * the simulation. When run through an {@link AsyncOutputMonitor}, the steps
+ * it could not keep up with get merged into a single
+ * {@link OutputMonitor#stepDone} call, carrying the latest time and step and
+ * a null reaction, meaning that any node may have changed.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Conflatable {
+}
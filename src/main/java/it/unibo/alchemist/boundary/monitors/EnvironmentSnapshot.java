@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * Immutable copy of the positions and neighborhoods of (some of) the nodes of
+ * an environment, taken by a {@link SnapshotService} at a given step.
+ *
+ * Snapshots are reference counted: whoever obtains one must {@link #release()}
+ * it once done, after which it must not be used anymore. When the last
+ * reference is released, the snapshot drops its content.
+ *
+ * @param <T>
+ *            concentration type
+ */
+public final class EnvironmentSnapshot<T> implements AutoCloseable {
+
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final long step;
+    private final double time;
+    private final Rectangle2D region;
+    private Node<T>[] nodes;
+    private Position[] positions;
+    private Neighborhood<T>[] neighborhoods;
+    private volatile Map<Node<T>, Integer> indexes;
+
+    EnvironmentSnapshot(final long step, final double time, final Rectangle2D region,
+            final Node<T>[] nodes, final Position[] positions, final Neighborhood<T>[] neighborhoods) {
+        this.step = step;
+        this.time = time;
+        this.region = region == null ? null : (Rectangle2D) region.clone();
+        this.nodes = nodes;
+        this.positions = positions;
+        this.neighborhoods = neighborhoods;
+    }
+
+    /**
+     * @return the step this snapshot was taken at
+     */
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * @return the simulation time this snapshot was taken at
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * @return the environment region this snapshot covers, or null if it
+     *         contains every node
+     */
+    public Rectangle2D getRegion() {
+        return region == null ? null : (Rectangle2D) region.clone();
+    }
+
+    /**
+     * @param other
+     *            a region, or null for the whole environment
+     * @return true if every node within the region is part of this snapshot
+     */
+    public boolean covers(final Rectangle2D other) {
+        return region == null || other != null && region.contains(other);
+    }
+
+    /**
+     * @return the number of captured nodes
+     */
+    public int size() {
+        checkAlive();
+        return nodes.length;
+    }
+
+    /**
+     * @return the captured nodes, in capture order
+     */
+    public List<Node<T>> getNodes() {
+        checkAlive();
+        return Collections.unmodifiableList(Arrays.asList(nodes));
+    }
+
+    /**
+     * @param i
+     *            the node index
+     * @return the node
+     */
+    public Node<T> getNode(final int i) {
+        checkAlive();
+        return nodes[i];
+    }
+
+    /**
+     * @param i
+     *            the node index
+     * @return the position of the node
+     */
+    public Position getPosition(final int i) {
+        checkAlive();
+        return positions[i];
+    }
+
+    /**
+     * @param i
+     *            the node index
+     * @return a copy of the neighborhood of the node, or null if it could not
+     *         be copied. It must not be modified.
+     */
+    public Neighborhood<T> getNeighborhood(final int i) {
+        checkAlive();
+        return neighborhoods[i];
+    }
+
+    /**
+     * @param node
+     *            the node
+     * @return its index within this snapshot, or -1 if it was not captured
+     */
+    public int indexOf(final Node<?> node) {
+        checkAlive();
+        Map<Node<T>, Integer> result = indexes;
+        if (result == null) {
+            synchronized (this) {
+                result = indexes;
+                if (result == null) {
+                    result = new HashMap<>(nodes.length * 2);
+                    for (int i = 0; i < nodes.length; i++) {
+                        result.put(nodes[i], i);
+                    }
+                    indexes = result;
+                }
+            }
+        }
+        final Integer idx = result.get(node);
+        return idx == null ? -1 : idx;
+    }
+
+    /**
+     * Adds a reference to this snapshot.
+     *
+     * @return this snapshot
+     */
+    EnvironmentSnapshot<T> retain() {
+        if (references.getAndUpdate(r -> r > 0 ? r + 1 : r) <= 0) {
+            throw new IllegalStateException("The snapshot of step " + step + " has already been released");
+        }
+        return this;
+    }
+
+    /**
+     * Drops a reference to this snapshot. Once every reference has been
+     * released, the snapshot can not be used anymore.
+     */
+    public void release() {
+        final int left = references.decrementAndGet();
+        if (left == 0) {
+            synchronized (this) {
+                nodes = null;
+                positions = null;
+                neighborhoods = null;
+                indexes = null;
+            }
+        } else if (left < 0) {
+            throw new IllegalStateException("The snapshot of step " + step + " has been released too many times");
+        }
+    }
+
+    /**
+     * Same as {@link #release()}.
+     */
+    @Override
+    public void close() {
+        release();
+    }
+
+    private void checkAlive() {
+        if (references.get() <= 0) {
+            throw new IllegalStateException("The snapshot of step " + step + " has already been released");
+        }
+    }
+
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
+import it.unibo.alchemist.core.implementations.Engine;
+import it.unibo.alchemist.core.interfaces.Simulation;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Reaction;
+import it.unibo.alchemist.model.interfaces.Time;
+
+/**
+ * Runs a simulation at full speed up to a target time or step, with a set of
+ * monitors (typically the graphical ones) detached, and real time pacing
+ * disabled. Once the target is reached, the simulation gets paused, and the
+ * monitors get attached back and notified of the current state, so that
+ * displays start again from a fresh snapshot.
+ *
+ * Besides the monitors passed explicitly, every monitor registered through
+ * {@link #registerDisplay(Simulation, OutputMonitor)} gets suspended: windows
+ * opened on the side of the main display, such as node trackers or
+ * recordings, do not know about the fast forward. They get attached back only
+ * if they are still registered once it is over.
+ *
+ * Progress can be polled from any thread through {@link #getStep()},
+ * {@link #getTime()} and {@link #getProgress()}.
+ *
+ * @param <T>
+ *            concentration type
+ */
+public final class FastForward<T> implements OutputMonitor<T> {
+
+    private static final long serialVersionUID = 1L;
+    private static final Map<Simulation<?>, Set<OutputMonitor<?>>> DISPLAYS = Collections.synchronizedMap(new WeakHashMap<>());
+    private final transient Simulation<T> sim;
+    private final List<OutputMonitor<T>> suspended;
+    private transient volatile List<OutputMonitor<T>> displays = Collections.emptyList();
+    private final double targetTime;
+    private final long targetStep;
+    private final transient Runnable onDone;
+    private final AtomicBoolean finishing = new AtomicBoolean();
+    private volatile boolean done;
+    private volatile boolean pacing;
+    private volatile long step;
+    private volatile double time;
+    private double startTime;
+    private long startStep;
+
+    private FastForward(final Simulation<T> sim, final double targetTime, final long targetStep,
+            final Collection<? extends OutputMonitor<T>> suspended, final Runnable onDone) {
+        this.sim = Objects.requireNonNull(sim);
+        this.targetTime = targetTime;
+        this.targetStep = targetStep;
+        this.suspended = new ArrayList<>(suspended);
+        this.onDone = Objects.requireNonNull(onDone);
+    }
+
+    /**
+     * Registers a monitor showing the simulation, to be suspended by every
+     * fast forward. The monitor must unregister when it gets detached.
+     *
+     * @param sim
+     *            the simulation
+     * @param monitor
+     *            the monitor, as attached to the simulation
+     * @param <T>
+     *            concentration type
+     */
+    public static <T> void registerDisplay(final Simulation<T> sim, final OutputMonitor<T> monitor) {
+        DISPLAYS.computeIfAbsent(sim, s -> ConcurrentHashMap.newKeySet()).add(Objects.requireNonNull(monitor));
+    }
+
+    /**
+     * @param sim
+     *            the simulation
+     * @param monitor
+     *            a monitor previously registered with
+     *            {@link #registerDisplay(Simulation, OutputMonitor)}
+     * @param <T>
+     *            concentration type
+     */
+    public static <T> void unregisterDisplay(final Simulation<T> sim, final OutputMonitor<T> monitor) {
+        synchronized (DISPLAYS) {
+            final Set<OutputMonitor<?>> registered = DISPLAYS.get(sim);
+            if (registered != null && registered.remove(monitor) && registered.isEmpty()) {
+                /*
+                 * Monitors may refer to the simulation, keeping the key alive
+                 */
+                DISPLAYS.remove(sim);
+            }
+        }
+    }
+
+    private static boolean isRegistered(final Simulation<?> sim, final OutputMonitor<?> monitor) {
+        final Set<OutputMonitor<?>> registered = DISPLAYS.get(sim);
+        return registered != null && registered.contains(monitor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<OutputMonitor<T>> displaysOf(final Simulation<T> sim) {
+        synchronized (DISPLAYS) {
+            final Set<OutputMonitor<?>> registered = DISPLAYS.get(sim);
+            final List<OutputMonitor<T>> result = new ArrayList<>();
+            if (registered != null) {
+                for (final OutputMonitor<?> monitor : registered) {
+                    result.add((OutputMonitor<T>) monitor);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @param sim
+     *            the simulation
+     * @param target
+     *            the simulation time to reach
+     * @param suspended
+     *            the monitors to detach meanwhile
+     * @param onDone
+     *            executed on the simulation thread once the target is reached
+     *            or the simulation ends
+     * @param <T>
+     *            concentration type
+     * @return a new {@link FastForward}, to be started
+     */
+    public static <T> FastForward<T> toTime(final Simulation<T> sim, final double target,
+            final Collection<? extends OutputMonitor<T>> suspended, final Runnable onDone) {
+        return new FastForward<>(sim, target, Long.MAX_VALUE, suspended, onDone);
+    }
+
+    /**
+     * @param sim
+     *            the simulation
+     * @param target
+     *            the step to reach
+     * @param suspended
+     *            the monitors to detach meanwhile
+     * @param onDone
+     *            executed on the simulation thread once the target is reached
+     *            or the simulation ends
+     * @param <T>
+     *            concentration type
+     * @return a new {@link FastForward}, to be started
+     */
+    public static <T> FastForward<T> toStep(final Simulation<T> sim, final long target,
+            final Collection<? extends OutputMonitor<T>> suspended, final Runnable onDone) {
+        return new FastForward<>(sim, Double.POSITIVE_INFINITY, target, suspended, onDone);
+    }
+
+    /**
+     * Detaches the monitors and runs the simulation. Monitors are detached by
+     * an engine command, so no step is lost between the two.
+     */
+    public void start() {
+        RealTimePacer.peek(sim).ifPresent(RealTimePacer::wakeUp);
+        sim.addCommand(s -> {
+            final RealTimePacer<T> pacer = RealTimePacer.of(s);
+            startTime = s.getTime().toDouble();
+            startStep = s.getStep();
+            time = startTime;
+            step = startStep;
+            pacing = pacer.isEnabled();
+            pacer.setEnabled(false);
+            suspended.forEach(s::removeOutputMonitor);
+            displays = displaysOf(s);
+            displays.forEach(s::removeOutputMonitor);
+            s.addOutputMonitor(this);
+        });
+        sim.addCommand(new Engine.StateCommand<T>().run().build());
+    }
+
+    /**
+     * Stops fast forwarding before the target: the simulation gets paused,
+     * and the monitors attached back.
+     */
+    public void cancel() {
+        finish();
+    }
+
+    /**
+     * @return the last step reached
+     */
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * @return the last simulation time reached
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * @return how far the simulation is from the target, between 0 and 1
+     */
+    public double getProgress() {
+        final double byStep = targetStep == Long.MAX_VALUE ? 0 : (double) (step - startStep) / (targetStep - startStep);
+        final double byTime = Double.isInfinite(targetTime) ? 0 : (time - startTime) / (targetTime - startTime);
+        return Math.max(0, Math.min(1, Math.max(byStep, byTime)));
+    }
+
+    /**
+     * @return true if the target has been reached, or the simulation ended,
+     *         and the monitors have been attached back
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public void initialized(final Environment<T> env) {
+    }
+
+    @Override
+    public void stepDone(final Environment<T> env, final Reaction<T> r, final Time t, final long s) {
+        time = t.toDouble();
+        step = s;
+        if (s >= targetStep || time >= targetTime) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        if (finishing.compareAndSet(false, true)) {
+            RealTimePacer.peek(sim).ifPresent(RealTimePacer::wakeUp);
+            sim.addCommand(new Engine.StateCommand<T>().pause().build());
+            sim.addCommand(s -> {
+                s.removeOutputMonitor(this);
+                RealTimePacer.of(s).setEnabled(pacing);
+                final Environment<T> env = s.getEnvironment();
+                final List<OutputMonitor<T>> resumed = new ArrayList<>(suspended);
+                for (final OutputMonitor<T> display : displays) {
+                    if (isRegistered(s, display)) {
+                        resumed.add(display);
+                    }
+                }
+                for (final OutputMonitor<T> monitor : resumed) {
+                    s.addOutputMonitor(monitor);
+                    /*
+                     * A step with no reaction makes displays refresh
+                     * everything
+                     */
+                    monitor.stepDone(env, null, s.getTime(), s.getStep());
+                }
+                done = true;
+                onDone.run();
+            });
+        }
+    }
+
+    /**
+     * The simulation ended before the target: there is nothing to attach
+     * the monitors back to, but they still get to know the final state.
+     */
+    @Override
+    public void finished(final Environment<T> env, final Time t, final long s) {
+        if (finishing.compareAndSet(false, true)) {
+            time = t.toDouble();
+            step = s;
+            for (final OutputMonitor<T> monitor : suspended) {
+                monitor.finished(env, t, s);
+            }
+            for (final OutputMonitor<T> display : displays) {
+                if (isRegistered(sim, display)) {
+                    display.finished(env, t, s);
+                }
+            }
+            done = true;
+            onDone.run();
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unibo.alchemist.boundary.monitors.FrameProfiler.Phase;
+
+/**
+ * Emits the {@link FrameProfiler} figures as Java Flight Recorder events.
+ * The event types are defined at runtime through <code>jdk.jfr</code>,
+ * accessed reflectively, so that the code still builds and runs on JVMs
+ * without it: there, every method does nothing.
+ */
+final class FlightRecorderEvents {
+
+    private static final Logger L = LoggerFactory.getLogger(FlightRecorderEvents.class);
+    private static final String[] CATEGORY = { "Alchemist", "GUI" };
+    private static final String NANOSECONDS = "NANOSECONDS";
+    private static final List<Phase> FRAME_PHASES = Collections.unmodifiableList(Arrays.asList(
+            Phase.BACKGROUND, Phase.TRANSFORM, Phase.OBSTACLES, Phase.LINKS, Phase.EFFECTS, Phase.BLIT, Phase.OVERLAYS));
+    private static final FlightRecorderEvents INSTANCE = new FlightRecorderEvents();
+
+    private final boolean available;
+    private Object frameType;
+    private Object captureType;
+    private Method newEvent;
+    private Method isEnabled;
+    private Method begin;
+    private Method set;
+    private Method commit;
+
+    private FlightRecorderEvents() {
+        boolean ok;
+        try {
+            final Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+            final Constructor<?> annotation = annotationElement.getConstructor(Class.class, Object.class);
+            final Class<?> name = Class.forName("jdk.jfr.Name");
+            final Class<?> label = Class.forName("jdk.jfr.Label");
+            final Class<?> category = Class.forName("jdk.jfr.Category");
+            final Class<?> timespan = Class.forName("jdk.jfr.Timespan");
+            final Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+            final Constructor<?> field = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+            final Class<?> factory = Class.forName("jdk.jfr.EventFactory");
+            final Method create = factory.getMethod("create", List.class, List.class);
+            final List<Object> frameFields = new ArrayList<>();
+            for (final Phase phase : FRAME_PHASES) {
+                final String phaseName = phase.name().toLowerCase();
+                frameFields.add(field.newInstance(long.class, phaseName, Arrays.asList(
+                        annotation.newInstance(label, Character.toUpperCase(phaseName.charAt(0)) + phaseName.substring(1)),
+                        annotation.newInstance(timespan, NANOSECONDS))));
+            }
+            frameFields.add(field.newInstance(int.class, "nodesDrawn",
+                    Collections.singletonList(annotation.newInstance(label, "Nodes drawn"))));
+            frameFields.add(field.newInstance(int.class, "nodesCulled",
+                    Collections.singletonList(annotation.newInstance(label, "Nodes culled"))));
+            frameType = create.invoke(null, Arrays.asList(
+                    annotation.newInstance(name, "it.unibo.alchemist.Frame"),
+                    annotation.newInstance(label, "Alchemist Frame"),
+                    annotation.newInstance(category, CATEGORY)), frameFields);
+            captureType = create.invoke(null, Arrays.asList(
+                    annotation.newInstance(name, "it.unibo.alchemist.Capture"),
+                    annotation.newInstance(label, "Alchemist Capture"),
+                    annotation.newInstance(category, CATEGORY)),
+                    Collections.singletonList(field.newInstance(int.class, "nodes",
+                            Collections.singletonList(annotation.newInstance(label, "Nodes")))));
+            final Class<?> event = Class.forName("jdk.jfr.Event");
+            newEvent = factory.getMethod("newEvent");
+            isEnabled = event.getMethod("isEnabled");
+            begin = event.getMethod("begin");
+            set = event.getMethod("set", int.class, Object.class);
+            commit = event.getMethod("commit");
+            ok = true;
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            L.debug("Flight Recorder events are not available", e);
+            ok = false;
+        }
+        available = ok;
+    }
+
+    /**
+     * @return the only instance
+     */
+    static FlightRecorderEvents getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return a started frame event, or null if no recording is interested
+     */
+    Object beginFrame() {
+        return begin(frameType);
+    }
+
+    /**
+     * @return a started capture event, or null if no recording is interested
+     */
+    Object beginCapture() {
+        return begin(captureType);
+    }
+
+    private Object begin(final Object type) {
+        if (available) {
+            try {
+                final Object event = newEvent.invoke(type);
+                if ((Boolean) isEnabled.invoke(event)) {
+                    begin.invoke(event);
+                    return event;
+                }
+            } catch (final ReflectiveOperationException e) {
+                L.debug("Cannot create a Flight Recorder event", e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param event
+     *            the event returned by {@link #beginFrame()}
+     * @param phases
+     *            the nanoseconds spent in each phase, by ordinal
+     * @param drawn
+     *            nodes drawn
+     * @param culled
+     *            nodes culled
+     */
+    void commitFrame(final Object event, final long[] phases, final int drawn, final int culled) {
+        if (event != null) {
+            final Object[] values = new Object[FRAME_PHASES.size() + 2];
+            for (int i = 0; i < FRAME_PHASES.size(); i++) {
+                values[i] = phases[FRAME_PHASES.get(i).ordinal()];
+            }
+            values[FRAME_PHASES.size()] = drawn;
+            values[FRAME_PHASES.size() + 1] = culled;
+            commit(event, values);
+        }
+    }
+
+    /**
+     * @param event
+     *            the event returned by {@link #beginCapture()}
+     * @param nodes
+     *            the nodes captured
+     */
+    void commitCapture(final Object event, final int nodes) {
+        if (event != null) {
+            commit(event, nodes);
+        }
+    }
+
+    private void commit(final Object event, final Object... values) {
+        try {
+            for (int i = 0; i < values.length; i++) {
+                set.invoke(event, i, values[i]);
+            }
+            commit.invoke(event);
+        } catch (final ReflectiveOperationException e) {
+            L.debug("Cannot commit a Flight Recorder event", e);
+        }
+    }
+
+}
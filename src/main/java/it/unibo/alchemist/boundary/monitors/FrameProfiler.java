@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.ToDoubleFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unibo.alchemist.boundary.gui.effects.Effect;
+
+/**
+ * Collects the time a display spends in each phase of a frame into fixed
+ * memory {@link LatencyHistogram}s. It can be exposed through JMX with
+ * {@link #register(String)}, and, where the JVM supports it, every frame
+ * and capture is also emitted as a Flight Recorder event.
+ *
+ * Painting phases must be recorded by a single thread, the one painting;
+ * captures may be recorded by another one, but must not overlap. Timing a
+ * phase costs a couple of {@link System#nanoTime()} calls, so the profiler
+ * is always on.
+ */
+public final class FrameProfiler implements FrameProfilerMXBean {
+
+    /**
+     * The phases of a frame.
+     */
+    public enum Phase {
+        /**
+         * Copying the environment state, on the simulation thread.
+         */
+        CAPTURE,
+        /**
+         * Drawing the background.
+         */
+        BACKGROUND,
+        /**
+         * Computing the view position of the nodes and culling the ones out
+         * of sight.
+         */
+        TRANSFORM,
+        /**
+         * Drawing the obstacles.
+         */
+        OBSTACLES,
+        /**
+         * Drawing the links.
+         */
+        LINKS,
+        /**
+         * Running the whole effect stack, excluding compositing.
+         */
+        EFFECTS,
+        /**
+         * Compositing the software rasterized markers.
+         */
+        BLIT,
+        /**
+         * Drawing the closest node, the selection and the HUD.
+         */
+        OVERLAYS,
+        /**
+         * Drawing the environment on the view: every phase but capture and
+         * background.
+         */
+        FRAME
+    }
+
+    private static final Logger L = LoggerFactory.getLogger(FrameProfiler.class);
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double P50 = 0.5;
+    private static final double P99 = 0.99;
+    private static final double SMOOTHING = 0.1;
+    private static final String EFFECT_PREFIX = "effect:";
+
+    private final Map<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+    private final ConcurrentMap<String, LatencyHistogram> effects = new ConcurrentHashMap<>();
+    private final long[] lastFrame = new long[Phase.values().length];
+    private final FlightRecorderEvents jfr = FlightRecorderEvents.getInstance();
+    private volatile double interval = Double.NaN;
+    private volatile long lastFrameEnd;
+    private volatile int drawn;
+    private volatile int culled;
+    private Object frameEvent;
+    private Object captureEvent;
+    private ObjectName registeredAs;
+
+    /**
+     * Builds a new profiler.
+     */
+    public FrameProfiler() {
+        for (final Phase phase : Phase.values()) {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * @param phase
+     *            the phase
+     * @return the timings of the phase, in nanoseconds
+     */
+    public LatencyHistogram getLatency(final Phase phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * @return the timings of each effect, by position in the stack and class
+     *         name, as in {@code 0:DrawShape}
+     */
+    public Map<String, LatencyHistogram> getEffectLatencies() {
+        return Collections.unmodifiableMap(effects);
+    }
+
+    /**
+     * Opens a frame, on the painting thread.
+     *
+     * @return the current {@link System#nanoTime()}
+     */
+    public long frameStarted() {
+        frameEvent = jfr.beginFrame();
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the duration of a painting phase.
+     *
+     * @param phase
+     *            the phase
+     * @param start
+     *            when the phase started, as per {@link System#nanoTime()}
+     * @return the current {@link System#nanoTime()}, so that consecutive
+     *         phases can be chained
+     */
+    public long record(final Phase phase, final long start) {
+        final long now = System.nanoTime();
+        add(phase, now - start);
+        return now;
+    }
+
+    /**
+     * Records a painting phase whose duration is not contiguous.
+     *
+     * @param phase
+     *            the phase
+     * @param nanos
+     *            how long the phase took
+     */
+    public void add(final Phase phase, final long nanos) {
+        phases.get(phase).record(nanos);
+        lastFrame[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * @param position
+     *            the position of the effect in the stack: stacks can hold
+     *            several effects of the same class
+     * @param effect
+     *            the effect
+     * @param nanos
+     *            how long it took
+     */
+    public void recordEffect(final int position, final Effect effect, final long nanos) {
+        final String simpleName = effect.getClass().getSimpleName();
+        final String key = position + ":" + (simpleName.isEmpty() ? effect.getClass().getName() : simpleName);
+        effects.computeIfAbsent(key, k -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * Forgets the timings of the effects, for instance because the effect
+     * stack changed and positions refer to other effects.
+     */
+    public void resetEffects() {
+        effects.clear();
+    }
+
+    /**
+     * Closes a frame.
+     *
+     * @param start
+     *            the value returned by {@link #frameStarted()}
+     * @param nodesDrawn
+     *            the nodes drawn
+     * @param nodesCulled
+     *            the captured nodes left out of the frame
+     */
+    public void frameDone(final long start, final int nodesDrawn, final int nodesCulled) {
+        final long now = System.nanoTime();
+        phases.get(Phase.FRAME).record(now - start);
+        drawn = nodesDrawn;
+        culled = nodesCulled;
+        final long previous = lastFrameEnd;
+        if (previous != 0) {
+            final double current = interval;
+            final double elapsed = now - previous;
+            interval = Double.isNaN(current) ? elapsed : current + SMOOTHING * (elapsed - current);
+        }
+        lastFrameEnd = now;
+        jfr.commitFrame(frameEvent, lastFrame, nodesDrawn, nodesCulled);
+        frameEvent = null;
+        Arrays.fill(lastFrame, 0);
+    }
+
+    /**
+     * Opens a capture. Captures must not overlap.
+     *
+     * @return the current {@link System#nanoTime()}
+     */
+    public long captureStarted() {
+        captureEvent = jfr.beginCapture();
+        return System.nanoTime();
+    }
+
+    /**
+     * Closes a capture.
+     *
+     * @param start
+     *            the value returned by {@link #captureStarted()}
+     * @param nodes
+     *            the nodes captured
+     */
+    public void captureDone(final long start, final int nodes) {
+        phases.get(Phase.CAPTURE).record(System.nanoTime() - start);
+        jfr.commitCapture(captureEvent, nodes);
+        captureEvent = null;
+    }
+
+    @Override
+    public long getFrameCount() {
+        return phases.get(Phase.FRAME).getCount();
+    }
+
+    @Override
+    public double getFramesPerSecond() {
+        final double current = interval;
+        return Double.isNaN(current) || current <= 0 ? 0 : NANOS_PER_SECOND / current;
+    }
+
+    @Override
+    public double getFrameP50Millis() {
+        return phases.get(Phase.FRAME).getQuantile(P50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getFrameP99Millis() {
+        return phases.get(Phase.FRAME).getQuantile(P99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public Map<String, Double> getPhaseMeanMillis() {
+        return summarize(LatencyHistogram::getMean);
+    }
+
+    @Override
+    public Map<String, Double> getPhaseP99Millis() {
+        return summarize(h -> h.getQuantile(P99));
+    }
+
+    private Map<String, Double> summarize(final ToDoubleFunction<LatencyHistogram> statistic) {
+        final Map<String, Double> result = new LinkedHashMap<>();
+        for (final Map.Entry<Phase, LatencyHistogram> entry : phases.entrySet()) {
+            result.put(entry.getKey().name().toLowerCase(), statistic.applyAsDouble(entry.getValue()) / NANOS_PER_MILLI);
+        }
+        for (final Map.Entry<String, LatencyHistogram> entry : effects.entrySet()) {
+            result.put(EFFECT_PREFIX + entry.getKey(), statistic.applyAsDouble(entry.getValue()) / NANOS_PER_MILLI);
+        }
+        return result;
+    }
+
+    @Override
+    public int getNodesDrawn() {
+        return drawn;
+    }
+
+    @Override
+    public int getNodesCulled() {
+        return culled;
+    }
+
+    @Override
+    public void reset() {
+        phases.values().forEach(LatencyHistogram::reset);
+        effects.clear();
+        interval = Double.NaN;
+        lastFrameEnd = 0;
+    }
+
+    /**
+     * Exposes this profiler on the platform MBean server. Does nothing if it
+     * is already registered.
+     *
+     * @param name
+     *            the name of the profiled display
+     */
+    public synchronized void register(final String name) {
+        if (registeredAs == null) {
+            try {
+                final ObjectName objectName = new ObjectName("it.unibo.alchemist:type=FrameProfiler,name=" + ObjectName.quote(name));
+                final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if (!server.isRegistered(objectName)) {
+                    server.registerMBean(this, objectName);
+                    registeredAs = objectName;
+                }
+            } catch (final JMException e) {
+                L.warn("Cannot expose the frame profiler of " + name + " through JMX", e);
+            }
+        }
+    }
+
+    /**
+     * Removes this profiler from the platform MBean server, if registered.
+     */
+    public synchronized void unregister() {
+        if (registeredAs != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+            } catch (final JMException e) {
+                L.warn("Cannot remove " + registeredAs + " from JMX", e);
+            }
+            registeredAs = null;
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.util.Map;
+
+/**
+ * JMX view of a {@link FrameProfiler}. Durations are in milliseconds.
+ */
+public interface FrameProfilerMXBean {
+
+    /**
+     * @return the number of frames painted since the last reset
+     */
+    long getFrameCount();
+
+    /**
+     * @return the recent painting rate, in frames per second
+     */
+    double getFramesPerSecond();
+
+    /**
+     * @return the median time spent painting a frame
+     */
+    double getFrameP50Millis();
+
+    /**
+     * @return the 99th percentile of the time spent painting a frame
+     */
+    double getFrameP99Millis();
+
+    /**
+     * @return the average time of each phase, and of each effect, by name
+     */
+    Map<String, Double> getPhaseMeanMillis();
+
+    /**
+     * @return the 99th percentile of the time of each phase, and of each
+     *         effect, by name
+     */
+    Map<String, Double> getPhaseP99Millis();
+
+    /**
+     * @return the nodes drawn in the last frame
+     */
+    int getNodesDrawn();
+
+    /**
+     * @return the captured nodes left out of the last frame
+     */
+    int getNodesCulled();
+
+    /**
+     * Forgets all the timings.
+     */
+    void reset();
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides, step by step, whether a display should capture a new frame. Frames
+ * are spaced in wall clock time, not in simulation steps, so that:
+ * <ul>
+ * <li>no more than the target frame rate is captured;</li>
+ * <li>the time spent capturing stays below a share of the time the engine
+ * runs, given the measured cost of a capture;</li>
+ * <li>frames are not captured faster than the view can paint them.</li>
+ * </ul>
+ * Costs are smoothed with an exponential moving average, so that the spacing
+ * follows changes in the simulation without oscillating.
+ *
+ * {@link #shouldCapture(long)} and {@link #captured(long, long)} must be
+ * called by the simulation thread, {@link #rendered(long)} by any thread.
+ */
+public final class FrameSkipController {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final double SMOOTHING = 0.2;
+    private static final long REPORT_WINDOW = TimeUnit.SECONDS.toNanos(1);
+
+    private final double targetFrameRate;
+    private volatile double maxOverhead;
+    private double captureCost;
+    private volatile double renderCost;
+    private long lastCapture = Long.MIN_VALUE;
+    private long windowStart;
+    private long windowCaptureTime;
+    private int windowFrames;
+    private volatile double frameRate = Double.NaN;
+    private volatile double overhead = Double.NaN;
+
+    /**
+     * @param targetFrameRate
+     *            the desired frames per second
+     * @param maxOverhead
+     *            the largest share (between 0 and 1, exclusive) of wall
+     *            clock time that can be spent capturing frames
+     */
+    public FrameSkipController(final double targetFrameRate, final double maxOverhead) {
+        if (!(targetFrameRate > 0)) {
+            throw new IllegalArgumentException("The frame rate must be positive: " + targetFrameRate);
+        }
+        this.targetFrameRate = targetFrameRate;
+        setMaxOverhead(maxOverhead);
+    }
+
+    /**
+     * @param share
+     *            the largest share (between 0 and 1, exclusive) of wall
+     *            clock time that can be spent capturing frames
+     */
+    public void setMaxOverhead(final double share) {
+        if (!(share > 0 && share < 1)) {
+            throw new IllegalArgumentException("The overhead must be between 0 and 1: " + share);
+        }
+        maxOverhead = share;
+    }
+
+    /**
+     * @return the largest share of wall clock time that can be spent capturing
+     *         frames
+     */
+    public double getMaxOverhead() {
+        return maxOverhead;
+    }
+
+    /**
+     * @return the current minimum wall clock time between two captures, in
+     *         nanoseconds
+     */
+    public long getInterval() {
+        final double byRate = NANOS_PER_SECOND / targetFrameRate;
+        final double byOverhead = captureCost / maxOverhead;
+        return (long) Math.max(byRate, Math.max(byOverhead, renderCost));
+    }
+
+    /**
+     * @param now
+     *            the current {@link System#nanoTime()}
+     * @return true if a frame should be captured now
+     */
+    public boolean shouldCapture(final long now) {
+        return lastCapture == Long.MIN_VALUE || now - lastCapture >= getInterval();
+    }
+
+    /**
+     * Records a capture.
+     *
+     * @param start
+     *            the {@link System#nanoTime()} the capture started at
+     * @param end
+     *            the {@link System#nanoTime()} the capture ended at
+     */
+    public void captured(final long start, final long end) {
+        final long cost = end - start;
+        captureCost = lastCapture == Long.MIN_VALUE ? cost : captureCost + SMOOTHING * (cost - captureCost);
+        lastCapture = start;
+        windowFrames++;
+        windowCaptureTime += cost;
+        if (end - windowStart >= REPORT_WINDOW) {
+            if (windowStart != 0) {
+                frameRate = windowFrames * NANOS_PER_SECOND / (end - windowStart);
+                overhead = (double) windowCaptureTime / (end - windowStart);
+            }
+            windowStart = end;
+            windowFrames = 0;
+            windowCaptureTime = 0;
+        }
+    }
+
+    /**
+     * Records how long painting a frame took.
+     *
+     * @param cost
+     *            the painting time, in nanoseconds
+     */
+    public void rendered(final long cost) {
+        final double previous = renderCost;
+        renderCost = previous == 0 ? cost : previous + SMOOTHING * (cost - previous);
+    }
+
+    /**
+     * @return the frames captured per second, measured over about a second,
+     *         or NaN if not measured yet
+     */
+    public double getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * @return the share of wall clock time spent capturing frames, measured
+     *         over about a second, or NaN if not measured yet
+     */
+    public double getOverhead() {
+        return overhead;
+    }
+
+}
@@ -9,6 +9,7 @@
 package it.unibo.alchemist.boundary.monitors;
 
 import java.awt.Color;
+import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
@@ -24,6 +25,8 @@ import java.awt.event.WindowEvent;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Path2D;
 import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -31,8 +34,8 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -41,6 +44,7 @@ import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.MouseInputListener;
 
 import org.apache.commons.math3.util.Pair;
@@ -48,8 +52,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import it.unibo.alchemist.boundary.gui.effects.Effect;
+import it.unibo.alchemist.boundary.gui.effects.FrameContext;
+import it.unibo.alchemist.boundary.gui.effects.FrameEffect;
+import it.unibo.alchemist.boundary.gui.effects.MoleculePropertyCache;
+import it.unibo.alchemist.boundary.gui.effects.NodeAttributes;
+import it.unibo.alchemist.boundary.gui.effects.NodeFilter;
+import it.unibo.alchemist.boundary.gui.effects.NodeFilterIndex;
+import it.unibo.alchemist.boundary.gui.effects.PointRasterizer;
+import it.unibo.alchemist.boundary.gui.effects.StagedEffect;
+import it.unibo.alchemist.boundary.gui.util.RefreshScheduler;
+import it.unibo.alchemist.boundary.gui.util.RenderingExecutor;
 import it.unibo.alchemist.boundary.interfaces.Graphical2DOutputMonitor;
 import it.unibo.alchemist.boundary.l10n.R;
+import it.unibo.alchemist.boundary.monitors.FrameProfiler.Phase;
 import it.unibo.alchemist.boundary.wormhole.implementation.AngleManagerImpl;
 import it.unibo.alchemist.boundary.wormhole.implementation.ExponentialZoomManager;
 import it.unibo.alchemist.boundary.wormhole.implementation.PointAdapter;
@@ -65,9 +80,9 @@ import it.unibo.alchemist.core.interfaces.Simulation;
 import it.unibo.alchemist.core.interfaces.Status;
 import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
 import it.unibo.alchemist.model.implementations.times.DoubleTime;
+import it.unibo.alchemist.model.interfaces.Context;
 import it.unibo.alchemist.model.interfaces.Environment;
 import it.unibo.alchemist.model.interfaces.Environment2DWithObstacles;
-import it.unibo.alchemist.model.interfaces.Neighborhood;
 import it.unibo.alchemist.model.interfaces.Node;
 import it.unibo.alchemist.model.interfaces.Obstacle2D;
 import it.unibo.alchemist.model.interfaces.Position;
@@ -95,6 +110,8 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
     private static final double FREEDOM_RADIUS = 1d;
     private static final Logger L = LoggerFactory.getLogger(Generic2DDisplay.class);
     private static final int MS_PER_SECOND = 1000;
+    private static final long FRAME_NANOS = 1_000_000_000L / DEFAULT_FRAME_RATE;
+    private static final double DEFAULT_CAPTURE_MARGIN = 0.25;
 
     /**
      * 
@@ -104,6 +121,10 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
      * How big (in pixels) the selected node should appear.
      */
     private static final byte SELECTED_NODE_DRAWING_SIZE = 16, SELECTED_NODE_INTERNAL_SIZE = 10;
+    private static final int HUD_MARGIN = 8, HUD_LINE_HEIGHT = 14, HUD_WIDTH = 260, HUD_FONT_SIZE = 12;
+    private static final Color HUD_BACKGROUND = new Color(0, 0, 0, 160);
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double P99 = 0.99;
     private static final long serialVersionUID = 511631766719686842L;
 
     private transient AngleManagerImpl angleManager;
@@ -118,13 +139,21 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
     private final transient PointerSpeed mouseMovement = new PointerSpeedImpl();
     private int mousex, mousey;
     private Node<T> nearest;
-    private final ConcurrentMap<Node<T>, Neighborhood<T>> neighbors = new ConcurrentHashMap<>();
     private List<? extends Obstacle2D> obstacles;
-    private final ConcurrentMap<Node<T>, Position> positions = new ConcurrentHashMap<>();
+    /*
+     * The snapshot of the latest frame, retained until the next one replaces
+     * it. Guarded by mapConsistencyMutex.
+     */
+    private transient EnvironmentSnapshot<T> frame;
     private boolean realTime;
     private int st;
 
-    private long timeInit = System.currentTimeMillis();
+    private transient long lastUpdate;
+    private volatile boolean adaptive;
+    private final transient FrameSkipController frameSkip = new FrameSkipController(DEFAULT_FRAME_RATE, DEFAULT_MAX_OVERHEAD);
+    private final transient FrameProfiler profiler = new FrameProfiler();
+    private boolean profilerHud;
+    private transient int nodesDrawn;
 
     private transient IWormhole2D wormhole;
 
@@ -136,6 +165,22 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
     private transient Optional<Point> originPoint = Optional.empty();
     private transient Optional<Point> endingPoint = Optional.empty();
     private transient Set<Node<T>> selectedNodes = new HashSet<>();
+    private transient volatile MoleculePropertyCache propertyCache = MoleculePropertyCache.empty();
+    private transient volatile NodeFilterIndex nodeFilters = NodeFilterIndex.empty();
+    private transient Optional<NodeFilter> selectionFilter = Optional.empty();
+    private boolean softwareRendering;
+    private transient PointRasterizer rasterizer;
+    private final transient Set<Node<T>> changedNodes = ConcurrentHashMap.newKeySet();
+    private transient volatile boolean allNodesChanged = true;
+    private transient volatile Motion motion = Motion.NONE;
+    private boolean interpolate;
+    private transient volatile BackgroundImage backgroundImage;
+    private transient Timer interpolationTimer;
+    private double captureMargin = DEFAULT_CAPTURE_MARGIN;
+    private transient volatile SnapshotService<T>.Subscription subscription;
+    private transient volatile Rectangle2D captured;
+    private final transient AtomicBoolean recapturePending = new AtomicBoolean();
+    private final transient RefreshScheduler.Target repaintRequest = RefreshScheduler.register(this::repaint);
 
     /**
      * Initializes a new display with out redrawing the first step.
@@ -205,6 +250,10 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
                 mol.addWindowListener(new WindowAdapter() {
                     @Override
                     public void windowClosed(final WindowEvent e) {
+                        /*
+                         * Molecules are injected outside of any reaction
+                         */
+                        allNodesChanged = true;
                         selectedNodes.clear();
                         resetStatus();
                     }
@@ -217,7 +266,7 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
                 for (final Node<T> n : selectedNodes) {
                     Engine.fromEnvironment(currentEnv).addCommand(CommandsFactory.newRemoveNodeCommand(n));
                 }
-                Engine.fromEnvironment(currentEnv).addCommand(sim -> update(sim.getEnvironment(), sim.getTime()));
+                Engine.fromEnvironment(currentEnv).addCommand(this::refresh);
                 resetStatus();
             }
         });
@@ -226,12 +275,17 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
         bindKey(KeyEvent.VK_P, () -> Optional.ofNullable(Engine.fromEnvironment(currentEnv))
                 .ifPresent(sim -> {
                     if (sim.getStatus() == Status.RUNNING) {
+                        RealTimePacer.peek(sim).ifPresent(RealTimePacer::wakeUp);
                         sim.addCommand(new Engine.StateCommand<T>().pause().build());
                     } else {
                         sim.addCommand(new Engine.StateCommand<T>().run().build());
                     }
                 }));
         bindKey(KeyEvent.VK_R, () -> setRealTime(!isRealTime()));
+        bindKey(KeyEvent.VK_A, () -> setAdaptive(!isAdaptive()));
+        bindKey(KeyEvent.VK_F, () -> setSoftwareRendering(!isSoftwareRendering()));
+        bindKey(KeyEvent.VK_I, () -> setInterpolation(!isInterpolating()));
+        bindKey(KeyEvent.VK_H, () -> setProfilerHudVisible(!isProfilerHudVisible()));
         bindKey(KeyEvent.VK_LEFT, () -> setStep(Math.max(1, st - Math.max(st / 10, 1))));
         bindKey(KeyEvent.VK_RIGHT, () -> setStep(Math.max(st, st + Math.max(st / 10, 1))));
     }
@@ -261,12 +315,17 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
 
     /**
      * This method is meant to be overridden by subclasses that want to display
-     * a more sophisticated background than a simple color.
+     * a more sophisticated background than a simple color. By default, it
+     * draws the {@link BackgroundImage}, if any.
      * 
      * @param g
      *            the Graphics2D to use
      */
     protected void drawBackground(final Graphics2D g) {
+        final BackgroundImage image = backgroundImage;
+        if (image != null && wormhole != null) {
+            image.draw(g, FrameContext.envToView(wormhole, getWidth(), getHeight()), getWidth(), getHeight());
+        }
     }
 
     /**
@@ -279,47 +338,81 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
         if (wormhole == null || !isVisible() || !isEnabled()) {
             return;
         }
+        final long paintStart = profiler.frameStarted();
         accessData();
-        if (hooked.isPresent()) {
-            final Position hcoor = positions.get(hooked.get());
-            final Point hp = wormhole.getViewPoint(hcoor);
-            if (hp.distance(getCenter()) > FREEDOM_RADIUS) {
-                wormhole.setViewPosition(hp);
+        /*
+         * The frame, its columns and its filter index are published together:
+         * read them together, so that effects draw the same frame as the
+         * positions.
+         */
+        final EnvironmentSnapshot<T> snapshot = frame;
+        final MoleculePropertyCache cache = propertyCache;
+        final NodeFilterIndex filters = nodeFilters;
+        if (hooked.isPresent() && snapshot != null && snapshot.indexOf(hooked.get()) >= 0) {
+            final Position hcoor = snapshot.getPosition(snapshot.indexOf(hooked.get()));
+            if (hcoor != null) {
+                final Point hp = wormhole.getViewPoint(hcoor);
+                if (hp.distance(getCenter()) > FREEDOM_RADIUS) {
+                    wormhole.setViewPosition(hp);
+                }
             }
         }
+        publishViewBounds();
         /*
          * Compute nodes in sight and their screen position
          */
-        final Map<Node<T>, Point> onView = positions.entrySet().parallelStream()
-                .map(pair -> new Pair<>(pair.getKey(), wormhole.getViewPoint(pair.getValue())))
-                .filter(p -> wormhole.isInsideView(p.getSecond()))
-                .collect(Collectors.toMap(Pair::getKey, Pair::getValue));
+        final Motion frames = motion;
+        final double progress = interpolate ? frames.progress(System.nanoTime()) : 1;
+        final int inCapture = snapshot == null ? 0 : snapshot.size();
+        final Point[] viewPoints = new Point[inCapture];
+        RenderingExecutor.forEach(inCapture, i -> {
+            final Position position = snapshot.getPosition(i);
+            final Point p = wormhole.getViewPoint(progress < 1
+                    ? frames.interpolate(snapshot.getNode(i), position, progress)
+                    : position);
+            if (wormhole.isInsideView(p)) {
+                viewPoints[i] = p;
+            }
+        });
+        final Map<Node<T>, Point> onView = new HashMap<>();
+        for (int i = 0; i < inCapture; i++) {
+            if (viewPoints[i] != null) {
+                onView.put(snapshot.getNode(i), viewPoints[i]);
+            }
+        }
+        long phaseStart = profiler.record(Phase.TRANSFORM, paintStart);
         g.setColor(Color.BLACK);
         if (obstacles != null) {
             /*
              * TODO: only draw obstacles if on view
              */
-            obstacles.parallelStream()
+            RenderingExecutor.apply(obstacles, obs -> obs
                 .map(this::convertObstacle)
-                .forEachOrdered(g::fill);
+                .collect(Collectors.toList()))
+                .forEach(g::fill);
+            phaseStart = profiler.record(Phase.OBSTACLES, phaseStart);
         }
         if (paintLinks) {
             g.setColor(Color.GRAY);
-            onView.keySet().parallelStream()
-                .map(neighbors::get)
-                .flatMap(neigh -> neigh.getNeighbors().parallelStream()
+            RenderingExecutor.apply(onView.keySet(), inSight -> inSight
+                .map(node -> snapshot.getNeighborhood(snapshot.indexOf(node)))
+                .filter(Objects::nonNull)
+                .flatMap(neigh -> neigh.getNeighbors().stream()
                     .map(node -> node.compareTo(neigh.getCenter()) > 0
                                 ? new Pair<>(neigh.getCenter(), node)
                                 : new Pair<>(node, neigh.getCenter())))
                 .distinct()
+                .filter(pair -> snapshot.indexOf(pair.getFirst()) >= 0 && snapshot.indexOf(pair.getSecond()) >= 0)
                 .map(pair -> mapPair(pair, node ->
                         Optional.ofNullable(onView.get(node))
-                        .orElse(wormhole.getViewPoint(positions.get(node)))))
-                .forEachOrdered(line -> {
+                        .orElseGet(() -> wormhole.getViewPoint(snapshot.getPosition(snapshot.indexOf(node))))))
+                .collect(Collectors.toList()))
+                .forEach(line -> {
                     final Point p1 = line.getFirst();
                     final Point p2 = line.getSecond();
                     g.drawLine(p1.x, p1.y, p2.x, p2.y);
                 });
+            phaseStart = profiler.record(Phase.LINKS, phaseStart);
         }
         releaseData();
         if (isDraggingMouse && status == ViewStatus.MOVING && originPoint.isPresent() && endingPoint.isPresent()) {
@@ -331,23 +424,20 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
             }
         }
         g.setColor(Color.GREEN);
+        nodesDrawn = onView.size();
         if (effectStack != null) {
-            effectStack.forEach(effect -> {
-                onView.entrySet().forEach(entry -> {
-                    final Point p = entry.getValue();
-                    effect.apply(g, entry.getKey(), p.x, p.y);
-                });
-            });
+            drawEffects(g, onView, cache, filters);
+            phaseStart = System.nanoTime();
         }
         if (isCloserNodeMarked()) {
-            final Optional<Map.Entry<Node<T>, Point>> closest = onView.entrySet().parallelStream()
+            final Optional<Map.Entry<Node<T>, Point>> closest = RenderingExecutor.apply(onView.entrySet(), entries -> entries
                     .min((pair1, pair2) -> {
                         final Point p1 = pair1.getValue();
                         final Point p2 = pair2.getValue();
                         final double d1 = Math.hypot(p1.x - mousex, p1.y - mousey);
                         final double d2 = Math.hypot(p2.x - mousex, p2.y - mousey);
                         return Double.compare(d1, d2);
-                    });
+                    }));
             if (closest.isPresent()) {
                 nearest = closest.get().getKey();
                 final int nearestx = closest.get().getValue().x;
@@ -364,16 +454,216 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
             final int width = Math.abs(endingPoint.get().x - originPoint.get().x);
             final int height = Math.abs(endingPoint.get().y - originPoint.get().y);
             g.drawRect(x, y, width, height);
-            selectedNodes = onView.entrySet().parallelStream()
-                    .filter(nodes -> isInsideRectangle(nodes.getValue(), x, y, width, height))
-                    .map(onScreen -> onScreen.getKey())
-                    .collect(Collectors.toSet());
+            if (selectionFilter.isPresent()) {
+                /*
+                 * Only go through the nodes matching the selection filter
+                 */
+                @SuppressWarnings("unchecked")
+                final Set<Node<T>> selectable = filters.getMatching(selectionFilter.get()).stream()
+                        .mapToObj(idx -> (Node<T>) filters.getFrame().getNode(idx))
+                        .filter(node -> {
+                            final Point p = onView.get(node);
+                            return p != null && isInsideRectangle(p, x, y, width, height);
+                        })
+                        .collect(Collectors.toSet());
+                selectedNodes = selectable;
+            } else {
+                selectedNodes = RenderingExecutor.apply(onView.entrySet(), entries -> entries
+                        .filter(nodes -> isInsideRectangle(nodes.getValue(), x, y, width, height))
+                        .map(onScreen -> onScreen.getKey())
+                        .collect(Collectors.toSet()));
+            }
         }
-        selectedNodes.parallelStream()
+        selectedNodes.stream()
             .map(e -> Optional.ofNullable(onView.get(e)))
             .filter(Optional::isPresent)
             .map(Optional::get)
             .forEachOrdered(p -> drawFriedEgg(g, p.x, p.y, Color.BLUE, Color.CYAN));
+        if (profilerHud) {
+            drawProfilerHud(g);
+        }
+        profiler.record(Phase.OVERLAYS, phaseStart);
+        frameSkip.rendered(System.nanoTime() - paintStart);
+        profiler.frameDone(paintStart, nodesDrawn, Math.max(0, inCapture - nodesDrawn));
+    }
+
+    private void drawProfilerHud(final Graphics2D g) {
+        final String[] lines = {
+            String.format("FPS %.1f", profiler.getFramesPerSecond()),
+            String.format("frame p50 %.2f ms, p99 %.2f ms", profiler.getFrameP50Millis(), profiler.getFrameP99Millis()),
+            String.format("capture p99 %.2f ms", profiler.getLatency(Phase.CAPTURE).getQuantile(P99) / NANOS_PER_MILLI),
+            String.format("nodes %d drawn, %d culled", profiler.getNodesDrawn(), profiler.getNodesCulled()),
+        };
+        g.setColor(HUD_BACKGROUND);
+        g.fillRect(HUD_MARGIN, HUD_MARGIN, HUD_WIDTH, HUD_LINE_HEIGHT * lines.length + HUD_MARGIN);
+        g.setColor(Color.WHITE);
+        g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, HUD_FONT_SIZE));
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], 2 * HUD_MARGIN, HUD_MARGIN + HUD_LINE_HEIGHT * (i + 1));
+        }
+    }
+
+    private void drawEffects(final Graphics2D g, final Map<Node<T>, Point> onView,
+            final MoleculePropertyCache cache, final NodeFilterIndex filters) {
+        @SuppressWarnings("unchecked")
+        final Node<T>[] allNodes = new Node[onView.size()];
+        final int[] allXs = new int[allNodes.length];
+        final int[] allYs = new int[allNodes.length];
+        final int[] allIndexes = new int[allNodes.length];
+        int i = 0;
+        for (final Map.Entry<Node<T>, Point> entry : onView.entrySet()) {
+            allNodes[i] = entry.getKey();
+            allXs[i] = entry.getValue().x;
+            allYs[i] = entry.getValue().y;
+            allIndexes[i] = cache.indexOf(allNodes[i]);
+            i++;
+        }
+        final int[] order = drawingOrder(cache, allIndexes, allXs, allYs);
+        final Node<T>[] nodes = order == null ? allNodes : select(allNodes, order);
+        final int[] xs = order == null ? allXs : select(allXs, order);
+        final int[] ys = order == null ? allYs : select(allYs, order);
+        final int[] indexes = order == null ? allIndexes : select(allIndexes, order);
+        final int count = nodes.length;
+        nodesDrawn = count;
+        int[] slotOf = null;
+        final PointRasterizer raster = softwareRendering ? getRasterizer() : null;
+        final long effectsStart = System.nanoTime();
+        long blit = 0;
+        int position = 0;
+        for (final Effect effect : effectStack) {
+            final long effectStart = System.nanoTime();
+            long effectBlit = 0;
+            final Optional<NodeFilter> filter = effect.getFilter();
+            /*
+             * If the effect declares a filter, only iterate over the matching
+             * nodes. The index can be used only if it refers to the same
+             * frame of the cache.
+             */
+            int[] slots = null;
+            if (filter.isPresent() && filters.getFrame() == cache) {
+                if (slotOf == null) {
+                    slotOf = slotsByIndex(cache.size(), indexes);
+                }
+                final int[] reverse = slotOf;
+                slots = filters.getMatching(filter.get()).stream()
+                        .map(idx -> reverse[idx])
+                        .filter(slot -> slot >= 0)
+                        .toArray();
+            }
+            if (effect instanceof FrameEffect) {
+                effectBlit += flushRaster(g, raster);
+                final Node<?>[] sn = slots == null ? nodes : select(nodes, slots);
+                final int[] sx = slots == null ? xs : select(xs, slots);
+                final int[] sy = slots == null ? ys : select(ys, slots);
+                final int[] si = slots == null ? indexes : select(indexes, slots);
+                ((FrameEffect) effect).draw(g, new FrameContext(wormhole, getWidth(), getHeight(), cache, sn, sx, sy, si, RenderingExecutor.getPool()));
+            } else if (effect instanceof StagedEffect) {
+                final int[] sx = slots == null ? xs : select(xs, slots);
+                final int[] sy = slots == null ? ys : select(ys, slots);
+                final int[] si = slots == null ? indexes : select(indexes, slots);
+                /*
+                 * Pure evaluation runs in parallel, drawing is sequential.
+                 * This thread waits for the evaluation: it gets shorter with
+                 * more cores, not free. Nodes missing from the cache are left
+                 * hidden.
+                 */
+                final StagedEffect staged = (StagedEffect) effect;
+                final StagedEffect.Evaluator evaluator = staged.prepare(cache);
+                final NodeAttributes attributes = new NodeAttributes(si.length);
+                RenderingExecutor.forEach(si.length, slot -> {
+                    if (si[slot] >= 0) {
+                        evaluator.evaluate(si[slot], attributes, slot);
+                    }
+                });
+                if (raster == null || !staged.rasterize(raster, attributes, sx, sy)) {
+                    effectBlit += flushRaster(g, raster);
+                    staged.draw(g, attributes, sx, sy);
+                }
+            } else if (slots == null) {
+                effectBlit += flushRaster(g, raster);
+                for (int slot = 0; slot < count; slot++) {
+                    effect.apply(g, nodes[slot], xs[slot], ys[slot], cache, indexes[slot]);
+                }
+            } else {
+                effectBlit += flushRaster(g, raster);
+                for (final int slot : slots) {
+                    effect.apply(g, nodes[slot], xs[slot], ys[slot], cache, indexes[slot]);
+                }
+            }
+            profiler.recordEffect(position++, effect, System.nanoTime() - effectStart - effectBlit);
+            blit += effectBlit;
+        }
+        blit += flushRaster(g, raster);
+        profiler.add(Phase.EFFECTS, System.nanoTime() - effectsStart - blit);
+    }
+
+    /**
+     * Lets subclasses decide which of the nodes on view get drawn, and in
+     * which order: effects draw later slots on top of earlier ones.
+     *
+     * @param frame
+     *            the frame being drawn
+     * @param indexes
+     *            the index in the frame of each node on view, -1 if missing
+     * @param xs
+     *            the x view coordinate of each node on view
+     * @param ys
+     *            the y view coordinate of each node on view
+     * @return the slots to draw, in drawing order, or null to draw all of
+     *         them in the default order
+     */
+    protected int[] drawingOrder(final MoleculePropertyCache frame, final int[] indexes, final int[] xs, final int[] ys) {
+        return null;
+    }
+
+    private PointRasterizer getRasterizer() {
+        if (rasterizer == null || rasterizer.getWidth() != getWidth() || rasterizer.getHeight() != getHeight()) {
+            rasterizer = new PointRasterizer(getWidth(), getHeight(), RenderingExecutor.getPool());
+        }
+        return rasterizer;
+    }
+
+    /*
+     * Composites what has been rasterized so far, preserving the order of the
+     * effect stack. Returns the time it took.
+     */
+    private long flushRaster(final Graphics2D g, final PointRasterizer raster) {
+        if (raster != null && raster.isDirty()) {
+            final long start = System.nanoTime();
+            g.drawImage(raster.getImage(), 0, 0, null);
+            raster.clear();
+            final long elapsed = System.nanoTime() - start;
+            profiler.add(Phase.BLIT, elapsed);
+            return elapsed;
+        }
+        return 0;
+    }
+
+    private static int[] slotsByIndex(final int size, final int[] indexes) {
+        final int[] slotOf = new int[size];
+        Arrays.fill(slotOf, -1);
+        for (int slot = 0; slot < indexes.length; slot++) {
+            if (indexes[slot] >= 0) {
+                slotOf[indexes[slot]] = slot;
+            }
+        }
+        return slotOf;
+    }
+
+    private static <E> E[] select(final E[] source, final int[] slots) {
+        final E[] result = Arrays.copyOf(source, slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            result[i] = source[slots[i]];
+        }
+        return result;
+    }
+
+    private static int[] select(final int[] source, final int[] slots) {
+        final int[] result = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            result[i] = source[slots[i]];
+        }
+        return result;
     }
 
     private void drawFriedEgg(final Graphics g, final int x, final int y, final Color c1, final Color c2) {
@@ -385,7 +675,13 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
 
     @Override
     public void finished(final Environment<T> environment, final Time time, final long step) {
-        update(environment, time);
+        update(environment, time, step);
+        final SnapshotService<T>.Subscription sub = subscription;
+        if (sub != null) {
+            sub.close();
+            subscription = null;
+        }
+        profiler.unregister();
         firstTime = true;
     }
 
@@ -421,15 +717,29 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
         return zoomManager;
     }
 
+    /**
+     * Builds the wormhole of this display when the environment is first
+     * received. The zoom manager gets configured after it, from its optimal
+     * zoom. Child classes drawing through a different wormhole override it.
+     *
+     * @param env
+     *            the environment
+     * @return a new {@link IWormhole2D}
+     */
+    protected IWormhole2D createWormhole(final Environment<T> env) {
+        return new Wormhole2D(env, this);
+    }
+
     /*
      * Initializes all the internal data.
      */
     private void initAll(final Environment<T> env) {
-        wormhole = new Wormhole2D(env, this);
+        wormhole = createWormhole(env);
         wormhole.center();
         wormhole.optimalZoom();
         angleManager = new AngleManagerImpl(AngleManagerImpl.DEF_DEG_PER_PIXEL);
         zoomManager = new ExponentialZoomManager(wormhole.getZoom(), ExponentialZoomManager.DEF_BASE);
+        profiler.register(getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(this)));
         if (env instanceof Environment2DWithObstacles) {
             loadObstacles(env);
         } else {
@@ -473,7 +783,9 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
     @Override
     protected void paintComponent(final Graphics g) {
         super.paintComponent(g);
+        final long start = System.nanoTime();
         drawBackground((Graphics2D) g);
+        profiler.record(Phase.BACKGROUND, start);
         drawEnvOnView((Graphics2D) g);
     }
 
@@ -514,6 +826,28 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
     @Override
     public void setEffectStack(final List<Effect> l) {
         effectStack = l;
+        profiler.resetEffects();
+    }
+
+    /**
+     * @param image
+     *            the {@link BackgroundImage} to draw under the nodes, or null
+     *            to remove it
+     */
+    public void setBackgroundImage(final BackgroundImage image) {
+        backgroundImage = image;
+        repaint();
+    }
+
+    /**
+     * Restricts the rectangular selection to the nodes matching a filter.
+     * 
+     * @param filter
+     *            the {@link NodeFilter}, or null to allow any node to be
+     *            selected
+     */
+    public void setSelectionFilter(final NodeFilter filter) {
+        selectionFilter = Optional.ofNullable(filter);
     }
 
     @Override
@@ -530,9 +864,138 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
         }
     }
 
+    /**
+     * @return true if filled node markers are drawn through a
+     *         {@link PointRasterizer} rather than through Java2D
+     */
+    public final boolean isSoftwareRendering() {
+        return softwareRendering;
+    }
+
+    /**
+     * Enables or disables the software rasterization of filled node markers.
+     * On dense scenes, it is much faster than issuing a Java2D call per node.
+     * 
+     * @param enabled
+     *            true to rasterize node markers in software
+     */
+    public void setSoftwareRendering(final boolean enabled) {
+        if (softwareRendering != enabled) {
+            softwareRendering = enabled;
+            repaint();
+        }
+    }
+
+    /**
+     * @return true if node positions are interpolated between frames
+     */
+    public final boolean isInterpolating() {
+        return interpolate;
+    }
+
+    /**
+     * Enables or disables motion interpolation. When enabled, the display
+     * keeps repainting at {@link #DEFAULT_FRAME_RATE}, moving the nodes
+     * linearly by simulation time from their position in the previous frame
+     * to the one in the latest frame, one frame behind. Simulation time is
+     * mapped on the wall clock at the pace the simulation kept over the
+     * last frames, so that nodes keep a steady speed even when frames are
+     * captured at uneven simulation times, and motion stays smooth with large
+     * step skips.
+     * 
+     * @param enabled
+     *            true to interpolate node positions
+     */
+    public void setInterpolation(final boolean enabled) {
+        interpolate = enabled;
+        if (enabled && interpolationTimer == null) {
+            interpolationTimer = new Timer(MS_PER_SECOND / DEFAULT_FRAME_RATE, e -> {
+                if (motion.progress(System.nanoTime()) < 1) {
+                    repaint();
+                }
+            });
+            interpolationTimer.start();
+        } else if (!enabled && interpolationTimer != null) {
+            interpolationTimer.stop();
+            interpolationTimer = null;
+        }
+        repaint();
+    }
+
+    @Override
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    @Override
+    public void setAdaptive(final boolean enabled) {
+        adaptive = enabled;
+    }
+
+    @Override
+    public double getMaxOverhead() {
+        return frameSkip.getMaxOverhead();
+    }
+
+    @Override
+    public void setMaxOverhead(final double share) {
+        frameSkip.setMaxOverhead(share);
+    }
+
+    /**
+     * @return the controller deciding which steps get drawn in adaptive mode
+     */
+    protected final FrameSkipController getFrameSkipController() {
+        return frameSkip;
+    }
+
+    /**
+     * @return the profiler timing each phase of the frames of this display
+     */
+    public final FrameProfiler getFrameProfiler() {
+        return profiler;
+    }
+
+    /**
+     * @return true if the frame statistics are drawn over the view
+     */
+    public final boolean isProfilerHudVisible() {
+        return profilerHud;
+    }
+
+    /**
+     * @param visible
+     *            true to draw the frame rate, the frame latency and the
+     *            number of nodes drawn and culled over the view
+     */
+    public void setProfilerHudVisible(final boolean visible) {
+        profilerHud = visible;
+        repaint();
+    }
+
     @Override
     public void setRealTime(final boolean rt) {
         realTime = rt;
+        syncPacer(currentEnv);
+    }
+
+    /*
+     * Pacing is up to the pacer of the simulation: the display only follows.
+     * The pacer is reached through a command, as it may need to be attached,
+     * and this may run while the engine is notifying its monitors.
+     */
+    private void syncPacer(final Environment<T> env) {
+        if (env != null) {
+            final Engine<T> engine = Engine.fromEnvironment(env);
+            if (engine == null) {
+                if (realTime) {
+                    L.warn("Cannot pace a simulation with no engine");
+                }
+            } else {
+                final boolean enable = realTime;
+                engine.addCommand(sim -> RealTimePacer.of(sim).setEnabled(enable));
+            }
+        }
     }
 
     @Override
@@ -567,60 +1030,197 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
 
     @Override
     public void stepDone(final Environment<T> environment, final Reaction<T> r, final Time time, final long step) {
+        trackChanges(environment, r);
         if (firstTime) {
             synchronized (this) {
                 if (firstTime) {
                     initAll(environment);
                     lasttime = -TIME_STEP;
                     firstTime = false;
-                    timeInit = System.currentTimeMillis();
-                    update(environment, time);
-                } 
+                    currentEnv = environment;
+                    syncPacer(environment);
+                    update(environment, time, step);
+                }
+            }
+        } else if (r == null) {
+            /*
+             * Not a regular step, e.g. the display has just been attached
+             * back after a fast forward: never skip it.
+             */
+            lastUpdate = System.nanoTime();
+            update(environment, time, step);
+        } else if (adaptive) {
+            final long now = System.nanoTime();
+            if (frameSkip.shouldCapture(now)) {
+                update(environment, time, step);
+                frameSkip.captured(now, System.nanoTime());
             }
         } else if (st < 1 || step % st == 0) {
-            if (isRealTime()) {
-                if (lasttime + TIME_STEP > time.toDouble()) {
-                    return;
-                }
-                final long timeSimulated = (long) (time.toDouble() * MS_PER_SECOND);
-                if (timeSimulated == 0) {
-                    timeInit = System.currentTimeMillis();
-                }
-                final long timePassed = System.currentTimeMillis() - timeInit;
-                if (timePassed - timeSimulated > PAUSE_DETECTION_THRESHOLD) {
-                    timeInit = timeInit + timePassed - timeSimulated;
-                }
-                if (timeSimulated > timePassed) {
-                    try {
-                        Thread.sleep(Math.min(timeSimulated - timePassed, MS_PER_SECOND / DEFAULT_FRAME_RATE));
-                    } catch (final InterruptedException e) {
-                        L.warn("Damn spurious wakeups.");
-                    }
-                }
+            /*
+             * In real time, the simulation is paced by its RealTimePacer:
+             * just skip the frames exceeding the default frame rate.
+             */
+            final long now = System.nanoTime();
+            if (isRealTime() && now - lastUpdate < FRAME_NANOS) {
+                return;
             }
-            update(environment, time);
+            lastUpdate = now;
+            update(environment, time, step);
         }
     }
 
-    private void update(final Environment<T> env, final Time time) {
+    private void update(final Environment<T> env, final Time time, final long step) {
         if (envHasMobileObstacles(env)) {
             loadObstacles(env);
         }
         lasttime = time.toDouble();
         currentEnv = env;
+        SnapshotService<T>.Subscription sub = subscription;
+        if (sub == null) {
+            sub = SnapshotService.of(env).subscribe();
+            subscription = sub;
+        }
+        final long captureStart = profiler.captureStarted();
+        /*
+         * The snapshot is shared with the other monitors of the environment,
+         * and becomes the data of this frame as is: nothing gets copied.
+         */
+        final EnvironmentSnapshot<T> snapshot = sub.acquire(env, time, step);
+        captured = snapshot.getRegion();
+        final boolean all = allNodesChanged;
+        allNodesChanged = false;
+        final MoleculePropertyCache cache = MoleculePropertyCache.next(propertyCache, snapshot.getNodes(), changedNodes, all,
+                node -> snapshot.getPosition(snapshot.indexOf(node)),
+                node -> snapshot.getNeighborhood(snapshot.indexOf(node)),
+                time.toDouble());
+        final NodeFilterIndex filters = NodeFilterIndex.next(nodeFilters, cache, changedNodes, all);
+        changedNodes.clear();
         accessData();
-        positions.clear();
-        neighbors.clear();
-        env.getNodes().parallelStream().forEach(node -> {
-            positions.put(node, env.getPosition(node));
-            try {
-                neighbors.put(node, env.getNeighborhood(node).clone());
-            } catch (Exception e) {
-                L.error("Unable to clone neighborhood for " + node, e);
-            }
-        });
+        final EnvironmentSnapshot<T> previous = frame;
+        frame = snapshot;
+        nodeFilters = filters;
+        propertyCache = cache;
+        motion = motion.next(cache, System.nanoTime());
         releaseData();
-        repaint();
+        if (previous != null) {
+            previous.release();
+        }
+        profiler.captureDone(captureStart, snapshot.size());
+        repaintRequest.markDirty();
+    }
+
+    /*
+     * Refreshes the frame after a command modified the environment outside
+     * of the normal simulation flow.
+     */
+    private void refresh(final Simulation<T> sim) {
+        SnapshotService.of(sim.getEnvironment()).invalidate();
+        update(sim.getEnvironment(), sim.getTime(), sim.getStep());
+    }
+
+    /*
+     * Tells the snapshot service which region is on view. If the view left
+     * the captured region, and thus shows nodes that were never captured,
+     * asks for a new capture: the simulation may be paused. Effects needing
+     * every node disable the region altogether.
+     */
+    private void publishViewBounds() {
+        final Rectangle2D view = requiresFullCapture() ? null : getEnvViewBounds();
+        final SnapshotService<T>.Subscription sub = subscription;
+        if (sub != null) {
+            if (view == null) {
+                sub.setRegion(null);
+            } else {
+                final double marginX = view.getWidth() * captureMargin;
+                final double marginY = view.getHeight() * captureMargin;
+                sub.setRegion(new Rectangle2D.Double(view.getX() - marginX, view.getY() - marginY,
+                        view.getWidth() + 2 * marginX, view.getHeight() + 2 * marginY));
+            }
+        }
+        final Rectangle2D region = captured;
+        if (region != null && (view == null || !region.contains(view)) && recapturePending.compareAndSet(false, true)) {
+            final Engine<T> engine = Engine.fromEnvironment(currentEnv);
+            if (engine == null) {
+                recapturePending.set(false);
+            } else {
+                engine.addCommand(sim -> {
+                    recapturePending.set(false);
+                    update(sim.getEnvironment(), sim.getTime(), sim.getStep());
+                });
+            }
+        }
+    }
+
+    private boolean requiresFullCapture() {
+        final List<Effect> stack = effectStack;
+        return stack != null && stack.stream()
+                .anyMatch(effect -> effect instanceof FrameEffect && ((FrameEffect) effect).requiresFullCapture());
+    }
+
+    /**
+     * Computes the environment region currently on view. The simulation
+     * thread only captures the nodes within it (plus a margin), unless it
+     * covers most of the environment.
+     *
+     * @return the bounding box of the view in environment coordinates, or
+     *         null if it cannot be computed, in which case every node gets
+     *         captured
+     */
+    protected Rectangle2D getEnvViewBounds() {
+        if (wormhole == null || getWidth() <= 0 || getHeight() <= 0) {
+            return null;
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (final Point corner : new Point[] {
+                new Point(0, 0), new Point(getWidth(), 0), new Point(0, getHeight()), new Point(getWidth(), getHeight()), }) {
+            final Position pos = wormhole.getEnvPoint(corner);
+            minX = Math.min(minX, pos.getCoordinate(0));
+            minY = Math.min(minY, pos.getCoordinate(1));
+            maxX = Math.max(maxX, pos.getCoordinate(0));
+            maxY = Math.max(maxY, pos.getCoordinate(1));
+        }
+        if (!(maxX >= minX && maxY >= minY)) {
+            return null;
+        }
+        return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * @param margin
+     *            how much the captured region extends beyond the view, as a
+     *            fraction of the view size. Larger margins capture more
+     *            nodes, but need to be refreshed less often while panning
+     */
+    public void setCaptureMargin(final double margin) {
+        if (margin < 0) {
+            throw new IllegalArgumentException("The capture margin can not be negative: " + margin);
+        }
+        captureMargin = margin;
+    }
+
+    /*
+     * Records which nodes may have changed their content since the last
+     * update, so that the per-frame caches can be refreshed incrementally.
+     */
+    private void trackChanges(final Environment<T> env, final Reaction<T> r) {
+        if (r == null || r.getOutputContext() == Context.GLOBAL) {
+            allNodesChanged = true;
+        } else if (!allNodesChanged) {
+            final Node<T> node = r.getNode();
+            /*
+             * Adding a node already in the set still locks its bin: check
+             * first, most steps hit nodes that changed since the last frame.
+             */
+            if (!changedNodes.contains(node)) {
+                changedNodes.add(node);
+            }
+            if (r.getOutputContext() == Context.NEIGHBORHOOD) {
+                changedNodes.addAll(env.getNeighborhood(node).getNeighbors());
+            }
+        }
     }
 
     @Override
@@ -649,6 +1249,83 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
         return new Pair<>(converter.apply(pair.getFirst()), converter.apply(pair.getSecond()));
     }
 
+    /*
+     * The last two frames, and the pace of the simulation time over the wall
+     * clock they were captured at.
+     */
+    private static final class Motion {
+        private static final Motion NONE = new Motion(MoleculePropertyCache.empty(), MoleculePropertyCache.empty(),
+                0, Double.NaN, false, false);
+        /*
+         * Frames further apart are assumed to come after a pause.
+         */
+        private static final long MAX_INTERPOLATED = 1_000_000_000L;
+        private static final double SMOOTHING = 0.3;
+        private final MoleculePropertyCache previous;
+        private final MoleculePropertyCache current;
+        private final long currentArrival;
+        private final double simTimePerNano;
+        private final boolean hasCurrent;
+        private final boolean interpolable;
+
+        private Motion(final MoleculePropertyCache previous, final MoleculePropertyCache current,
+                final long currentArrival, final double simTimePerNano,
+                final boolean hasCurrent, final boolean interpolable) {
+            this.previous = previous;
+            this.current = current;
+            this.currentArrival = currentArrival;
+            this.simTimePerNano = simTimePerNano;
+            this.hasCurrent = hasCurrent;
+            this.interpolable = interpolable;
+        }
+
+        /*
+         * The motion towards a new frame. The pace of the simulation gets
+         * smoothed over the frames, and forgotten after a pause.
+         */
+        Motion next(final MoleculePropertyCache frame, final long arrival) {
+            final double simElapsed = frame.getTime() - current.getTime();
+            final long wallElapsed = arrival - currentArrival;
+            final boolean follows = hasCurrent && simElapsed > 0 && wallElapsed > 0 && wallElapsed <= MAX_INTERPOLATED;
+            double pace = Double.NaN;
+            if (follows) {
+                final double observed = simElapsed / wallElapsed;
+                pace = Double.isNaN(simTimePerNano) ? observed : simTimePerNano + SMOOTHING * (observed - simTimePerNano);
+            }
+            return new Motion(current, frame, arrival, pace, true, follows);
+        }
+
+        /*
+         * How far (0 to 1) the transition from the previous to the current
+         * frame should be: the simulation time elapsed since the current
+         * frame arrived, at the recent pace, over the simulation time between
+         * the two frames.
+         */
+        double progress(final long now) {
+            if (!interpolable) {
+                return 1;
+            }
+            final double simElapsed = (now - currentArrival) * simTimePerNano;
+            return Math.min(1, simElapsed / (current.getTime() - previous.getTime()));
+        }
+
+        Position interpolate(final Node<?> node, final Position position, final double progress) {
+            final int i = current.indexOf(node);
+            final int j = previous.indexOf(node);
+            if (i < 0 || j < 0 || position.getDimensions() != 2) {
+                return position;
+            }
+            final double px = previous.getEnvXs()[j];
+            final double py = previous.getEnvYs()[j];
+            if (Double.isNaN(px) || Double.isNaN(py)) {
+                return position;
+            }
+            final double cx = current.getEnvXs()[i];
+            final double cy = current.getEnvYs()[i];
+            return PointAdapter.from(px + (cx - px) * progress, py + (cy - py) * progress).toPosition();
+        }
+    }
+
     private class MouseManager implements MouseInputListener, MouseWheelListener, MouseMotionListener {
         @Override
         public void mouseClicked(final MouseEvent e) {
@@ -659,11 +1336,14 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
                 final Simulation<T> sim = Engine.fromEnvironment(currentEnv);
                 final JFrame frame = makeFrame("Tracker for node " + nearest.getId(), monitor);
                 if (sim != null) {
-                    sim.addOutputMonitor(monitor);
+                    final AsyncOutputMonitor<T> async = AsyncOutputMonitor.of(monitor);
+                    async.attach(sim);
+                    FastForward.registerDisplay(sim, async);
                     frame.addWindowListener(new WindowAdapter() {
                         @Override
                         public void windowClosing(final WindowEvent e) {
-                            sim.removeOutputMonitor(monitor);
+                            FastForward.unregisterDisplay(sim, async);
+                            async.detach();
                         }
                     });
                 }
@@ -673,7 +1353,7 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
                 for (final Node<T> n : selectedNodes) {
                     engine.addCommand(CommandsFactory.newCloneNodeCommand(n, envEnding));
                 }
-                engine.addCommand(sim -> update(sim.getEnvironment(), sim.getTime()));
+                engine.addCommand(Generic2DDisplay.this::refresh);
                 selectedNodes.clear();
                 resetStatus();
             }
@@ -752,7 +1432,13 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
                                 final Position finalPos = PointAdapter.from(finalX, finalY).toPosition();
                                 engine.addCommand(sim -> sim.getEnvironment().moveNodeToPosition(n, finalPos));
                             }
-                            engine.addCommand(sim -> update(sim.getEnvironment(), sim.getTime()));
+                            engine.addCommand(sim -> {
+                                /*
+                                 * Moves change neighborhoods without any reaction firing
+                                 */
+                                allNodesChanged = true;
+                                refresh(sim);
+                            });
                         } else {
                             L.warn("Can not handle node movement on a finished simulation.");
                         }
@@ -796,7 +1482,16 @@ public class Generic2DDisplay<T> extends JPanel implements Graphical2DOutputMoni
         return frame;
     }
 
-    private void bindKey(final int key, final Runnable fun) {
+    /**
+     * Binds a key to an action, active whenever the window containing this
+     * display is focused.
+     *
+     * @param key
+     *            the key code, as in {@link KeyEvent}
+     * @param fun
+     *            the action
+     */
+    protected final void bindKey(final int key, final Runnable fun) {
         final Object binder = "Key: " + key;
         getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key, 0), binder);
         getActionMap().put(binder, new AbstractAction() {
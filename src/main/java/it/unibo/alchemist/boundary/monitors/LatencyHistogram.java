@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed memory histogram of durations, in nanoseconds. Each power of two is
+ * split in {@value #SUB_BUCKETS} linear buckets, so quantiles are reported
+ * with a relative error below 1/{@value #SUB_BUCKETS}, whatever the range of
+ * the recorded values.
+ *
+ * Recording is lock free and allocation free, and can be done concurrently
+ * with reading: readers may see a recording half way through, which is
+ * acceptable for monitoring purposes.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    /**
+     * Linear buckets per power of two.
+     */
+    public static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray totals = new AtomicLongArray(2);
+
+    private static int bucketOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBoundOf(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        final long sub = bucket % SUB_BUCKETS;
+        final long width = 1L << (exponent - SUB_BITS);
+        return (SUB_BUCKETS + sub + 1) * width - 1;
+    }
+
+    /**
+     * @param nanos
+     *            the duration to record. Negative values count as zero
+     */
+    public void record(final long nanos) {
+        counts.incrementAndGet(bucketOf(nanos));
+        totals.incrementAndGet(0);
+        totals.addAndGet(1, Math.max(0, nanos));
+    }
+
+    /**
+     * @return the number of recorded durations
+     */
+    public long getCount() {
+        return totals.get(0);
+    }
+
+    /**
+     * @return the sum of the recorded durations, in nanoseconds
+     */
+    public long getTotal() {
+        return totals.get(1);
+    }
+
+    /**
+     * @return the average duration, in nanoseconds, or NaN if nothing was
+     *         recorded
+     */
+    public double getMean() {
+        final long count = getCount();
+        return count == 0 ? Double.NaN : (double) getTotal() / count;
+    }
+
+    /**
+     * @param quantile
+     *            the quantile, between 0 and 1
+     * @return an upper bound of the duration, in nanoseconds, below which
+     *         the requested share of recordings falls, or NaN if nothing was
+     *         recorded
+     */
+    public double getQuantile(final double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantiles must be within [0, 1], got " + quantile);
+        }
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(BUCKETS - 1);
+    }
+
+    /**
+     * @return the largest recorded duration, approximated to its bucket, or
+     *         NaN if nothing was recorded
+     */
+    public double getMax() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (counts.get(i) > 0) {
+                return upperBoundOf(i);
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Forgets every recording.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totals.set(0, 0);
+        totals.set(1, 0);
+    }
+
+}
@@ -11,14 +11,15 @@ package it.unibo.alchemist.boundary.monitors;
 import java.awt.BorderLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ConcurrentModificationException;
 import java.util.Map.Entry;
 
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.ScrollPaneConstants;
-import javax.swing.SwingUtilities;
 
+import it.unibo.alchemist.boundary.gui.util.RefreshScheduler;
 import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
 import it.unibo.alchemist.model.interfaces.Environment;
 import it.unibo.alchemist.model.interfaces.Molecule;
@@ -27,8 +28,13 @@ import it.unibo.alchemist.model.interfaces.Reaction;
 import it.unibo.alchemist.model.interfaces.Time;
 
 /**
+ * Shows position, content and program of a node. The text is rebuilt
+ * through the {@link RefreshScheduler}, at most once per refresh period, and
+ * only if a reaction of the node has run in the meantime.
+ *
  * @param <T>
  */
+@Conflatable
 public class NodeTracker<T> extends JPanel implements OutputMonitor<T>, ActionListener {
     private static final byte MARGIN = 100;
     private static final String PROGRAM = " = Program =", CONTENT = " = Content =", POSITION = " = POSITION = ";
@@ -37,6 +43,8 @@ public class NodeTracker<T> extends JPanel implements OutputMonitor<T>, ActionLi
     private final JTextArea txt = new JTextArea(AREA_SIZE / 2, AREA_SIZE);
     private final Node<T> n;
     private int stringLength = Byte.MAX_VALUE;
+    private volatile Environment<T> environment;
+    private final transient RefreshScheduler.Target refresh = RefreshScheduler.register(this::updateText);
 
     /**
      * @param node
@@ -71,6 +79,14 @@ public class NodeTracker<T> extends JPanel implements OutputMonitor<T>, ActionLi
     @Override
     public void stepDone(final Environment<T> env, final Reaction<T> exec, final Time time, final long step) {
         if (exec == null || exec.getNode().equals(n)) {
+            environment = env;
+            refresh.markDirty();
+        }
+    }
+
+    private void updateText() {
+        final Environment<T> env = environment;
+        try {
             final StringBuilder sb = new StringBuilder(stringLength);
             sb.append(POSITION);
             sb.append('\n');
@@ -92,9 +108,13 @@ public class NodeTracker<T> extends JPanel implements OutputMonitor<T>, ActionLi
                 sb.append("\n\n");
             }
             stringLength = sb.length() + MARGIN;
-            SwingUtilities.invokeLater(() -> {
-                txt.setText(sb.toString());
-            });
+            txt.setText(sb.toString());
+        } catch (final ConcurrentModificationException e) {
+            /*
+             * The simulation changed the node while reading it: retry with
+             * the next refresh.
+             */
+            refresh.markDirty();
         }
     }
 }
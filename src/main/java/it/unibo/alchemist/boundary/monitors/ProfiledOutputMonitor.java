@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Objects;
+
+import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Reaction;
+import it.unibo.alchemist.model.interfaces.Time;
+
+/**
+ * Measures the time an {@link OutputMonitor} spends handling events. Only
+ * one {@link #stepDone} call every {@link #getSamplingPeriod()} is timed, so
+ * that the profiler can be left always on: the total time spent stepping is
+ * estimated from the samples. Initializations and terminations are always
+ * timed.
+ *
+ * Timings are taken by the thread calling the monitor. To measure what a
+ * monitor costs to the simulation, profile it on the simulation side, as
+ * {@link AsyncOutputMonitor} does when profiling: time spent waiting for a
+ * full queue is then also reported apart, see {@link #recordQueueWait(long)}.
+ *
+ * @param <T>
+ *            concentration type
+ */
+public final class ProfiledOutputMonitor<T> implements OutputMonitor<T> {
+
+    /**
+     * Default number of steps per timed step.
+     */
+    public static final int DEFAULT_SAMPLING_PERIOD = 8;
+    /**
+     * Header of the lines produced by {@link #appendCsv(Appendable)}.
+     */
+    public static final String CSV_HEADER = "monitor,event,calls,timed,mean_us,p50_us,p90_us,p99_us,max_us,wall_share";
+    private static final long serialVersionUID = 1L;
+    private static final double NANOS_PER_MICRO = 1e3;
+    private static final double P50 = 0.5;
+    private static final double P90 = 0.9;
+    private static final double P99 = 0.99;
+
+    private final OutputMonitor<T> delegate;
+    private final String name;
+    private final int samplingPeriod;
+    private final transient LatencyHistogram steps = new LatencyHistogram();
+    private final transient LatencyHistogram initializations = new LatencyHistogram();
+    private final transient LatencyHistogram terminations = new LatencyHistogram();
+    private final transient LatencyHistogram queueWaits = new LatencyHistogram();
+    private volatile long stepCalls;
+    private volatile long since = System.nanoTime();
+
+    /**
+     * @param delegate
+     *            the monitor to profile
+     */
+    public ProfiledOutputMonitor(final OutputMonitor<T> delegate) {
+        this(delegate, DEFAULT_SAMPLING_PERIOD);
+    }
+
+    /**
+     * @param delegate
+     *            the monitor to profile
+     * @param samplingPeriod
+     *            one step every samplingPeriod gets timed
+     */
+    public ProfiledOutputMonitor(final OutputMonitor<T> delegate, final int samplingPeriod) {
+        this(delegate, samplingPeriod, nameOf(delegate));
+    }
+
+    /**
+     * @param delegate
+     *            the monitor to profile
+     * @param samplingPeriod
+     *            one step every samplingPeriod gets timed
+     * @param name
+     *            the name of the monitor in the reports
+     */
+    public ProfiledOutputMonitor(final OutputMonitor<T> delegate, final int samplingPeriod, final String name) {
+        if (samplingPeriod < 1) {
+            throw new IllegalArgumentException("The sampling period must be positive, got " + samplingPeriod);
+        }
+        this.delegate = Objects.requireNonNull(delegate);
+        this.name = Objects.requireNonNull(name);
+        this.samplingPeriod = samplingPeriod;
+    }
+
+    /**
+     * @return the profiled monitor
+     */
+    public OutputMonitor<T> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return the name of the monitor in the reports
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of steps per timed step
+     */
+    public int getSamplingPeriod() {
+        return samplingPeriod;
+    }
+
+    /**
+     * @return the timings of {@link #stepDone}, in nanoseconds
+     */
+    public LatencyHistogram getStepLatency() {
+        return steps;
+    }
+
+    /**
+     * @return the timings of {@link #initialized}, in nanoseconds
+     */
+    public LatencyHistogram getInitializationLatency() {
+        return initializations;
+    }
+
+    /**
+     * @return the timings of {@link #finished}, in nanoseconds
+     */
+    public LatencyHistogram getTerminationLatency() {
+        return terminations;
+    }
+
+    /**
+     * @return the time spent waiting for room in a full queue, in
+     *         nanoseconds. This time is also part of the step timings
+     */
+    public LatencyHistogram getQueueWaitLatency() {
+        return queueWaits;
+    }
+
+    /**
+     * Records a wait for room in a full queue. Only the waits are recorded:
+     * calls which found room right away are not.
+     *
+     * @param nanos
+     *            the time spent waiting
+     */
+    public void recordQueueWait(final long nanos) {
+        queueWaits.record(nanos);
+    }
+
+    /**
+     * @return the number of {@link #stepDone} calls
+     */
+    public long getStepCount() {
+        return stepCalls;
+    }
+
+    /**
+     * @return an estimate of the time spent in the monitor, in nanoseconds
+     */
+    public double getBusyTime() {
+        final long timed = steps.getCount();
+        final double stepping = timed == 0 ? 0 : (double) steps.getTotal() * stepCalls / timed;
+        return stepping + initializations.getTotal() + terminations.getTotal();
+    }
+
+    /**
+     * @return the share of wall clock time spent in the monitor since its
+     *         creation or the last {@link #reset()}, between 0 and 1
+     */
+    public double getWallShare() {
+        final long elapsed = System.nanoTime() - since;
+        return elapsed <= 0 ? 0 : Math.min(1, getBusyTime() / elapsed);
+    }
+
+    /**
+     * @return the share of wall clock time spent waiting for room in a full
+     *         queue since the creation of the monitor or the last
+     *         {@link #reset()}, between 0 and 1
+     */
+    public double getQueueWaitShare() {
+        final long elapsed = System.nanoTime() - since;
+        return elapsed <= 0 ? 0 : Math.min(1, (double) queueWaits.getTotal() / elapsed);
+    }
+
+    /**
+     * Forgets all the timings.
+     */
+    public void reset() {
+        steps.reset();
+        initializations.reset();
+        terminations.reset();
+        queueWaits.reset();
+        stepCalls = 0;
+        since = System.nanoTime();
+    }
+
+    @Override
+    public void initialized(final Environment<T> env) {
+        final long start = System.nanoTime();
+        try {
+            delegate.initialized(env);
+        } finally {
+            initializations.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void stepDone(final Environment<T> env, final Reaction<T> r, final Time time, final long step) {
+        /*
+         * Only the thread calling the monitor writes the counter
+         */
+        final long call = stepCalls;
+        stepCalls = call + 1;
+        if (call % samplingPeriod == 0) {
+            final long start = System.nanoTime();
+            try {
+                delegate.stepDone(env, r, time, step);
+            } finally {
+                steps.record(System.nanoTime() - start);
+            }
+        } else {
+            delegate.stepDone(env, r, time, step);
+        }
+    }
+
+    @Override
+    public void finished(final Environment<T> env, final Time time, final long step) {
+        final long start = System.nanoTime();
+        try {
+            delegate.finished(env, time, step);
+        } finally {
+            terminations.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Writes one CSV line per event type, plus one for the waits for a full
+     * queue, see {@link #CSV_HEADER}.
+     *
+     * @param out
+     *            where to write
+     * @throws IOException
+     *             if writing fails
+     */
+    public void appendCsv(final Appendable out) throws IOException {
+        appendCsv(out, name, "initialized", initializations.getCount(), initializations, Double.NaN);
+        appendCsv(out, name, "stepDone", stepCalls, steps, getWallShare());
+        appendCsv(out, name, "finished", terminations.getCount(), terminations, Double.NaN);
+        appendCsv(out, name, "queueFull", queueWaits.getCount(), queueWaits, getQueueWaitShare());
+    }
+
+    static String nameOf(final OutputMonitor<?> monitor) {
+        final String simpleName = monitor.getClass().getSimpleName();
+        return simpleName.isEmpty() ? monitor.getClass().getName() : simpleName;
+    }
+
+    private static void appendCsv(final Appendable out, final String name, final String event, final long calls,
+            final LatencyHistogram histogram, final double share) throws IOException {
+        out.append(String.format(Locale.US, "%s,%s,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.5f%n",
+                name, event, calls, histogram.getCount(),
+                histogram.getMean() / NANOS_PER_MICRO,
+                histogram.getQuantile(P50) / NANOS_PER_MICRO,
+                histogram.getQuantile(P90) / NANOS_PER_MICRO,
+                histogram.getQuantile(P99) / NANOS_PER_MICRO,
+                histogram.getMax() / NANOS_PER_MICRO,
+                share));
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + name + "]";
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.awt.event.KeyEvent;
+import java.awt.geom.Rectangle2D;
+import java.util.BitSet;
+
+import it.unibo.alchemist.boundary.gui.effects.MoleculePropertyCache;
+import it.unibo.alchemist.boundary.gui.util.RenderingExecutor;
+import it.unibo.alchemist.boundary.wormhole.implementation.Wormhole3D;
+import it.unibo.alchemist.boundary.wormhole.interfaces.IWormhole2D;
+import it.unibo.alchemist.model.interfaces.Environment;
+
+/**
+ * Displays three dimensional environments through a {@link Wormhole3D}
+ * camera. Nodes are drawn from the farthest to the nearest, so that the
+ * effects of closer nodes cover the ones behind them. When too many nodes
+ * are on view, only the nearest one for each small cell of the screen is
+ * drawn.
+ *
+ * Page up and page down tilt the camera, V switches between orthographic and
+ * perspective projection. Moving nodes by dragging them is not supported.
+ *
+ * @param <T>
+ *            concentration type
+ */
+public class Projected3DDisplay<T> extends Generic2DDisplay<T> {
+
+    private static final long serialVersionUID = 1L;
+    private static final double PITCH_STEP = Math.PI / 36;
+    private static final int DEFAULT_BUDGET = 20_000;
+    private static final int DEFAULT_LOD_CELL = 2;
+    private static final int SLOT_BITS = 32;
+    private static final long SLOT_MASK = 0xFFFFFFFFL;
+    private static final int SIGN_TO_MAGNITUDE = 0x7FFFFFFF;
+    private static final int SIGN_SHIFT = 31;
+
+    private int budget = DEFAULT_BUDGET;
+    private int lodCell = DEFAULT_LOD_CELL;
+
+    /**
+     * Builds a new display.
+     */
+    public Projected3DDisplay() {
+        super();
+        bindKey(KeyEvent.VK_PAGE_UP, () -> tilt(PITCH_STEP));
+        bindKey(KeyEvent.VK_PAGE_DOWN, () -> tilt(-PITCH_STEP));
+        bindKey(KeyEvent.VK_V, () -> {
+            final Wormhole3D camera = getCamera();
+            if (camera != null) {
+                camera.setPerspective(!camera.isPerspective());
+                repaint();
+            }
+        });
+    }
+
+    @Override
+    protected IWormhole2D createWormhole(final Environment<T> env) {
+        return new Wormhole3D(env, this);
+    }
+
+    private Wormhole3D getCamera() {
+        return getWormhole() instanceof Wormhole3D ? (Wormhole3D) getWormhole() : null;
+    }
+
+    private void tilt(final double delta) {
+        final Wormhole3D camera = getCamera();
+        if (camera != null) {
+            camera.setPitch(camera.getPitch() + delta);
+            repaint();
+        }
+    }
+
+    /**
+     * @param nodes
+     *            how many nodes can be on view before the level of detail
+     *            reduction kicks in
+     */
+    public void setNodeBudget(final int nodes) {
+        budget = Math.max(1, nodes);
+    }
+
+    /**
+     * @param pixels
+     *            the side of the screen cells where only the nearest node is
+     *            drawn, once the node budget is exceeded
+     */
+    public void setLevelOfDetailCell(final int pixels) {
+        lodCell = Math.max(1, pixels);
+    }
+
+    /**
+     * The view of a tilted camera is not an environment rectangle: capture
+     * every node.
+     */
+    @Override
+    protected Rectangle2D getEnvViewBounds() {
+        return null;
+    }
+
+    @Override
+    protected int[] drawingOrder(final MoleculePropertyCache frame, final int[] indexes, final int[] xs, final int[] ys) {
+        final Wormhole3D camera = getCamera();
+        if (camera == null || indexes.length == 0) {
+            return null;
+        }
+        final double[] envXs = frame.getEnvXs();
+        final double[] envYs = frame.getEnvYs();
+        final double[] envZs = frame.getEnvZs();
+        /*
+         * The high half of each key is the nearness, encoded so that its
+         * order as a signed integer matches the float order, the low half is
+         * the slot: a single primitive sort orders slots far to near.
+         */
+        final long[] keys = new long[indexes.length];
+        RenderingExecutor.forEach(keys.length, slot -> {
+            final int idx = indexes[slot];
+            final float nearness = idx < 0 ? Float.NEGATIVE_INFINITY
+                    : (float) -camera.depth(envXs[idx], envYs[idx], envZs[idx]);
+            int bits = Float.floatToIntBits(Float.isNaN(nearness) ? Float.NEGATIVE_INFINITY : nearness);
+            bits ^= (bits >> SIGN_SHIFT) & SIGN_TO_MAGNITUDE;
+            keys[slot] = (long) bits << SLOT_BITS | slot;
+        });
+        RenderingExecutor.sort(keys);
+        if (keys.length <= budget) {
+            final int[] order = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                order[i] = (int) (keys[i] & SLOT_MASK);
+            }
+            return order;
+        }
+        /*
+         * Walk from the nearest, keeping only the first node hitting each
+         * cell, then emit the survivors far to near.
+         */
+        final int columns = getWidth() / lodCell + 1;
+        final int rows = getHeight() / lodCell + 1;
+        final BitSet occupied = new BitSet(columns * rows);
+        final int[] kept = new int[Math.min(keys.length, columns * rows)];
+        int count = 0;
+        for (int i = keys.length - 1; i >= 0 && count < kept.length; i--) {
+            final int slot = (int) (keys[i] & SLOT_MASK);
+            final int column = xs[slot] / lodCell;
+            final int row = ys[slot] / lodCell;
+            if (column >= 0 && column < columns && row >= 0 && row < rows) {
+                final int cell = row * columns + column;
+                if (!occupied.get(cell)) {
+                    occupied.set(cell);
+                    kept[count++] = slot;
+                }
+            }
+        }
+        final int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = kept[count - 1 - i];
+        }
+        return order;
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
+import it.unibo.alchemist.core.interfaces.Simulation;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Reaction;
+import it.unibo.alchemist.model.interfaces.Time;
+
+/**
+ * Keeps a simulation running at a fixed ratio between simulation time and
+ * wall clock time. After each step, the simulation thread waits until the
+ * wall clock reaches the time the step should happen at. No display is
+ * involved: pacing works the same with any number of monitors attached, and
+ * repaints never affect it.
+ *
+ * If the simulation falls behind, e.g. because it was paused or it is too
+ * slow for the requested ratio, the pacer does not try to catch up: it keeps
+ * pacing from the current point on.
+ *
+ * @param <T>
+ *            concentration type
+ */
+public final class RealTimePacer<T> implements OutputMonitor<T> {
+
+    /**
+     * The slowest supported ratio.
+     */
+    public static final double MIN_RATIO = 0.1;
+    /**
+     * The fastest supported ratio.
+     */
+    public static final double MAX_RATIO = 100;
+    private static final long serialVersionUID = 1L;
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    /*
+     * Falling behind by more than this restarts pacing from the current
+     * point.
+     */
+    private static final long MAX_LAG = TimeUnit.MILLISECONDS.toNanos(200);
+    /*
+     * Waits are split in slices, so that changes to the settings are picked
+     * up quickly.
+     */
+    private static final long MAX_PARK = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long REPORT_WINDOW = TimeUnit.SECONDS.toNanos(1);
+    private static final Map<Simulation<?>, RealTimePacer<?>> PACERS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private volatile boolean enabled;
+    private volatile double ratio = 1;
+    private volatile boolean reanchor = true;
+    private volatile double achieved = Double.NaN;
+    private transient volatile Thread waiting;
+    private double anchorTime;
+    private long anchorWall;
+    private double windowTime = Double.NaN;
+    private long windowWall;
+
+    private RealTimePacer() {
+    }
+
+    /**
+     * @param sim
+     *            the simulation
+     * @param <T>
+     *            concentration type
+     * @return the pacer of the simulation. The first time, it gets created
+     *         disabled, and attached to the simulation as
+     *         {@link OutputMonitor}: as attaching may race with the
+     *         notification of the monitors, only call it from a command run
+     *         by the simulation, and use {@link #peek(Simulation)} elsewhere
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> RealTimePacer<T> of(final Simulation<T> sim) {
+        synchronized (PACERS) {
+            RealTimePacer<T> result = (RealTimePacer<T>) PACERS.get(sim);
+            if (result == null) {
+                result = new RealTimePacer<>();
+                PACERS.put(sim, result);
+                sim.addOutputMonitor(result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @param sim
+     *            the simulation
+     * @param <T>
+     *            concentration type
+     * @return the pacer of the simulation, if it has one. Never creates nor
+     *         attaches it: safe to call from any thread
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Optional<RealTimePacer<T>> peek(final Simulation<T> sim) {
+        return Optional.ofNullable((RealTimePacer<T>) PACERS.get(sim));
+    }
+
+    /**
+     * @return true if the simulation is being paced
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param pace
+     *            true to pace the simulation, false to let it run at full
+     *            speed
+     */
+    public void setEnabled(final boolean pace) {
+        enabled = pace;
+        wakeUp();
+    }
+
+    /**
+     * @return the target ratio between simulation time and wall clock time
+     */
+    public double getRatio() {
+        return ratio;
+    }
+
+    /**
+     * @param simOverWall
+     *            the target ratio between simulation time and wall clock
+     *            time, between {@link #MIN_RATIO} and {@link #MAX_RATIO}
+     */
+    public void setRatio(final double simOverWall) {
+        if (!(simOverWall >= MIN_RATIO && simOverWall <= MAX_RATIO)) {
+            throw new IllegalArgumentException("The ratio must be between " + MIN_RATIO + " and " + MAX_RATIO + ": " + simOverWall);
+        }
+        ratio = simOverWall;
+        wakeUp();
+    }
+
+    /**
+     * @return the ratio between simulation time and wall clock time measured
+     *         over the last second, or NaN if not measured yet
+     */
+    public double getAchievedRatio() {
+        return achieved;
+    }
+
+    /**
+     * Interrupts the current wait, if any, and restarts pacing from the next
+     * step. Useful before sending a command to the simulation, which would
+     * otherwise get executed only after the wait.
+     */
+    public void wakeUp() {
+        reanchor = true;
+        final Thread t = waiting;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    @Override
+    public void initialized(final Environment<T> env) {
+        reanchor = true;
+        windowTime = Double.NaN;
+    }
+
+    @Override
+    public void stepDone(final Environment<T> env, final Reaction<T> r, final Time time, final long step) {
+        final double now = time.toDouble();
+        if (enabled) {
+            pace(now);
+        }
+        final long wall = System.nanoTime();
+        if (Double.isNaN(windowTime)) {
+            windowTime = now;
+            windowWall = wall;
+        } else if (wall - windowWall >= REPORT_WINDOW) {
+            achieved = (now - windowTime) * NANOS_PER_SECOND / (wall - windowWall);
+            windowTime = now;
+            windowWall = wall;
+        }
+    }
+
+    private void pace(final double now) {
+        long wall = System.nanoTime();
+        if (reanchor) {
+            reanchor = false;
+            anchorTime = now;
+            anchorWall = wall;
+            return;
+        }
+        final long target = anchorWall + (long) ((now - anchorTime) / ratio * NANOS_PER_SECOND);
+        if (wall - target > MAX_LAG) {
+            anchorTime = now;
+            anchorWall = wall;
+            return;
+        }
+        waiting = Thread.currentThread();
+        try {
+            while (target - wall > 0 && enabled && !reanchor) {
+                LockSupport.parkNanos(this, Math.min(MAX_PARK, target - wall));
+                wall = System.nanoTime();
+            }
+        } finally {
+            waiting = null;
+        }
+    }
+
+    @Override
+    public void finished(final Environment<T> env, final Time time, final long step) {
+        reanchor = true;
+    }
+
+}
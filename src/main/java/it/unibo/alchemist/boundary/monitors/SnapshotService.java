@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.monitors;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unibo.alchemist.boundary.gui.util.RenderingExecutor;
+import it.unibo.alchemist.boundary.wormhole.implementation.PointAdapter;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.model.interfaces.Position;
+import it.unibo.alchemist.model.interfaces.Time;
+
+/**
+ * Captures {@link EnvironmentSnapshot}s on behalf of every graphical monitor
+ * attached to the same environment, so that the simulation thread copies the
+ * environment at most once per step, no matter how many monitors want to draw
+ * it. Nothing is captured until some subscriber asks for a snapshot.
+ *
+ * Each {@link Subscription} declares the environment region it is interested
+ * in. A capture covers all of them: if the union of the regions is small
+ * enough, only the nodes within it get copied, using the spatial index of the
+ * environment. If a subscriber asks for a region the snapshot of the current
+ * step does not cover, the environment is captured again.
+ *
+ * @param <T>
+ *            concentration type
+ */
+public final class SnapshotService<T> {
+
+    private static final Logger L = LoggerFactory.getLogger(SnapshotService.class);
+    /*
+     * Regions covering more than this share of the environment are captured
+     * entirely: a range query would cost more than it saves.
+     */
+    private static final double FULL_CAPTURE_SHARE = 0.5;
+    private static final Map<Environment<?>, SnapshotService<?>> SERVICES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private EnvironmentSnapshot<T> latest;
+    private boolean invalid;
+    private long captures;
+
+    private SnapshotService() {
+    }
+
+    /**
+     * @param env
+     *            the environment
+     * @param <T>
+     *            concentration type
+     * @return the service shared by all the monitors of the environment
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> SnapshotService<T> of(final Environment<T> env) {
+        return (SnapshotService<T>) SERVICES.computeIfAbsent(env, e -> new SnapshotService<>());
+    }
+
+    /**
+     * @return a new subscription, initially interested in the whole
+     *         environment
+     */
+    public Subscription subscribe() {
+        final Subscription result = new Subscription();
+        subscriptions.add(result);
+        return result;
+    }
+
+    /**
+     * Forces the next request to capture the environment again, even within
+     * the same step. To be called after the environment got modified outside
+     * of the normal simulation flow, e.g. by a command.
+     */
+    public synchronized void invalidate() {
+        invalid = true;
+    }
+
+    /**
+     * @return how many times the environment has been captured so far
+     */
+    public synchronized long getCaptureCount() {
+        return captures;
+    }
+
+    /**
+     * Returns a snapshot of the environment at the given step, capturing it if
+     * no one did already. Must be called on the simulation thread. The caller
+     * must {@link EnvironmentSnapshot#release()} the result.
+     *
+     * @param subscription
+     *            the subscription of the caller
+     * @param env
+     *            the environment
+     * @param time
+     *            the current simulation time
+     * @param step
+     *            the current simulation step
+     * @return a snapshot covering at least the region of the subscription
+     */
+    public synchronized EnvironmentSnapshot<T> acquire(final Subscription subscription,
+            final Environment<T> env, final Time time, final long step) {
+        if (!subscriptions.contains(subscription)) {
+            throw new IllegalArgumentException("Unknown or cancelled subscription");
+        }
+        if (invalid || latest == null || latest.getStep() != step || latest.getTime() != time.toDouble()
+                || !latest.covers(subscription.region)) {
+            final EnvironmentSnapshot<T> captured = capture(env, time, step);
+            if (latest != null) {
+                latest.release();
+            }
+            latest = captured;
+            invalid = false;
+            captures++;
+        }
+        return latest.retain();
+    }
+
+    private EnvironmentSnapshot<T> capture(final Environment<T> env, final Time time, final long step) {
+        final Rectangle2D region = captureRegion(env);
+        final Collection<Node<T>> captured = region == null ? env.getNodes() : nodesIn(env, region);
+        @SuppressWarnings("unchecked")
+        final Node<T>[] nodes = captured.toArray(new Node[captured.size()]);
+        final Position[] positions = new Position[nodes.length];
+        @SuppressWarnings("unchecked")
+        final Neighborhood<T>[] neighborhoods = new Neighborhood[nodes.length];
+        RenderingExecutor.forEach(nodes.length, i -> {
+            positions[i] = env.getPosition(nodes[i]);
+            try {
+                neighborhoods[i] = env.getNeighborhood(nodes[i]).clone();
+            } catch (Exception e) {
+                L.error("Unable to clone neighborhood for " + nodes[i], e);
+            }
+        });
+        return new EnvironmentSnapshot<>(step, time.toDouble(), region, nodes, positions, neighborhoods);
+    }
+
+    /*
+     * The union of the regions of interest, or null if every node should be
+     * captured.
+     */
+    private Rectangle2D captureRegion(final Environment<T> env) {
+        if (env.getDimensions() != 2) {
+            return null;
+        }
+        Rectangle2D union = null;
+        for (final Subscription sub : subscriptions) {
+            final Rectangle2D region = sub.region;
+            if (region == null) {
+                return null;
+            }
+            if (union == null) {
+                union = (Rectangle2D) region.clone();
+            } else {
+                union.add(region);
+            }
+        }
+        final double[] size = env.getSize();
+        final double envArea = size[0] * size[1];
+        if (union == null || !(envArea > 0) || union.getWidth() * union.getHeight() >= envArea * FULL_CAPTURE_SHARE) {
+            return null;
+        }
+        return union;
+    }
+
+    /*
+     * Nodes inside the region, through the spatial index of the environment.
+     * They get sorted, so that the frame structure stays the same as long as
+     * the same nodes are captured.
+     */
+    private static <T> Collection<Node<T>> nodesIn(final Environment<T> env, final Rectangle2D region) {
+        final Position center = PointAdapter.from(region.getCenterX(), region.getCenterY()).toPosition();
+        final double range = Math.hypot(region.getWidth(), region.getHeight()) / 2;
+        return RenderingExecutor.apply(env.getNodesWithinRange(center, range), nodes -> nodes
+                .filter(node -> {
+                    final Position pos = env.getPosition(node);
+                    return region.contains(pos.getCoordinate(0), pos.getCoordinate(1));
+                })
+                .sorted()
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * A subscriber of the service. Cancelled subscriptions no longer affect
+     * the captured region, and can not be used to acquire snapshots.
+     */
+    public final class Subscription implements AutoCloseable {
+
+        private volatile Rectangle2D region;
+
+        private Subscription() {
+        }
+
+        /**
+         * @param envRegion
+         *            the environment region this subscriber needs, or null for
+         *            the whole environment. Can be changed from any thread,
+         *            and affects the following captures
+         */
+        public void setRegion(final Rectangle2D envRegion) {
+            region = envRegion == null ? null : (Rectangle2D) envRegion.clone();
+        }
+
+        /**
+         * Shortcut for {@link SnapshotService#acquire(Subscription, Environment, Time, long)}
+         * on the service of this subscription.
+         *
+         * @param env
+         *            the environment
+         * @param time
+         *            the current simulation time
+         * @param step
+         *            the current simulation step
+         * @return a snapshot covering at least the region of this subscription
+         */
+        public EnvironmentSnapshot<T> acquire(final Environment<T> env, final Time time, final long step) {
+            return SnapshotService.this.acquire(this, env, time, step);
+        }
+
+        /**
+         * Cancels this subscription. When the last one is gone, the latest
+         * snapshot is released, and the service is dropped: the snapshot
+         * nodes may refer to the environment, which would otherwise stay
+         * reachable from its own entry. Later monitors get a new service.
+         */
+        @Override
+        public void close() {
+            synchronized (SnapshotService.this) {
+                if (subscriptions.remove(this) && subscriptions.isEmpty()) {
+                    if (latest != null) {
+                        latest.release();
+                        latest = null;
+                    }
+                    synchronized (SERVICES) {
+                        SERVICES.values().remove(SnapshotService.this);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -13,7 +13,6 @@ import static it.unibo.alchemist.boundary.gui.AlchemistSwingUI.loadScaledImage;
 
 import java.awt.Color;
 import java.awt.Dimension;
-import java.util.concurrent.Semaphore;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -21,9 +20,9 @@ import javax.swing.Icon;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.SwingConstants;
-import javax.swing.SwingUtilities;
 import javax.swing.border.LineBorder;
 
+import it.unibo.alchemist.boundary.gui.util.RefreshScheduler;
 import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
 import it.unibo.alchemist.model.implementations.times.DoubleTime;
 import it.unibo.alchemist.model.interfaces.Environment;
@@ -31,6 +30,10 @@ import it.unibo.alchemist.model.interfaces.Reaction;
 import it.unibo.alchemist.model.interfaces.Time;
 
 /**
+ * Shows the current simulation time and step. Labels are refreshed through
+ * the {@link RefreshScheduler}, so that their rate does not depend on the
+ * simulation speed.
+ *
  * @param <T>
  *            Concentration type
  */
@@ -40,32 +43,12 @@ public class TimeStepMonitor<T> extends JPanel implements OutputMonitor<T> {
     private static final String BLANK = "", FINISHED = " (finished)";
     private static final int BORDER = 10, WIDTH = 200, HEIGHT = DEFAULT_ICON_SIZE + BORDER;
     private static final byte ICON_SIZE = DEFAULT_ICON_SIZE / 2;
-    private boolean isFinished;
-    private volatile boolean needsUpdate = true;
+    private volatile boolean isFinished;
     private final JLabel s;
-    private long step;
+    private volatile long step;
     private final JLabel t;
-    private Time time = new DoubleTime();
-    private Updater updater;
-
-    private class Updater implements Runnable {
-        private volatile boolean updaterAlive = true;
-        private final Semaphore mutex = new Semaphore(0);
-        @Override
-        public void run() {
-            do {
-                mutex.acquireUninterruptibly();
-                mutex.drainPermits();
-                scheduleUpdate();
-            } while (updaterAlive);
-        }
-        public void stop() {
-            updaterAlive = false;
-        }
-        public void update() {
-            mutex.release();
-        }
-    }
+    private volatile Time time = new DoubleTime();
+    private final transient RefreshScheduler.Target refresh = RefreshScheduler.register(this::updateLabels);
 
     /**
      * Constructor.
@@ -90,9 +73,6 @@ public class TimeStepMonitor<T> extends JPanel implements OutputMonitor<T> {
     public void finished(final Environment<T> env, final Time tt, final long cs) {
         isFinished = true;
         stepDone(env, null, tt, cs);
-        updater.stop();
-        updater.update();
-        updater = null;
     }
 
     @Override
@@ -103,24 +83,15 @@ public class TimeStepMonitor<T> extends JPanel implements OutputMonitor<T> {
 
     @Override
     public void stepDone(final Environment<T> env, final Reaction<T> r, final Time curTime, final long curStep) {
-        if (updater == null) {
-            updater = new Updater();
-            new Thread(updater, TimeStepMonitor.class.getSimpleName() + " updater thread").start();
-        }
         time = curTime;
         step = curStep;
-        needsUpdate = true;
-        updater.update();
+        refresh.markDirty();
     }
 
-    private void scheduleUpdate() {
-        SwingUtilities.invokeLater(() -> {
-            if (needsUpdate) {
-                needsUpdate = false;
-                t.setText(time + (isFinished ? FINISHED : BLANK));
-                s.setText(Long.toString(step) + (isFinished ? FINISHED : BLANK));
-            }
-        });
+    private void updateLabels() {
+        final String suffix = isFinished ? FINISHED : BLANK;
+        t.setText(time + suffix);
+        s.setText(Long.toString(step) + suffix);
     }
 
 }
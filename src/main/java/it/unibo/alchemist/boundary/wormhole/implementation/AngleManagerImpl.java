@@ -10,6 +10,7 @@ package it.unibo.alchemist.boundary.wormhole.implementation;
 
 import it.unibo.alchemist.boundary.wormhole.interfaces.AngleManager;
 
+import java.awt.GraphicsEnvironment;
 import java.awt.Toolkit;
 
 /**
@@ -27,19 +28,31 @@ public class AngleManagerImpl extends AbstractSlideInputManager implements Angle
      */
     public static final double DEF_DEG_PER_WHEEL_CLICK = 5d;
 
+    /**
+     * Screen width assumed when there is no screen.
+     */
+    public static final int HEADLESS_SCREEN_WIDTH = 1920;
+
     /**
      * <code>DEF_DEG_PER_PIXEL</code> = "DEFault amount of DEGrees PER PIXEL".<br>
      * Currently set to <code>3 * 360 / screenWidth</code> i.e.: by sliding the
      * mouse through the entire width of the screen you will obtain a 3 rounds
      * rotation.<br>
      * This constant is intended for an implementation that converts mouse
-     * motion over x axis into degrees.
+     * motion over x axis into degrees. Headless, a screen
+     * {@value #HEADLESS_SCREEN_WIDTH} pixels wide is assumed.
      */
-    public static final double DEF_DEG_PER_PIXEL = 3d * 360 / Toolkit.getDefaultToolkit().getScreenSize().getWidth();
+    public static final double DEF_DEG_PER_PIXEL = 3d * 360 / screenWidth();
 
     private double degPhase;
     private double degUnit;
 
+    private static double screenWidth() {
+        return GraphicsEnvironment.isHeadless()
+                ? HEADLESS_SCREEN_WIDTH
+                : Toolkit.getDefaultToolkit().getScreenSize().getWidth();
+    }
+
     /**
      * Initializes a new <code>AngleManager</code> instance with
      * <code>dUnit = 1</code> and <code>dPhase = 0</code>.
@@ -18,6 +18,7 @@ import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.util.MercatorProjection;
 import org.mapsforge.map.model.MapViewPosition;
 
+import it.unibo.alchemist.boundary.gui.util.RenderingExecutor;
 import it.unibo.alchemist.model.implementations.positions.LatLongPosition;
 import it.unibo.alchemist.model.interfaces.Environment;
 import it.unibo.alchemist.model.interfaces.Position;
@@ -134,10 +135,10 @@ public final class MapWormhole extends Wormhole2D {
         do {
             setZoom(zoom);
             zoom--;
-        } while (zoom > 1 && !env.getNodes().parallelStream()
+        } while (zoom > 1 && !RenderingExecutor.apply(env.getNodes(), nodes -> nodes
                 .map(env::getPosition)
                 .map(this::getViewPoint)
-                .allMatch(this::isInsideView));
+                .allMatch(this::isInsideView)));
     }
 
     @Override
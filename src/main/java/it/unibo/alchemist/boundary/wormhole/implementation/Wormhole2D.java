@@ -280,7 +280,7 @@ public class Wormhole2D implements IWormhole2D {
         } catch (final NoninvertibleTransformException e) {
             L.error("Unable to perform the transformation from view point to env point. Please check if this method has been called after making the UI visible", e);
         }
-        return from(vp);
+        return from(vp).sum(effectCenter);
     }
 
     /**
@@ -317,7 +317,12 @@ public class Wormhole2D implements IWormhole2D {
         final PointAdapter center = isNaN(off[0]) || isNaN(off[1]) || size[0] <= 0 || size[1] <= 0
                 ? from(0, 0)
                 : from(off[0] + size[0] / 2, off[1] + size[1] / 2);
-        setEnvPosition(center.toPosition());
+        /*
+         * The effect center is the environment point drawn on the view
+         * position, whatever the zoom and rotation.
+         */
+        effectCenter = center;
+        position = from(view.getWidth() / 2, view.getHeight() / 2);
     }
 
 }
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2010-2016, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.boundary.wormhole.implementation;
+
+import java.awt.Component;
+import java.awt.Point;
+import java.awt.geom.Dimension2D;
+
+import it.unibo.alchemist.boundary.wormhole.interfaces.IWormhole2D;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Position;
+
+/**
+ * Camera projecting three dimensional environments on the view. The camera
+ * orbits around a target point: yaw turns it around the z axis, pitch tilts
+ * it from looking down the z axis (0) to looking horizontally (pi / 2).
+ * Projection can be orthographic or perspective, in which case the camera
+ * sits at a configurable distance from the target.
+ *
+ * Environments with less than three dimensions are drawn as if their nodes
+ * had z = 0. View points are mapped back on the plane through the target
+ * parallel to the view, and only their first two coordinates are returned.
+ */
+public class Wormhole3D implements IWormhole2D {
+
+    private static final double NEAR = 1e-3;
+    private static final double DISTANCE_PER_EXTENT = 2;
+
+    private final Environment<?> model;
+    private final Component view;
+    private Point position;
+    private double targetX;
+    private double targetY;
+    private double targetZ;
+    private double zoom = 1;
+    private double yaw;
+    private double pitch;
+    private boolean perspective;
+    private double distance = 1;
+
+    /**
+     * @param env
+     *            the {@link Environment}
+     * @param comp
+     *            the controlled {@link Component}
+     */
+    public Wormhole3D(final Environment<?> env, final Component comp) {
+        model = env;
+        view = comp;
+        position = new Point(comp.getWidth() / 2, comp.getHeight() / 2);
+    }
+
+    /**
+     * Projects a point.
+     *
+     * @param x
+     *            environment x
+     * @param y
+     *            environment y
+     * @param z
+     *            environment z
+     * @param out
+     *            where to write the view x and y. If the point is behind a
+     *            perspective camera, both are NaN
+     */
+    public void project(final double x, final double y, final double z, final double[] out) {
+        final double rx = x - targetX;
+        final double ry = y - targetY;
+        final double rz = z - targetZ;
+        final double cosYaw = Math.cos(yaw);
+        final double sinYaw = Math.sin(yaw);
+        final double x1 = cosYaw * rx - sinYaw * ry;
+        final double y1 = sinYaw * rx + cosYaw * ry;
+        final double up = Math.cos(pitch) * y1 + Math.sin(pitch) * rz;
+        final double toward = -Math.sin(pitch) * y1 + Math.cos(pitch) * rz;
+        double factor = zoom;
+        if (perspective) {
+            final double fromCamera = distance - toward;
+            if (fromCamera < NEAR) {
+                out[0] = Double.NaN;
+                out[1] = Double.NaN;
+                return;
+            }
+            factor *= distance / fromCamera;
+        }
+        out[0] = position.getX() + factor * x1;
+        out[1] = position.getY() - factor * up;
+    }
+
+    /**
+     * @param x
+     *            environment x
+     * @param y
+     *            environment y
+     * @param z
+     *            environment z
+     * @return how far the point is from the viewer: larger values are
+     *         farther. Only meaningful for comparisons.
+     */
+    public double depth(final double x, final double y, final double z) {
+        final double y1 = Math.sin(yaw) * (x - targetX) + Math.cos(yaw) * (y - targetY);
+        return Math.sin(pitch) * y1 - Math.cos(pitch) * (z - targetZ);
+    }
+
+    private double[] unproject(final Point viewPoint) {
+        final double x1 = (viewPoint.getX() - position.getX()) / zoom;
+        final double up = -(viewPoint.getY() - position.getY()) / zoom;
+        final double y1 = Math.cos(pitch) * up;
+        final double rz = Math.sin(pitch) * up;
+        final double cosYaw = Math.cos(yaw);
+        final double sinYaw = Math.sin(yaw);
+        return new double[] {
+            targetX + cosYaw * x1 + sinYaw * y1,
+            targetY - sinYaw * x1 + cosYaw * y1,
+            targetZ + rz,
+        };
+    }
+
+    @Override
+    public Point getViewPoint(final Position envPoint) {
+        final double[] out = new double[2];
+        project(envPoint.getCoordinate(0), envPoint.getCoordinate(1),
+                envPoint.getDimensions() > 2 ? envPoint.getCoordinate(2) : 0, out);
+        if (Double.isNaN(out[0])) {
+            /*
+             * Behind the camera: never inside the view
+             */
+            return new Point(Integer.MIN_VALUE, Integer.MIN_VALUE);
+        }
+        return new Point((int) Math.round(out[0]), (int) Math.round(out[1]));
+    }
+
+    @Override
+    public Position getEnvPoint(final Point viewPoint) {
+        final double[] env = unproject(viewPoint);
+        return PointAdapter.from(env[0], env[1]).toPosition();
+    }
+
+    @Override
+    public Mode getMode() {
+        return Mode.ISOMETRIC;
+    }
+
+    @Override
+    public Point getViewPosition() {
+        return new Point(position);
+    }
+
+    @Override
+    public Dimension2D getViewSize() {
+        return view.getSize();
+    }
+
+    @Override
+    public double getZoom() {
+        return zoom;
+    }
+
+    @Override
+    public boolean isInsideView(final Point viewPoint) {
+        final Dimension2D vs = getViewSize();
+        return viewPoint.getX() >= 0 && viewPoint.getX() <= vs.getWidth() && viewPoint.getY() >= 0 && viewPoint.getY() <= vs.getHeight();
+    }
+
+    /**
+     * Orbits the camera around the target.
+     */
+    @Override
+    public void rotateAroundPoint(final Point p, final double a) {
+        setRotation(a);
+    }
+
+    @Override
+    public void setEnvPosition(final Position envPoint) {
+        targetX = envPoint.getCoordinate(0);
+        targetY = envPoint.getCoordinate(1);
+        if (envPoint.getDimensions() > 2) {
+            targetZ = envPoint.getCoordinate(2);
+        }
+    }
+
+    @Override
+    public void optimalZoom() {
+        final double[] size = model.getSize();
+        double extent = 0;
+        for (final double s : size) {
+            if (!Double.isNaN(s)) {
+                extent = Math.max(extent, s);
+            }
+        }
+        if (extent > 0) {
+            zoom = Math.min(view.getWidth(), view.getHeight()) / extent;
+            distance = extent * DISTANCE_PER_EXTENT;
+        }
+    }
+
+    @Override
+    public void setRotation(final double rad) {
+        yaw = rad % (Math.PI * 2d);
+    }
+
+    @Override
+    public void setViewPosition(final Point viewPoint) {
+        position = new Point(viewPoint);
+    }
+
+    @Override
+    public void setZoom(final double value) {
+        zoom = Math.max(0d, value);
+    }
+
+    /**
+     * Zooms keeping the environment point under p in place.
+     */
+    @Override
+    public void zoomOnPoint(final Point p, final double z) {
+        final double[] before = unproject(p);
+        setZoom(z);
+        final double[] after = unproject(p);
+        targetX += before[0] - after[0];
+        targetY += before[1] - after[1];
+        targetZ += before[2] - after[2];
+    }
+
+    @Override
+    public void center() {
+        final double[] off = model.getOffset();
+        final double[] size = model.getSize();
+        targetX = centerOf(off, size, 0);
+        targetY = centerOf(off, size, 1);
+        targetZ = centerOf(off, size, 2);
+        position = new Point(view.getWidth() / 2, view.getHeight() / 2);
+    }
+
+    private static double centerOf(final double[] off, final double[] size, final int dim) {
+        if (off.length <= dim || size.length <= dim || Double.isNaN(off[dim]) || Double.isNaN(size[dim])) {
+            return 0;
+        }
+        return off[dim] + size[dim] / 2;
+    }
+
+    /**
+     * @return the camera tilt, in radians
+     */
+    public double getPitch() {
+        return pitch;
+    }
+
+    /**
+     * @param rad
+     *            the camera tilt, in radians, between 0 (looking down the z
+     *            axis) and pi / 2 (looking horizontally)
+     */
+    public void setPitch(final double rad) {
+        pitch = Math.max(0, Math.min(Math.PI / 2, rad));
+    }
+
+    /**
+     * @return true if the projection is perspective, false if orthographic
+     */
+    public boolean isPerspective() {
+        return perspective;
+    }
+
+    /**
+     * @param enabled
+     *            true for a perspective projection, false for an orthographic
+     *            one
+     */
+    public void setPerspective(final boolean enabled) {
+        perspective = enabled;
+    }
+
+    /**
+     * @param d
+     *            the distance between the camera and the target, used by the
+     *            perspective projection
+     */
+    public void setCameraDistance(final double d) {
+        distance = Math.max(NEAR, d);
+    }
+
+}
@@ -0,0 +1,94 @@
+package it.unibo.alchemist.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import it.unibo.alchemist.boundary.gui.effects.MoleculePropertyCache;
+import it.unibo.alchemist.model.implementations.environments.Continuous2DEnvironment;
+import it.unibo.alchemist.model.implementations.linkingrules.EuclideanDistance;
+import it.unibo.alchemist.model.implementations.nodes.GenericNode;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Neighborhood;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ * Environments and frames shared by the tests.
+ */
+final class EnvironmentFixtures {
+
+    private EnvironmentFixtures() {
+    }
+
+    /**
+     * @param nodes
+     *            the number of nodes
+     * @param spacing
+     *            the distance between consecutive nodes
+     * @param range
+     *            the communication range
+     * @return an environment with the nodes on the x axis, starting from the
+     *         origin, in the order they have been added
+     */
+    static Environment<Object> line(final int nodes, final double spacing, final double range) {
+        final Environment<Object> env = new Continuous2DEnvironment<>();
+        env.setLinkingRule(new EuclideanDistance<>(range));
+        for (int i = 0; i < nodes; i++) {
+            env.addNode(new SimpleNode(), new Continuous2DEuclidean(i * spacing, 0));
+        }
+        return env;
+    }
+
+    /**
+     * Captures the next frame of the environment. Neighborhoods get copied,
+     * as the display does: the environment keeps updating its own.
+     *
+     * @param previous
+     *            the previous frame
+     * @param env
+     *            the environment
+     * @param changed
+     *            the nodes changed since the previous frame
+     * @param all
+     *            true if every node must be considered changed
+     * @return the next frame
+     */
+    static MoleculePropertyCache next(final MoleculePropertyCache previous, final Environment<Object> env,
+            final Collection<? extends Node<?>> changed, final boolean all) {
+        return MoleculePropertyCache.next(previous, new ArrayList<>(env.getNodes()), changed, all,
+                node -> env.getPosition(asLocal(node)),
+                node -> copy(env.getNeighborhood(asLocal(node))),
+                0);
+    }
+
+    /**
+     * @param node
+     *            a node of one of the fixture environments
+     * @return the node, with the concentration type of the environment
+     */
+    @SuppressWarnings("unchecked")
+    static Node<Object> asLocal(final Node<?> node) {
+        return (Node<Object>) node;
+    }
+
+    private static Neighborhood<Object> copy(final Neighborhood<Object> neighborhood) {
+        try {
+            return neighborhood.clone();
+        } catch (final CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A node with no content.
+     */
+    static final class SimpleNode extends GenericNode<Object> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected Object createT() {
+            return 0d;
+        }
+    }
+
+}
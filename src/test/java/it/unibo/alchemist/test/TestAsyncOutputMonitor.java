@@ -0,0 +1,246 @@
+package it.unibo.alchemist.test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
+import it.unibo.alchemist.boundary.monitors.AsyncOutputMonitor;
+import it.unibo.alchemist.boundary.monitors.ProfiledOutputMonitor;
+import it.unibo.alchemist.core.interfaces.Command;
+import it.unibo.alchemist.core.interfaces.Simulation;
+import it.unibo.alchemist.core.interfaces.Status;
+import it.unibo.alchemist.model.implementations.times.DoubleTime;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Reaction;
+import it.unibo.alchemist.model.interfaces.Time;
+
+/**
+ * Tests for {@link AsyncOutputMonitor}.
+ */
+public class TestAsyncOutputMonitor {
+
+    private static final int STEPS = 100;
+    private static final long TIMEOUT_MILLIS = 10_000;
+    private static final long WAIT_MILLIS = 50;
+
+    /**
+     * Ensure that, while the delegate is busy, pending steps get merged into
+     * the latest one, which is then delivered.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the delegate
+     */
+    @Test
+    public void testConflation() throws InterruptedException {
+        final Recorder recorder = new Recorder(true);
+        final AsyncOutputMonitor<Object> async = AsyncOutputMonitor.of(recorder, 1, true);
+        step(async, 1);
+        assertTrue(recorder.busy.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        for (int i = 2; i <= STEPS; i++) {
+            step(async, i);
+        }
+        assertEquals(1, async.getPending());
+        assertEquals(STEPS - 2, async.getConflatedCount());
+        recorder.release.countDown();
+        waitUntil(() -> recorder.steps.size() == 2);
+        assertEquals(Arrays.asList(1L, (long) STEPS), new ArrayList<>(recorder.steps));
+        async.detach();
+        waitUntil(() -> !isWorkerAlive());
+    }
+
+    /**
+     * Ensure that a monitor which does not conflate receives every step, in
+     * order.
+     */
+    @Test
+    public void testNoConflation() {
+        final Recorder recorder = new Recorder(false);
+        final AsyncOutputMonitor<Object> async = AsyncOutputMonitor.of(recorder, 2, false);
+        final List<Long> expected = new ArrayList<>();
+        for (long i = 1; i <= STEPS; i++) {
+            step(async, i);
+            expected.add(i);
+        }
+        waitUntil(() -> recorder.steps.size() == STEPS);
+        assertEquals(expected, new ArrayList<>(recorder.steps));
+        assertEquals(0, async.getConflatedCount());
+        async.detach();
+        waitUntil(() -> !isWorkerAlive());
+    }
+
+    /**
+     * Ensure that attaching to and detaching from a running simulation go
+     * through its commands, and that the steps queued before the detach
+     * still reach the delegate before its thread terminates.
+     */
+    @Test
+    public void testDetachWhileRunning() {
+        final Recorder recorder = new Recorder(false);
+        final AsyncOutputMonitor<Object> async = AsyncOutputMonitor.of(recorder);
+        final FakeSimulation fake = new FakeSimulation(Status.RUNNING);
+        async.attach(fake.simulation);
+        assertFalse(fake.monitors.contains(async));
+        fake.runCommands();
+        assertTrue(fake.monitors.contains(async));
+        step(async, 1);
+        async.detach();
+        assertTrue(fake.monitors.contains(async));
+        step(async, 2);
+        fake.runCommands();
+        assertFalse(fake.monitors.contains(async));
+        waitUntil(() -> !isWorkerAlive());
+        assertEquals(Arrays.asList(1L, 2L), new ArrayList<>(recorder.steps));
+    }
+
+    /**
+     * Ensure that a simulation which processes no command gets the monitor
+     * added or removed right away.
+     */
+    @Test
+    public void testAttachAndDetachIdle() {
+        final AsyncOutputMonitor<Object> async = AsyncOutputMonitor.of(new Recorder(false));
+        final FakeSimulation init = new FakeSimulation(Status.INIT);
+        async.attach(init.simulation);
+        assertTrue(init.monitors.contains(async));
+        init.status = Status.STOPPED;
+        async.detach();
+        assertFalse(init.monitors.contains(async));
+        assertTrue(init.commands.isEmpty());
+    }
+
+    /**
+     * Ensure that a profiled monitor is timed on the simulation side: the
+     * time the delegate takes is not part of the step timings, while the time
+     * waiting for a full queue is recorded apart.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the delegate
+     */
+    @Test
+    public void testProfiledQueueWait() throws InterruptedException {
+        final Recorder recorder = new Recorder(true);
+        final AsyncOutputMonitor<Object> async = AsyncOutputMonitor.of(recorder, 1, false, true);
+        final ProfiledOutputMonitor<Object> profile = async.getProfile();
+        assertEquals(Recorder.class.getSimpleName(), profile.getName());
+        step(async, 1);
+        assertTrue(recorder.busy.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        step(async, 2);
+        final Thread blocked = new Thread(() -> step(async, 3));
+        blocked.start();
+        Thread.sleep(WAIT_MILLIS);
+        recorder.release.countDown();
+        blocked.join(TIMEOUT_MILLIS);
+        waitUntil(() -> recorder.steps.size() == 3);
+        assertEquals(3, profile.getStepCount());
+        assertTrue(profile.getStepLatency().getMax() < TimeUnit.MILLISECONDS.toNanos(WAIT_MILLIS));
+        assertEquals(1, profile.getQueueWaitLatency().getCount());
+        assertTrue(profile.getQueueWaitLatency().getTotal() >= TimeUnit.MILLISECONDS.toNanos(WAIT_MILLIS));
+        async.detach();
+        waitUntil(() -> !isWorkerAlive());
+    }
+
+    private static void step(final OutputMonitor<Object> monitor, final long step) {
+        monitor.stepDone(null, null, new DoubleTime(step), step);
+    }
+
+    private static boolean isWorkerAlive() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(t -> t.getName().startsWith(AsyncOutputMonitor.class.getSimpleName() + " for "
+                        + Recorder.class.getSimpleName()));
+    }
+
+    private static void waitUntil(final BooleanSupplier condition) {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            Thread.yield();
+        }
+    }
+
+    private static final class Recorder implements OutputMonitor<Object> {
+        private static final long serialVersionUID = 1L;
+        private final List<Long> steps = new CopyOnWriteArrayList<>();
+        private final CountDownLatch busy = new CountDownLatch(1);
+        private final CountDownLatch release;
+
+        Recorder(final boolean blocking) {
+            release = new CountDownLatch(blocking ? 1 : 0);
+        }
+
+        @Override
+        public void initialized(final Environment<Object> env) {
+        }
+
+        @Override
+        public void stepDone(final Environment<Object> env, final Reaction<Object> r, final Time time, final long step) {
+            busy.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            steps.add(step);
+        }
+
+        @Override
+        public void finished(final Environment<Object> env, final Time time, final long step) {
+        }
+    }
+
+    /*
+     * Records monitors and commands, which get executed on request.
+     */
+    private static final class FakeSimulation {
+        private final List<OutputMonitor<Object>> monitors = new CopyOnWriteArrayList<>();
+        private final List<Command<Object>> commands = new CopyOnWriteArrayList<>();
+        private volatile Status status;
+        private final Simulation<Object> simulation;
+
+        @SuppressWarnings("unchecked")
+        FakeSimulation(final Status initial) {
+            status = initial;
+            simulation = (Simulation<Object>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { Simulation.class }, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                        case "addCommand":
+                            commands.add((Command<Object>) args[0]);
+                            return null;
+                        case "addOutputMonitor":
+                            monitors.add((OutputMonitor<Object>) args[0]);
+                            return null;
+                        case "removeOutputMonitor":
+                            monitors.remove(args[0]);
+                            return null;
+                        case "getStatus":
+                            return status;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "FakeSimulation";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        void runCommands() {
+            while (!commands.isEmpty()) {
+                commands.remove(0).execute(simulation);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package it.unibo.alchemist.test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+import it.unibo.alchemist.boundary.monitors.BackgroundImage;
+
+/**
+ * Tests for {@link BackgroundImage}.
+ */
+public class TestBackgroundImage {
+
+    /*
+     * A large floorplan, mapped one pixel per environment unit.
+     */
+    private static final int SIDE = 10_000;
+    private static final int VIEW_WIDTH = 1280;
+    private static final int VIEW_HEIGHT = 720;
+    private static final int PAN = 300;
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int BLACK = 0xFF000000;
+    private static final int GRAY = 0xFF808080;
+
+    /**
+     * Ensure that a zoomed out view reads the original image once, and that
+     * drawing it again only uses the cached tiles.
+     */
+    @Test
+    public void testZoomedOut() {
+        final CountingImage source = new CountingImage(SIDE, SIDE);
+        final BackgroundImage background = new BackgroundImage(source, 0, 0, SIDE, SIDE, BackgroundImage.DEFAULT_CACHED_TILES);
+        final double scale = (double) VIEW_HEIGHT / SIDE;
+        draw(background, AffineTransform.getScaleInstance(scale, scale));
+        assertTrue(source.read + " pixels read", source.read <= (long) SIDE * SIDE);
+        source.read = 0;
+        draw(background, AffineTransform.getScaleInstance(scale, scale));
+        assertEquals(0, source.read);
+    }
+
+    /**
+     * Ensure that panning a zoomed in view only reads the region of the
+     * original image newly in sight, and never rebuilds a whole halved copy.
+     */
+    @Test
+    public void testPanning() {
+        final CountingImage source = new CountingImage(SIDE, SIDE);
+        final BackgroundImage background = new BackgroundImage(source, 0, 0, SIDE, SIDE, BackgroundImage.DEFAULT_CACHED_TILES);
+        /*
+         * Half size: the first halved level
+         */
+        final AffineTransform view = AffineTransform.getScaleInstance(0.5, 0.5);
+        draw(background, view);
+        final long firstFrame = source.read;
+        assertTrue(firstFrame + " pixels read", firstFrame < (long) SIDE * SIDE / 8);
+        for (int i = 1; i <= 4; i++) {
+            source.read = 0;
+            final AffineTransform panned = new AffineTransform(view);
+            panned.preConcatenate(AffineTransform.getTranslateInstance(-PAN * i, 0));
+            draw(background, panned);
+            assertTrue(source.read + " pixels read", source.read <= firstFrame);
+        }
+    }
+
+    /**
+     * Ensure that halved levels average the pixels they cover.
+     */
+    @Test
+    public void testAveraging() {
+        final int side = 1024;
+        final BufferedImage stripes = new BufferedImage(side, side, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                stripes.setRGB(x, y, x % 2 == 0 ? WHITE : BLACK);
+            }
+        }
+        final BackgroundImage background = new BackgroundImage(stripes, 0, 0, side, side, BackgroundImage.DEFAULT_CACHED_TILES);
+        final BufferedImage out = draw(background, AffineTransform.getScaleInstance(0.5, 0.5));
+        assertEquals(GRAY, out.getRGB(VIEW_HEIGHT / 4, VIEW_HEIGHT / 4));
+    }
+
+    private static BufferedImage draw(final BackgroundImage background, final AffineTransform envToView) {
+        final BufferedImage out = new BufferedImage(VIEW_WIDTH, VIEW_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g = out.createGraphics();
+        try {
+            background.draw(g, envToView, VIEW_WIDTH, VIEW_HEIGHT);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    /*
+     * Counts the pixels read, one bit per pixel to keep the heap small.
+     */
+    private static final class CountingImage extends BufferedImage {
+        private volatile long read;
+
+        CountingImage(final int width, final int height) {
+            super(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        }
+
+        @Override
+        public synchronized int[] getRGB(final int startX, final int startY, final int w, final int h,
+                final int[] rgbArray, final int offset, final int scansize) {
+            read += (long) w * h;
+            return super.getRGB(startX, startY, w, h, rgbArray, offset, scansize);
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package it.unibo.alchemist.test;
+import static it.unibo.alchemist.test.EnvironmentFixtures.asLocal;
+import static it.unibo.alchemist.test.EnvironmentFixtures.line;
+import static it.unibo.alchemist.test.EnvironmentFixtures.next;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import it.unibo.alchemist.boundary.gui.effects.DrawTopology;
+import it.unibo.alchemist.boundary.gui.effects.FrameContext;
+import it.unibo.alchemist.boundary.gui.effects.FrameTopology;
+import it.unibo.alchemist.boundary.gui.effects.MoleculePropertyCache;
+import it.unibo.alchemist.boundary.gui.util.RenderingExecutor;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Node;
+
+/**
+ * Tests for the incremental topology of a frame, and for the connected
+ * components {@link DrawTopology} computes over it.
+ */
+public class TestDrawTopology {
+
+    private static final int NODES = 10;
+    private static final double SPACING = 2;
+    private static final double RANGE = 1.5;
+
+    /**
+     * Ensure that a node joining two others updates the topology
+     * incrementally, and that the components get merged as a full pass
+     * would.
+     */
+    @Test
+    public void testIncrementalMerge() {
+        final Environment<Object> env = line(NODES, SPACING, RANGE);
+        final List<Node<Object>> nodes = new ArrayList<>(env.getNodes());
+        final DrawTopology overlay = new DrawTopology();
+        MoleculePropertyCache cache = next(MoleculePropertyCache.empty(), env, Collections.emptySet(), true);
+        final FrameTopology before = cache.getTopology();
+        draw(overlay, cache);
+        assertEquals(NODES, overlay.getComponentCount());
+        final Node<Object> bridge = nodes.get(NODES - 1);
+        env.moveNodeToPosition(bridge, new Continuous2DEuclidean(SPACING / 2, 0));
+        cache = next(cache, env, Collections.singleton(bridge), false);
+        final FrameTopology after = cache.getTopology();
+        assertSame(before.getRows(), after.getBase());
+        assertArrayEquals(new int[] {0, 1, NODES - 1}, after.getRebuilt());
+        assertArrayEquals(new int[] {NODES - 1}, after.getNeighbors(0));
+        assertArrayEquals(new int[] {NODES - 1}, after.getNeighbors(1));
+        assertArrayEquals(new int[] {0, 1}, after.getNeighbors(NODES - 1));
+        draw(overlay, cache);
+        assertEquals(NODES - 2, overlay.getComponentCount());
+        assertEquals(3, overlay.getComponentSizes()[0]);
+        final DrawTopology fullPass = new DrawTopology();
+        draw(fullPass, cache);
+        assertArrayEquals(fullPass.getComponentSizes(), overlay.getComponentSizes());
+    }
+
+    /**
+     * Ensure that lost links split the components again.
+     */
+    @Test
+    public void testSplit() {
+        final Environment<Object> env = line(NODES, SPACING, RANGE);
+        final List<Node<Object>> nodes = new ArrayList<>(env.getNodes());
+        final Node<Object> bridge = nodes.get(NODES - 1);
+        env.moveNodeToPosition(bridge, new Continuous2DEuclidean(SPACING / 2, 0));
+        final DrawTopology overlay = new DrawTopology();
+        MoleculePropertyCache cache = next(MoleculePropertyCache.empty(), env, Collections.emptySet(), true);
+        assertNull(cache.getTopology().getBase());
+        draw(overlay, cache);
+        assertEquals(NODES - 2, overlay.getComponentCount());
+        env.moveNodeToPosition(bridge, new Continuous2DEuclidean(SPACING * NODES, 0));
+        cache = next(cache, env, Collections.singleton(bridge), false);
+        draw(overlay, cache);
+        assertEquals(NODES, overlay.getComponentCount());
+        assertEquals(1, overlay.getComponentSizes()[0]);
+    }
+
+    private static void draw(final DrawTopology overlay, final MoleculePropertyCache cache) {
+        final BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g = image.createGraphics();
+        try {
+            overlay.draw(g, new FrameContext(null, 1, 1, cache, new Node<?>[0], new int[0], new int[0], new int[0],
+                    RenderingExecutor.getPool()));
+        } finally {
+            g.dispose();
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package it.unibo.alchemist.test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import it.unibo.alchemist.boundary.monitors.LatencyHistogram;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ */
+public class TestLatencyHistogram {
+
+    private static final int SAMPLES = 10_000;
+    private static final double[] QUANTILES = {0.01, 0.25, 0.5, 0.9, 0.95, 0.99, 0.999, 1};
+    /*
+     * Each power of two is split into SUB_BUCKETS linear buckets.
+     */
+    private static final double RELATIVE_ERROR = 1.0 / LatencyHistogram.SUB_BUCKETS;
+
+    /**
+     * Ensure that an empty histogram reports no value.
+     */
+    @Test
+    public void testEmpty() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertTrue(Double.isNaN(histogram.getMean()));
+        assertTrue(Double.isNaN(histogram.getQuantile(0.5)));
+        assertTrue(Double.isNaN(histogram.getMax()));
+    }
+
+    /**
+     * Ensure that small values are recorded exactly, and negative ones as
+     * zero.
+     */
+    @Test
+    public void testSmallValues() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        for (int i = 0; i < LatencyHistogram.SUB_BUCKETS; i++) {
+            histogram.record(i);
+        }
+        assertEquals(0, histogram.getQuantile(0), 0);
+        assertEquals(LatencyHistogram.SUB_BUCKETS - 1, histogram.getMax(), 0);
+        assertEquals(LatencyHistogram.SUB_BUCKETS + 1, histogram.getCount());
+        assertEquals((long) LatencyHistogram.SUB_BUCKETS * (LatencyHistogram.SUB_BUCKETS - 1) / 2, histogram.getTotal());
+    }
+
+    /**
+     * Ensure that quantiles are upper bounds of the exact ones, within the
+     * resolution of the buckets.
+     */
+    @Test
+    public void testQuantiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final long scale = 1_000;
+        for (long i = 1; i <= SAMPLES; i++) {
+            histogram.record(i * scale);
+        }
+        for (final double q : QUANTILES) {
+            final double exact = Math.ceil(q * SAMPLES) * scale;
+            final double estimate = histogram.getQuantile(q);
+            assertTrue(q + ": " + estimate + " < " + exact, estimate >= exact);
+            assertTrue(q + ": " + estimate + " too far from " + exact, estimate <= exact * (1 + RELATIVE_ERROR));
+        }
+        assertEquals(histogram.getQuantile(1), histogram.getMax(), 0);
+        assertEquals((SAMPLES + 1) / 2.0 * scale, histogram.getMean(), 0);
+    }
+
+    /**
+     * Ensure that reset forgets every recording.
+     */
+    @Test
+    public void testReset() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(SAMPLES);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getTotal());
+        assertTrue(Double.isNaN(histogram.getQuantile(1)));
+    }
+
+    /**
+     * Ensure that quantiles outside [0, 1] are rejected.
+     */
+    @Test
+    public void testIllegalQuantile() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1);
+        try {
+            histogram.getQuantile(1.5);
+            fail("Quantiles above 1 should be rejected");
+        } catch (final IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("1.5"));
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+package it.unibo.alchemist.test;
+import static it.unibo.alchemist.test.EnvironmentFixtures.line;
+import static it.unibo.alchemist.test.EnvironmentFixtures.next;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import it.unibo.alchemist.boundary.gui.effects.MoleculePropertyCache;
+import it.unibo.alchemist.boundary.gui.effects.NodeFilter;
+import it.unibo.alchemist.boundary.gui.effects.NodeFilterIndex;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
+import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Node;
+import it.unibo.alchemist.test.EnvironmentFixtures.SimpleNode;
+
+/**
+ * Tests for the incremental maintenance of {@link NodeFilterIndex}.
+ */
+public class TestNodeFilterIndex {
+
+    private static final int NODES = 10;
+
+    /**
+     * Ensure that, when the same nodes are captured, only the changed ones
+     * are tested again, and that gained and lost matches both show up.
+     */
+    @Test
+    public void testIncrementalUpdate() {
+        final Environment<Object> env = line(NODES, 1, 1);
+        final List<Node<Object>> nodes = new ArrayList<>(env.getNodes());
+        final MarkedFilter filter = new MarkedFilter();
+        filter.marked.add(nodes.get(1).getId());
+        filter.marked.add(nodes.get(2).getId());
+        MoleculePropertyCache cache = next(MoleculePropertyCache.empty(), env, Collections.emptySet(), true);
+        NodeFilterIndex index = NodeFilterIndex.next(NodeFilterIndex.empty(), cache, Collections.emptySet(), true);
+        assertEquals(bits(1, 2), index.getMatching(filter));
+        assertEquals(NODES, filter.tests.get());
+        filter.tests.set(0);
+        filter.marked.remove(nodes.get(1).getId());
+        filter.marked.add(nodes.get(NODES - 1).getId());
+        final Set<Node<Object>> changed = new HashSet<>(Arrays.asList(nodes.get(1), nodes.get(NODES - 1)));
+        cache = next(cache, env, changed, false);
+        index = NodeFilterIndex.next(index, cache, changed, false);
+        assertEquals(bits(2, NODES - 1), index.getMatching(filter));
+        assertEquals(changed.size(), filter.tests.get());
+    }
+
+    /**
+     * Ensure that moving a node only re-tests it, and that the positions of
+     * the new frame are those after the move.
+     */
+    @Test
+    public void testMove() {
+        final Environment<Object> env = line(NODES, 1, 1);
+        final List<Node<Object>> nodes = new ArrayList<>(env.getNodes());
+        final MarkedFilter filter = new MarkedFilter();
+        filter.marked.add(nodes.get(0).getId());
+        MoleculePropertyCache cache = next(MoleculePropertyCache.empty(), env, Collections.emptySet(), true);
+        NodeFilterIndex index = NodeFilterIndex.next(NodeFilterIndex.empty(), cache, Collections.emptySet(), true);
+        assertEquals(bits(0), index.getMatching(filter));
+        filter.tests.set(0);
+        env.moveNodeToPosition(nodes.get(0), new Continuous2DEuclidean(NODES, NODES));
+        final Set<Node<Object>> changed = Collections.singleton(nodes.get(0));
+        cache = next(cache, env, changed, false);
+        index = NodeFilterIndex.next(index, cache, changed, false);
+        assertEquals(bits(0), index.getMatching(filter));
+        assertEquals(1, filter.tests.get());
+        assertEquals(NODES, cache.getEnvXs()[0], 0);
+    }
+
+    /**
+     * Ensure that adding and removing nodes rebuilds the index over the new
+     * node indexes.
+     */
+    @Test
+    public void testAddAndRemove() {
+        final Environment<Object> env = line(NODES, 1, 1);
+        final List<Node<Object>> nodes = new ArrayList<>(env.getNodes());
+        final MarkedFilter filter = new MarkedFilter();
+        filter.marked.add(nodes.get(NODES - 1).getId());
+        MoleculePropertyCache cache = next(MoleculePropertyCache.empty(), env, Collections.emptySet(), true);
+        NodeFilterIndex index = NodeFilterIndex.next(NodeFilterIndex.empty(), cache, Collections.emptySet(), true);
+        assertEquals(bits(NODES - 1), index.getMatching(filter));
+        env.removeNode(nodes.get(0));
+        final Node<Object> added = new SimpleNode();
+        filter.marked.add(added.getId());
+        env.addNode(added, new Continuous2DEuclidean(-1, -1));
+        final Set<Node<Object>> changed = Collections.singleton(added);
+        cache = next(cache, env, changed, false);
+        index = NodeFilterIndex.next(index, cache, changed, false);
+        final BitSet matching = index.getMatching(filter);
+        assertEquals(2, matching.cardinality());
+        assertEquals(-1, cache.indexOf(nodes.get(0)));
+        assertTrue(matching.get(cache.indexOf(nodes.get(NODES - 1))));
+        assertTrue(matching.get(cache.indexOf(added)));
+        assertFalse(matching.get(cache.indexOf(nodes.get(1))));
+    }
+
+    /**
+     * Ensure that filters nobody requests in a frame are dropped from the
+     * following one.
+     */
+    @Test
+    public void testUnrequestedFiltersAreDropped() {
+        final Environment<Object> env = line(NODES, 1, 1);
+        final MarkedFilter used = new MarkedFilter();
+        final MarkedFilter unused = new MarkedFilter();
+        MoleculePropertyCache cache = next(MoleculePropertyCache.empty(), env, Collections.emptySet(), true);
+        NodeFilterIndex index = NodeFilterIndex.next(NodeFilterIndex.empty(), cache, Collections.emptySet(), true);
+        index.getMatching(used);
+        index.getMatching(unused);
+        cache = next(cache, env, Collections.emptySet(), false);
+        index = NodeFilterIndex.next(index, cache, Collections.emptySet(), false);
+        index.getMatching(used);
+        cache = next(cache, env, Collections.emptySet(), false);
+        index = NodeFilterIndex.next(index, cache, Collections.emptySet(), false);
+        used.tests.set(0);
+        unused.tests.set(0);
+        index.getMatching(used);
+        index.getMatching(unused);
+        assertEquals(0, used.tests.get());
+        assertEquals(NODES, unused.tests.get());
+    }
+
+    private static BitSet bits(final int... indexes) {
+        final BitSet result = new BitSet();
+        for (final int i : indexes) {
+            result.set(i);
+        }
+        return result;
+    }
+
+    /*
+     * Matches the nodes whose id is marked, and counts its evaluations.
+     */
+    private static final class MarkedFilter implements NodeFilter {
+        private final Set<Integer> marked = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger tests = new AtomicInteger();
+
+        @Override
+        public boolean test(final Node<?> node) {
+            tests.incrementAndGet();
+            return marked.contains(node.getId());
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return this == obj;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+package it.unibo.alchemist.test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
+import it.unibo.alchemist.boundary.monitors.RealTimePacer;
+import it.unibo.alchemist.core.interfaces.Simulation;
+import it.unibo.alchemist.model.implementations.times.DoubleTime;
+
+/**
+ * Tests for {@link RealTimePacer}.
+ */
+public class TestRealTimePacer {
+
+    private static final double RATIO = 10;
+    private static final double SIM_STEP = 0.1;
+    private static final int STEPS = 5;
+    /*
+     * Longer than the lag the pacer tolerates before re-anchoring.
+     */
+    private static final long STALL_MILLIS = 400;
+    private static final long SLACK_MILLIS = 10;
+
+    /**
+     * Ensure that the pacer is created once per simulation, disabled, and
+     * attached as monitor.
+     */
+    @Test
+    public void testOnePerSimulation() {
+        final List<OutputMonitor<Object>> monitors = new CopyOnWriteArrayList<>();
+        final Simulation<Object> sim = fakeSimulation(monitors);
+        final RealTimePacer<Object> pacer = RealTimePacer.of(sim);
+        assertSame(pacer, RealTimePacer.of(sim));
+        assertFalse(pacer.isEnabled());
+        assertEquals(1, monitors.size());
+        assertSame(pacer, monitors.get(0));
+    }
+
+    /**
+     * Ensure that peeking never creates nor attaches a pacer.
+     */
+    @Test
+    public void testPeek() {
+        final List<OutputMonitor<Object>> monitors = new CopyOnWriteArrayList<>();
+        final Simulation<Object> sim = fakeSimulation(monitors);
+        assertFalse(RealTimePacer.peek(sim).isPresent());
+        assertTrue(monitors.isEmpty());
+        final RealTimePacer<Object> pacer = RealTimePacer.of(sim);
+        assertSame(pacer, RealTimePacer.peek(sim).get());
+        assertEquals(1, monitors.size());
+    }
+
+    /**
+     * Ensure that steps are slowed down to the requested ratio.
+     */
+    @Test
+    public void testPacing() {
+        final RealTimePacer<Object> pacer = RealTimePacer.of(fakeSimulation(new CopyOnWriteArrayList<>()));
+        pacer.setRatio(RATIO);
+        pacer.setEnabled(true);
+        final long start = System.nanoTime();
+        for (int i = 0; i <= STEPS; i++) {
+            step(pacer, i * SIM_STEP);
+        }
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis + "ms", elapsedMillis >= (long) (STEPS * SIM_STEP / RATIO * 1000) - SLACK_MILLIS);
+    }
+
+    /**
+     * Ensure that a disabled pacer never waits.
+     */
+    @Test
+    public void testDisabled() {
+        final RealTimePacer<Object> pacer = RealTimePacer.of(fakeSimulation(new CopyOnWriteArrayList<>()));
+        pacer.setRatio(RealTimePacer.MIN_RATIO);
+        final long start = System.nanoTime();
+        for (int i = 0; i <= STEPS; i++) {
+            step(pacer, i);
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < STALL_MILLIS);
+    }
+
+    /**
+     * Ensure that, once the simulation fell too far behind, the pacer starts
+     * over instead of letting it run at full speed to catch up.
+     *
+     * @throws InterruptedException
+     *             if interrupted while simulating a stall
+     */
+    @Test
+    public void testLagClamping() throws InterruptedException {
+        final RealTimePacer<Object> pacer = RealTimePacer.of(fakeSimulation(new CopyOnWriteArrayList<>()));
+        pacer.setRatio(1);
+        pacer.setEnabled(true);
+        step(pacer, 0);
+        Thread.sleep(STALL_MILLIS);
+        step(pacer, SIM_STEP);
+        final long start = System.nanoTime();
+        step(pacer, 2 * SIM_STEP);
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis + "ms", elapsedMillis >= (long) (SIM_STEP * 1000) - SLACK_MILLIS);
+    }
+
+    /**
+     * Ensure that ratios outside the allowed range are rejected.
+     */
+    @Test
+    public void testRatioBounds() {
+        final RealTimePacer<Object> pacer = RealTimePacer.of(fakeSimulation(new CopyOnWriteArrayList<>()));
+        pacer.setRatio(RealTimePacer.MAX_RATIO);
+        for (final double ratio : new double[] {RealTimePacer.MIN_RATIO / 2, RealTimePacer.MAX_RATIO * 2, Double.NaN}) {
+            try {
+                pacer.setRatio(ratio);
+                fail(ratio + " should be rejected");
+            } catch (final IllegalArgumentException e) {
+                assertEquals(RealTimePacer.MAX_RATIO, pacer.getRatio(), 0);
+            }
+        }
+    }
+
+    private static void step(final RealTimePacer<Object> pacer, final double time) {
+        pacer.stepDone(null, null, new DoubleTime(time), 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Simulation<Object> fakeSimulation(final List<OutputMonitor<Object>> monitors) {
+        return (Simulation<Object>) Proxy.newProxyInstance(TestRealTimePacer.class.getClassLoader(),
+                new Class<?>[] { Simulation.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "addOutputMonitor":
+                        monitors.add((OutputMonitor<Object>) args[0]);
+                        return null;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "FakeSimulation";
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+}
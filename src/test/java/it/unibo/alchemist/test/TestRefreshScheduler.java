@@ -0,0 +1,95 @@
+package it.unibo.alchemist.test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Test;
+
+import it.unibo.alchemist.boundary.gui.util.RefreshScheduler;
+
+/**
+ * Tests for {@link RefreshScheduler}.
+ */
+public class TestRefreshScheduler {
+
+    private static final int RATE = 10;
+    private static final int MARKS = 10_000;
+    private static final long TIMEOUT_MILLIS = 10_000;
+    private static final long PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(1) / RATE;
+
+    /**
+     * Ensure that a burst of dirty marks results in a refresh per period,
+     * and that the last refresh sees the latest state.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the refreshes
+     */
+    @Test
+    public void testCoalescing() throws InterruptedException {
+        final int rate = RefreshScheduler.getRate();
+        RefreshScheduler.setRate(RATE);
+        try {
+            final AtomicInteger state = new AtomicInteger();
+            final AtomicInteger refreshes = new AtomicInteger();
+            final AtomicInteger seen = new AtomicInteger(-1);
+            final RefreshScheduler.Target target = RefreshScheduler.register(() -> {
+                refreshes.incrementAndGet();
+                seen.set(state.get());
+            });
+            final long start = System.nanoTime();
+            for (int i = 1; i <= MARKS; i++) {
+                state.set(i);
+                target.markDirty();
+            }
+            final long burstMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            waitUntil(() -> seen.get() == MARKS);
+            Thread.sleep(2 * PERIOD_MILLIS);
+            assertEquals(MARKS, seen.get());
+            assertTrue(refreshes.get() + " refreshes", refreshes.get() <= 2 + burstMillis / PERIOD_MILLIS);
+        } finally {
+            RefreshScheduler.setRate(rate);
+        }
+    }
+
+    /**
+     * Ensure that cancelled targets are no longer refreshed, including the
+     * pending refreshes.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the refreshes
+     * @throws InvocationTargetException
+     *             if marking or cancelling fails
+     */
+    @Test
+    public void testCancel() throws InterruptedException, InvocationTargetException {
+        final AtomicInteger refreshes = new AtomicInteger();
+        final RefreshScheduler.Target target = RefreshScheduler.register(refreshes::incrementAndGet);
+        /*
+         * Refreshes run on the event dispatch thread: none can run between
+         * the mark and the cancel.
+         */
+        SwingUtilities.invokeAndWait(() -> {
+            target.markDirty();
+            target.cancel();
+            target.markDirty();
+        });
+        Thread.sleep(2 * TimeUnit.SECONDS.toMillis(1) / RefreshScheduler.getRate());
+        assertTrue(target.isCancelled());
+        assertEquals(0, refreshes.get());
+    }
+
+    private static void waitUntil(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+}
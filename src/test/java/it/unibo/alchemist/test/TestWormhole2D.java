@@ -1,17 +1,30 @@
 package it.unibo.alchemist.test;
+import static org.junit.Assert.assertEquals;
+
 import java.awt.Component;
+import java.awt.Point;
 
 import org.junit.Test;
 
 import it.unibo.alchemist.boundary.wormhole.implementation.Wormhole2D;
 import it.unibo.alchemist.model.implementations.environments.Continuous2DEnvironment;
+import it.unibo.alchemist.model.implementations.linkingrules.EuclideanDistance;
+import it.unibo.alchemist.model.implementations.positions.Continuous2DEuclidean;
 import it.unibo.alchemist.model.interfaces.Environment;
+import it.unibo.alchemist.model.interfaces.Position;
+import it.unibo.alchemist.test.EnvironmentFixtures.SimpleNode;
 
 /**
  * Test for bugs in {@link Wormhole2D}.
  */
 public class TestWormhole2D {
 
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final double MIN = 400;
+    private static final double MAX = 600;
+    private static final double TOLERANCE = 1e-6;
+
     /**
      * Ensure that no exception is thrown when a zero-sized environment is
      * requested.
@@ -25,4 +38,56 @@ public class TestWormhole2D {
         worm.center();
     }
 
+    /**
+     * Ensure that, once centered, the center of an environment far from the
+     * origin is drawn in the middle of the view, and maps back to itself.
+     */
+    @Test
+    public void testCenterOfNonOriginEnvironment() {
+        final Wormhole2D worm = centeredWormhole();
+        final double middle = (MIN + MAX) / 2;
+        assertEquals(new Point(WIDTH / 2, HEIGHT / 2), worm.getViewPoint(new Continuous2DEuclidean(middle, middle)));
+        final Position back = worm.getEnvPoint(new Point(WIDTH / 2, HEIGHT / 2));
+        assertEquals(middle, back.getCoordinate(0), TOLERANCE);
+        assertEquals(middle, back.getCoordinate(1), TOLERANCE);
+    }
+
+    /**
+     * Ensure that getEnvPoint inverts getViewPoint after centering, zooming
+     * and rotating.
+     */
+    @Test
+    public void testRoundTrip() {
+        final Wormhole2D worm = centeredWormhole();
+        checkRoundTrip(worm);
+        worm.zoomOnPoint(new Point(100, 50), worm.getZoom() * 2);
+        checkRoundTrip(worm);
+        worm.rotateAroundPoint(new Point(WIDTH / 3, HEIGHT / 3), Math.PI / 6);
+        checkRoundTrip(worm);
+    }
+
+    private static void checkRoundTrip(final Wormhole2D worm) {
+        for (int x = 0; x <= WIDTH; x += WIDTH / 8) {
+            for (int y = 0; y <= HEIGHT; y += HEIGHT / 8) {
+                final Point view = new Point(x, y);
+                assertEquals(view, worm.getViewPoint(worm.getEnvPoint(view)));
+            }
+        }
+    }
+
+    private static Wormhole2D centeredWormhole() {
+        final Environment<Object> env = new Continuous2DEnvironment<>();
+        env.setLinkingRule(new EuclideanDistance<>(1));
+        env.addNode(new SimpleNode(), new Continuous2DEuclidean(MIN, MIN));
+        env.addNode(new SimpleNode(), new Continuous2DEuclidean(MAX, MAX));
+        @SuppressWarnings("serial") // CHECKSTYLE:OFF
+        final Component view = new Component() {};
+        // CHECKSTYLE:ON
+        view.setSize(WIDTH, HEIGHT);
+        final Wormhole2D worm = new Wormhole2D(env, view);
+        worm.center();
+        worm.optimalZoom();
+        return worm;
+    }
+
 }